@@ -117,6 +117,28 @@ public class Engine {
 		return vPathwayModel != null;
 	}
 
+	/**
+	 * Starts a batch of changes on the currently open drawing, so that view
+	 * updates, repaints, selection events and undo recording are applied once at
+	 * the end. Does nothing if no drawing is open.
+	 * 
+	 * @see VPathwayModel#beginBatch()
+	 */
+	public void beginBatch() {
+		if (vPathwayModel != null) {
+			vPathwayModel.beginBatch();
+		}
+	}
+
+	/**
+	 * Ends a batch of changes started with {@link #beginBatch()}.
+	 */
+	public void endBatch() {
+		if (vPathwayModel != null && vPathwayModel.isBatching()) {
+			vPathwayModel.endBatch();
+		}
+	}
+
 	// ================================================================================
 	// Import, Open, and Create Methods
 	// ================================================================================
@@ -55,6 +55,9 @@ public enum GlobalPreference implements Preference {
 	DB_CONNECTSTRING_IDB("idmapper-pgdb:none"),
 
 	ENABLE_DOUBLE_BUFFERING(Boolean.toString(true)), SHOW_ADVANCED_PROPERTIES(Boolean.toString(false)),
+
+	// cache rendered tiles of the pathway canvas, size in megabytes
+	ENABLE_TILE_CACHE(Boolean.toString(true)), TILE_CACHE_SIZE("" + 64),
 	MIM_SUPPORT(Boolean.toString(true)), SNAP_TO_ANGLE(Boolean.toString(false)), SNAP_TO_ANGLE_STEP("15"),
 
 	SNAP_TO_ANCHOR(Boolean.toString(true)),
@@ -95,6 +98,23 @@ public enum GlobalPreference implements Preference {
 
 	MAX_NR_CITATIONS("" + 5),
 
+	// Level of detail: below these zoom percentages (on screen), text is drawn
+	// as boxes, and arrowheads, citations, states and dashes are left out.
+	// Set to 0 to always draw in full detail.
+	LOD_TEXT_ZOOM("" + 25), LOD_DETAIL_ZOOM("" + 15),
+
+	// maximum number of times per second that changed areas are repainted
+	REPAINT_MAX_FPS("" + 60),
+
+	// calculate element outlines in parallel after loading and zooming
+	PRECOMPUTE_GEOMETRY(Boolean.toString(true)),
+
+	// drag large selections as an image, move the elements when they are dropped
+	ENABLE_DRAG_PREVIEW(Boolean.toString(true)), DRAG_PREVIEW_MIN_ELEMENTS("" + 50),
+
+	// maximum memory used by the undo and redo history, in megabytes
+	UNDO_MEMORY_BUDGET("" + 64),
+
 	// Whether to convert text to paths in SVG export
 	// Default to false, better performance in SVG renderers
 	SVG_TEXT_AS_PATH("" + false);
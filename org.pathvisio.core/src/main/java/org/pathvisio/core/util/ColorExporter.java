@@ -38,13 +38,11 @@ import org.pathvisio.model.PathwayElement;
 import org.pathvisio.model.DataNode;
 import org.pathvisio.model.Group;
 import org.pathvisio.core.preferences.PreferenceManager;
+import org.pathvisio.core.view.model.RenderHook;
 import org.pathvisio.core.view.model.VElement;
-import org.pathvisio.core.view.model.VPathwayModelEvent;
-import org.pathvisio.core.view.model.VPathwayModelListener;
 import org.pathvisio.core.view.model.VPathwayModel;
 import org.pathvisio.core.view.model.VPathwayObject;
 import org.pathvisio.core.view.model.VShapedElement;
-import org.pathvisio.core.view.model.VPathwayModelEvent.VPathwayEventType;
 
 /**
  * Utility that takes a set of graphId/Color pairs and exports a pathway image
@@ -55,7 +53,7 @@ import org.pathvisio.core.view.model.VPathwayModelEvent.VPathwayEventType;
  * 
  * @author thomas
  */
-public class ColorExporter implements VPathwayModelListener {
+public class ColorExporter implements RenderHook {
 	
 	Map<PathwayObject, List<Color>> colors;
 	VPathwayModel vPathway;
@@ -71,26 +69,25 @@ public class ColorExporter implements VPathwayModelListener {
 	}
 
 	public void export(BatikImageExporter exporter, File outputFile) throws ConverterException {
-		vPathway.addVPathwayListener(this);
+		vPathway.addRenderHook(this);
 		doHighlight();
 		exporter.doExport(outputFile, vPathway);
 	}
 
-	public void vPathwayModelEvent(VPathwayModelEvent e) {
-		if (e.getType() == VPathwayEventType.ELEMENT_DRAWN) {
-			VElement vpwe = e.getAffectedElement();
-			if (vpwe instanceof VPathwayObject) {
-				PathwayObject pwe = ((VPathwayObject) vpwe).getPathwayObject();
-				List<Color> elmColors = colors.get(pwe);
-				if (elmColors != null && elmColors.size() > 0) {
-					Logger.log.info("Coloring " + pwe + " with " + elmColors);
-					if (pwe.getClass() == DataNode.class) {
-						doColor(e.getGraphics2D(), (VPathwayObject) vpwe, elmColors);
-						drawLabel(e.getGraphics2D(), (VPathwayObject) vpwe);
-					} else if (pwe.getClass() == Group.class) {
-						doColor(e.getGraphics2D(), (VPathwayObject) vpwe, elmColors);
-					}
-				}
+	public Class<? extends VElement> getElementType() {
+		return VPathwayObject.class;
+	}
+
+	public void elementDrawn(VElement vpwe, Graphics2D g2d) {
+		PathwayObject pwe = ((VPathwayObject) vpwe).getPathwayObject();
+		List<Color> elmColors = colors.get(pwe);
+		if (elmColors != null && elmColors.size() > 0) {
+			Logger.log.info("Coloring " + pwe + " with " + elmColors);
+			if (pwe.getClass() == DataNode.class) {
+				doColor(g2d, (VPathwayObject) vpwe, elmColors);
+				drawLabel(g2d, (VPathwayObject) vpwe);
+			} else if (pwe.getClass() == Group.class) {
+				doColor(g2d, (VPathwayObject) vpwe, elmColors);
 			}
 		}
 	}
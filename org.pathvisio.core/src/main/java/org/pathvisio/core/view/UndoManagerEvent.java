@@ -17,18 +17,31 @@
 package org.pathvisio.core.view;
 
 /**
- * Signals that an action was added or removed from the undo stack.
+ * Signals that an action was added or removed from the undo or redo stack.
  * 
  * @author unknown
  */
 public class UndoManagerEvent {
 	public UndoManagerEvent(String msg) {
+		this(msg, null);
+	}
+
+	public UndoManagerEvent(String msg, String redoMsg) {
 		undoMessage = msg;
+		redoMessage = redoMsg;
 	}
 
 	public String getMessage() {
 		return undoMessage;
 	}
 
+	/**
+	 * The message of the action that would be redone, or null if unknown.
+	 */
+	public String getRedoMessage() {
+		return redoMessage;
+	}
+
 	private String undoMessage;
+	private String redoMessage;
 }
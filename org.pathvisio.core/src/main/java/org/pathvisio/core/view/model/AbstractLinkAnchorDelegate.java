@@ -28,15 +28,33 @@ public abstract class AbstractLinkAnchorDelegate implements LinkProvider {
 	
 	protected List<LinkAnchor> linkAnchors = new ArrayList<LinkAnchor>();
 
+	// whether the link anchors are on the drawing. Hidden link anchors are kept,
+	// to be shown again when the cursor comes back to this element.
+	protected boolean linkAnchorsShown = false;
+
 	public void createLinkAnchors() {
 		linkAnchors.clear();
 	}
 
 	public void hideLinkAnchors() {
-		for (LinkAnchor la : linkAnchors) {
-			la.destroy();
+		if (linkAnchorsShown) {
+			for (LinkAnchor la : linkAnchors) {
+				la.destroy();
+			}
 		}
-		linkAnchors.clear();
+		linkAnchorsShown = false;
+	}
+
+	/**
+	 * Puts the link anchors that were hidden back on the drawing.
+	 */
+	protected void restoreLinkAnchors() {
+		if (!linkAnchorsShown) {
+			for (LinkAnchor la : linkAnchors) {
+				la.restore();
+			}
+		}
+		linkAnchorsShown = true;
 	}
 
 	/*
@@ -47,6 +65,8 @@ public abstract class AbstractLinkAnchorDelegate implements LinkProvider {
 	 * Point2D)
 	 */
 	public LinkAnchor getLinkAnchorAt(Point2D p) {
+		if (!linkAnchorsShown)
+			return null;
 		for (LinkAnchor la : linkAnchors) {
 			if (la.getMatchArea().contains(p)) {
 				return la;
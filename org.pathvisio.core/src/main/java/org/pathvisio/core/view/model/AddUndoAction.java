@@ -0,0 +1,102 @@
+/*******************************************************************************
+ * PathVisio, a tool for data visualization and analysis using biological pathways
+ * Copyright 2006-2021 BiGCaT Bioinformatics, WikiPathways
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package org.pathvisio.core.view.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.pathvisio.model.PathwayElement;
+import org.pathvisio.model.PathwayModel;
+import org.pathvisio.model.PathwayObject;
+
+/**
+ * Undo action for adding new elements to the pathway. While it is the most
+ * recent action, the {@link UndoManager} records the elements that are added,
+ * and undo removes them again. This avoids copying the whole pathway when only
+ * new elements are created.
+ *
+ * @author unknown
+ */
+public class AddUndoAction extends UndoAction {
+	private final List<String> addedIds = new ArrayList<String>();
+
+	public AddUndoAction(String aMessage) {
+		super(aMessage);
+	}
+
+	/**
+	 * Called by the {@link UndoManager} for each element added to the pathway
+	 * while this is the most recent action.
+	 */
+	void elementAdded(PathwayObject o) {
+		if (o.getElementId() != null) {
+			addedIds.add(o.getElementId());
+		}
+	}
+
+	/**
+	 * Called by the {@link UndoManager} for each element removed from the pathway
+	 * while this is the most recent action.
+	 */
+	void elementRemoved(PathwayObject o) {
+		addedIds.remove(o.getElementId());
+	}
+
+	/**
+	 * Returns a {@link RemoveUndoAction} that adds copies of the recorded
+	 * elements back, or a copy of the whole pathway if the elements are linked to
+	 * other elements, which copies can't restore.
+	 */
+	@Override
+	UndoAction createInverse(PathwayModel current, long changeMark) {
+		List<PathwayElement> removed = new ArrayList<PathwayElement>();
+		List<String> removedIds = new ArrayList<String>();
+		for (String id : addedIds) {
+			PathwayObject o = findElement(current, id);
+			if (o == null)
+				continue;
+			if (!InPlaceUndo.isSelfContained(o))
+				return super.createInverse(current, changeMark);
+			removed.add(((PathwayElement) o).copy().getNewElement());
+			removedIds.add(o.getElementId());
+		}
+		return new RemoveUndoAction(getMessage(), removed, removedIds);
+	}
+
+	@Override
+	long getMemorySize() {
+		return 64 + addedIds.size() * 64;
+	}
+
+	/**
+	 * Removes the recorded elements, most recently added first.
+	 */
+	@Override
+	public void undo() {
+		if (getUndoManager() == null)
+			return;
+		PathwayModel pathway = getUndoManager().getPathway();
+		if (pathway == null)
+			return;
+		for (int i = addedIds.size() - 1; i >= 0; i--) {
+			PathwayObject o = findElement(pathway, addedIds.get(i));
+			if (o != null) {
+				pathway.remove(o);
+			}
+		}
+	}
+}
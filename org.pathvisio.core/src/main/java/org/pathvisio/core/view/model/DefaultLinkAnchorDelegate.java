@@ -53,6 +53,8 @@ public class DefaultLinkAnchorDelegate extends AbstractLinkAnchorDelegate {
 			numV = ((ShapedElement) parent.getPathwayObject()).getHeight() < MIN_SIZE_LA ? 1 : numAnchors;
 		}
 		if (numH != numLinkanchorsH || numV != numLinkanchorsV) {
+			// the size changed, replace the link anchors
+			super.hideLinkAnchors();
 			linkAnchors.clear();
 			double deltaH = 2.0 / (numH + 1);
 			for (int i = 1; i <= numH; i++) {
@@ -70,13 +72,10 @@ public class DefaultLinkAnchorDelegate extends AbstractLinkAnchorDelegate {
 			}
 			numLinkanchorsH = numH;
 			numLinkanchorsV = numV;
+			linkAnchorsShown = true;
+		} else {
+			restoreLinkAnchors();
 		}
 	}
 
-	public void hideLinkAnchors() {
-		super.hideLinkAnchors();
-		numLinkanchorsV = -1;
-		numLinkanchorsH = -1;
-	}
-
 }
@@ -0,0 +1,95 @@
+/*******************************************************************************
+ * PathVisio, a tool for data visualization and analysis using biological pathways
+ * Copyright 2006-2021 BiGCaT Bioinformatics, WikiPathways
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package org.pathvisio.core.view.model;
+
+import java.awt.AlphaComposite;
+import java.awt.Color;
+import java.awt.Composite;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.util.List;
+
+/**
+ * A translucent image of the elements that are being dragged. While a large
+ * selection is dragged, {@link VPathwayModel} moves this image around in the
+ * overlay instead of moving the elements themselves, and moves the elements
+ * only once when the mouse button is released.
+ *
+ * @author unknown
+ */
+class DragPreview {
+
+	private static final float ALPHA = 0.6f;
+
+	private final BufferedImage image;
+	private final int x, y; // position of the image at the start of the drag
+	private double dx = 0, dy = 0; // distance dragged so far
+
+	/**
+	 * Renders the given elements.
+	 *
+	 * @param elements the elements, in drawing order.
+	 * @param area     the part of the drawing to render, in view coordinates.
+	 */
+	DragPreview(List<VElement> elements, Rectangle area) {
+		x = area.x;
+		y = area.y;
+		image = new BufferedImage(Math.max(1, area.width), Math.max(1, area.height), BufferedImage.TYPE_INT_ARGB);
+		Graphics2D g = image.createGraphics();
+		g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+		g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+		g.setRenderingHint(RenderingHints.KEY_FRACTIONALMETRICS, RenderingHints.VALUE_FRACTIONALMETRICS_ON);
+		g.translate(-x, -y);
+		g.setColor(Color.BLACK);
+		for (VElement o : elements) {
+			if (o.getVBounds().intersects(area)) {
+				o.draw(g);
+			}
+		}
+		g.dispose();
+	}
+
+	void moveBy(double vdx, double vdy) {
+		dx += vdx;
+		dy += vdy;
+	}
+
+	/** horizontal distance dragged so far, in view coordinates */
+	double getDx() {
+		return dx;
+	}
+
+	/** vertical distance dragged so far, in view coordinates */
+	double getDy() {
+		return dy;
+	}
+
+	/** the area covered by the image at its current position */
+	Rectangle getVBounds() {
+		return new Rectangle(x + (int) Math.round(dx), y + (int) Math.round(dy), image.getWidth(),
+				image.getHeight());
+	}
+
+	void draw(Graphics2D g2d) {
+		Composite c = g2d.getComposite();
+		g2d.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OVER, ALPHA));
+		g2d.drawImage(image, x + (int) Math.round(dx), y + (int) Math.round(dy), null);
+		g2d.setComposite(c);
+	}
+}
@@ -0,0 +1,140 @@
+/*******************************************************************************
+ * PathVisio, a tool for data visualization and analysis using biological pathways
+ * Copyright 2006-2021 BiGCaT Bioinformatics, WikiPathways
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package org.pathvisio.core.view.model;
+
+import java.awt.Shape;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Rectangle2D;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import org.pathvisio.debug.Logger;
+
+/**
+ * Calculates the outlines of many elements at once on a {@link ForkJoinPool},
+ * instead of one by one during the first paint.
+ * <p>
+ * Each element is handled by a single worker, which only reads the model and
+ * stores its results in an array (lines also fill their own geometry caches on
+ * the way). The results are handed to the elements by the calling thread,
+ * which waits for the workers to finish. The model must not be changed while
+ * this runs, which is why it is called from the thread that owns the drawing.
+ * <p>
+ * Blocking that thread is intended. The outlines are needed by the paint that
+ * follows the zoom change, which would otherwise calculate them one by one on
+ * the same thread, so waiting here only makes that wait shorter. The calling
+ * thread also runs part of the work itself. Running in the background instead
+ * would let the workers read the model and write the line caches while the
+ * drawing thread changes them, and the paint would still have to calculate
+ * every outline that isn't ready yet.
+ *
+ * @author unknown
+ */
+final class GeometryPrecomputer {
+
+	/** don't bother with fewer elements than this */
+	static final int MIN_ELEMENTS = 64;
+
+	/** number of elements calculated by a single task */
+	private static final int CHUNK_SIZE = 32;
+
+	private GeometryPrecomputer() {
+	}
+
+	/**
+	 * Calculates the outlines and bounds of the given elements for the given zoom
+	 * factor, and stores them in the element caches.
+	 *
+	 * @param elements the elements, which must not be modified concurrently.
+	 * @param zoom     the current zoom factor of the drawing.
+	 */
+	static void precompute(List<VElement> elements, double zoom) {
+		ForkJoinPool pool = ForkJoinPool.commonPool();
+		if (elements.size() < MIN_ELEMENTS || pool.getParallelism() < 2)
+			return; // calculated lazily
+
+		Result[] results = new Result[elements.size()];
+		try {
+			pool.invoke(new Task(elements, zoom, results, 0, elements.size()));
+		} catch (RuntimeException ex) {
+			// not fatal, whatever is missing is calculated when it is needed
+			Logger.log.warn("Unable to precompute element outlines", ex);
+		}
+		// invoke() runs the first task on this thread, and returning makes the
+		// results of the other workers visible to it
+		for (int i = 0; i < results.length; i++) {
+			Result r = results[i];
+			if (r != null) {
+				elements.get(i).setPrecomputedOutline(r.vOutline, r.vBounds, r.mOutline, zoom);
+			}
+		}
+	}
+
+	/**
+	 * Calculates the outline of a single element, reusing its outline in model
+	 * coordinates if it has one. Doesn't modify the element.
+	 */
+	private static Result calculate(VElement e, double zoom) {
+		Result r = new Result();
+		Shape m = e.getCachedMOutline();
+		if (m != null) {
+			r.vOutline = AffineTransform.getScaleInstance(zoom, zoom).createTransformedShape(m);
+		} else {
+			r.vOutline = e.calculateVOutline();
+			if (e.isZoomLinear()) {
+				m = AffineTransform.getScaleInstance(1 / zoom, 1 / zoom).createTransformedShape(r.vOutline);
+			}
+		}
+		r.mOutline = m;
+		r.vBounds = r.vOutline.getBounds2D();
+		return r;
+	}
+
+	private static class Result {
+		Shape vOutline;
+		Shape mOutline; // null if the element doesn't scale linearly
+		Rectangle2D vBounds;
+	}
+
+	private static class Task extends RecursiveAction {
+		private final List<VElement> elements;
+		private final double zoom;
+		private final Result[] results;
+		private final int from, to;
+
+		Task(List<VElement> elements, double zoom, Result[] results, int from, int to) {
+			this.elements = elements;
+			this.zoom = zoom;
+			this.results = results;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from > CHUNK_SIZE) {
+				int mid = (from + to) >>> 1;
+				invokeAll(new Task(elements, zoom, results, from, mid), new Task(elements, zoom, results, mid, to));
+			} else {
+				for (int i = from; i < to; i++) {
+					results[i] = calculate(elements.get(i), zoom);
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,271 @@
+/*******************************************************************************
+ * PathVisio, a tool for data visualization and analysis using biological pathways
+ * Copyright 2006-2021 BiGCaT Bioinformatics, WikiPathways
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package org.pathvisio.core.view.model;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import org.pathvisio.model.DataNode.State;
+import org.pathvisio.model.GraphLink.LinkableTo;
+import org.pathvisio.model.Group;
+import org.pathvisio.model.LineElement;
+import org.pathvisio.model.LineElement.Anchor;
+import org.pathvisio.model.LineElement.LinePoint;
+import org.pathvisio.model.PathwayModel;
+import org.pathvisio.model.PathwayObject;
+import org.pathvisio.model.ShapedElement;
+
+/**
+ * Undo action for moving, resizing and rotating elements, e.g. by dragging
+ * them, with the arrow keys or with the align and stack actions. Instead of a
+ * copy of the whole pathway, it only stores the position, size and rotation of
+ * the given elements, and the points, links and anchors of the lines that may
+ * move along with them because they are linked to them.
+ * <p>
+ * Elements are remembered by element id rather than by reference, so that the
+ * action still applies after undoing a more recent action has replaced the
+ * pathway with a snapshot, or has added an element back as a copy.
+ *
+ * @author unknown
+ */
+public class GeometryUndoAction extends UndoAction {
+
+	/** position, size and rotation of a shaped element */
+	private static class ShapeGeometry {
+		String elementId;
+		double left, top, width, height, rotation;
+	}
+
+	/** position and size of a state, relative to its data node */
+	private static class StateGeometry {
+		String elementId;
+		double relX, relY, width, height;
+	}
+
+	/** coordinates and links of all points of a line, and its anchors */
+	private static class LineGeometry {
+		String elementId;
+		double[] points;
+		String[] elementRefs; // element ids of the linked elements, or null
+		double[] relPoints; // relative positions on the linked elements
+		double[] anchorPositions;
+	}
+
+	private final List<ShapeGeometry> shapes = new ArrayList<ShapeGeometry>();
+	private final List<StateGeometry> states = new ArrayList<StateGeometry>();
+	private final List<LineGeometry> lines = new ArrayList<LineGeometry>();
+
+	/**
+	 * Records the current geometry, call this before the elements are moved.
+	 *
+	 * @param aMessage description of the action.
+	 * @param pathway  the pathway that is about to be modified.
+	 * @param elements the elements that will be moved or resized.
+	 */
+	public GeometryUndoAction(String aMessage, PathwayModel pathway, Collection<? extends PathwayObject> elements) {
+		this(aMessage, elements, pathway.getLineElements());
+	}
+
+	/**
+	 * Records the current geometry of the given elements and lines, call this
+	 * before the elements are moved.
+	 *
+	 * @param aMessage description of the action.
+	 * @param elements the elements that will be moved or resized.
+	 * @param lines    the lines that may change with them, see
+	 *                 {@link VPathwayModel#getDependentLines(Collection)}.
+	 */
+	public GeometryUndoAction(String aMessage, Collection<? extends PathwayObject> elements,
+			Collection<LineElement> lines) {
+		super(aMessage);
+		for (PathwayObject o : elements) {
+			if (o instanceof State) {
+				State st = (State) o;
+				StateGeometry g = new StateGeometry();
+				g.elementId = st.getElementId();
+				g.relX = st.getRelX();
+				g.relY = st.getRelY();
+				g.width = st.getWidth();
+				g.height = st.getHeight();
+				states.add(g);
+			} else if (o instanceof ShapedElement && !(o instanceof Group)) {
+				// the bounds of a group follow from its members
+				ShapedElement e = (ShapedElement) o;
+				ShapeGeometry g = new ShapeGeometry();
+				g.elementId = e.getElementId();
+				g.left = e.getLeft();
+				g.top = e.getTop();
+				g.width = e.getWidth();
+				g.height = e.getHeight();
+				g.rotation = e.getRotation();
+				shapes.add(g);
+			}
+		}
+		for (LineElement l : lines) {
+			List<LinePoint> lp = l.getLinePoints();
+			LineGeometry g = new LineGeometry();
+			g.elementId = l.getElementId();
+			g.points = new double[lp.size() * 2];
+			g.elementRefs = new String[lp.size()];
+			g.relPoints = new double[lp.size() * 2];
+			for (int i = 0; i < lp.size(); i++) {
+				LinePoint p = lp.get(i);
+				g.points[i * 2] = p.getX();
+				g.points[i * 2 + 1] = p.getY();
+				if (p.getElementRef() != null) {
+					g.elementRefs[i] = getElementId(p.getElementRef());
+					g.relPoints[i * 2] = p.getRelX();
+					g.relPoints[i * 2 + 1] = p.getRelY();
+				}
+			}
+			List<Anchor> anchors = l.getAnchors();
+			g.anchorPositions = new double[anchors.size()];
+			for (int i = 0; i < anchors.size(); i++) {
+				g.anchorPositions[i] = anchors.get(i).getPosition();
+			}
+			lines.add(g);
+		}
+	}
+
+	private static String getElementId(LinkableTo ref) {
+		return ((PathwayObject) ref).getElementId();
+	}
+
+	/**
+	 * Returns an action that records the current geometry of the same elements.
+	 */
+	@Override
+	UndoAction createInverse(PathwayModel current, long changeMark) {
+		List<PathwayObject> elements = new ArrayList<PathwayObject>();
+		for (ShapeGeometry g : shapes) {
+			PathwayObject o = findElement(current, g.elementId);
+			if (o != null)
+				elements.add(o);
+		}
+		for (StateGeometry g : states) {
+			PathwayObject o = findElement(current, g.elementId);
+			if (o != null)
+				elements.add(o);
+		}
+		List<LineElement> lineElements = new ArrayList<LineElement>();
+		for (LineGeometry g : lines) {
+			PathwayObject o = findElement(current, g.elementId);
+			if (o instanceof LineElement)
+				lineElements.add((LineElement) o);
+		}
+		return new GeometryUndoAction(getMessage(), elements, lineElements);
+	}
+
+	@Override
+	long getMemorySize() {
+		long result = (shapes.size() + states.size()) * 64;
+		for (LineGeometry g : lines) {
+			result += 96 + g.points.length * 20 + g.anchorPositions.length * 8;
+		}
+		return result;
+	}
+
+	/**
+	 * Restores the recorded geometry. Only values that actually differ are set,
+	 * so unaffected elements don't fire any events.
+	 */
+	@Override
+	public void undo() {
+		if (getUndoManager() == null)
+			return;
+		PathwayModel pathway = getUndoManager().getPathway();
+		if (pathway == null)
+			return;
+
+		for (ShapeGeometry g : shapes) {
+			PathwayObject o = findElement(pathway, g.elementId);
+			if (!(o instanceof ShapedElement))
+				continue;
+			ShapedElement e = (ShapedElement) o;
+			if (e.getLeft() != g.left)
+				e.setLeft(g.left);
+			if (e.getTop() != g.top)
+				e.setTop(g.top);
+			if (e.getWidth() != g.width)
+				e.setWidth(g.width);
+			if (e.getHeight() != g.height)
+				e.setHeight(g.height);
+			if (e.getRotation() != g.rotation)
+				e.setRotation(g.rotation);
+		}
+		for (StateGeometry g : states) {
+			PathwayObject o = findElement(pathway, g.elementId);
+			if (!(o instanceof State))
+				continue;
+			State st = (State) o;
+			if (st.getRelX() != g.relX)
+				st.setRelX(g.relX);
+			if (st.getRelY() != g.relY)
+				st.setRelY(g.relY);
+			if (st.getWidth() != g.width)
+				st.setWidth(g.width);
+			if (st.getHeight() != g.height)
+				st.setHeight(g.height);
+		}
+		// lines last, linked line ends have followed the elements above already
+		for (LineGeometry g : lines) {
+			PathwayObject o = findElement(pathway, g.elementId);
+			if (!(o instanceof LineElement))
+				continue;
+			LineElement l = (LineElement) o;
+			List<LinePoint> lp = l.getLinePoints();
+			if (lp.size() * 2 != g.points.length)
+				continue; // points were added or removed since, can't restore
+			for (int i = 0; i < lp.size(); i++) {
+				LinePoint p = lp.get(i);
+				restoreLink(pathway, p, g.elementRefs[i], g.relPoints[i * 2], g.relPoints[i * 2 + 1]);
+				if (p.getX() != g.points[i * 2])
+					p.setX(g.points[i * 2]);
+				if (p.getY() != g.points[i * 2 + 1])
+					p.setY(g.points[i * 2 + 1]);
+			}
+			List<Anchor> anchors = l.getAnchors();
+			if (anchors.size() != g.anchorPositions.length)
+				continue; // anchors were added or removed since
+			for (int i = 0; i < anchors.size(); i++) {
+				Anchor a = anchors.get(i);
+				if (a.getPosition() != g.anchorPositions[i])
+					a.setPosition(g.anchorPositions[i]);
+			}
+		}
+	}
+
+	/**
+	 * Links the point back to the element it was linked to, e.g. after the end
+	 * of a line was dragged onto another element.
+	 */
+	private void restoreLink(PathwayModel pathway, LinePoint p, String refId, double relX, double relY) {
+		LinkableTo ref = p.getElementRef();
+		if (refId == null) {
+			if (ref != null)
+				p.unlink();
+			return;
+		}
+		PathwayObject target = findElement(pathway, refId);
+		if (ref == target && p.getRelX() == relX && p.getRelY() == relY)
+			return;
+		if (target instanceof LinkableTo) {
+			p.linkTo((LinkableTo) target, relX, relY);
+		}
+	}
+}
@@ -68,6 +68,12 @@ public class GroupPainterRegistry {
 
 	private static final int TRANSLUCENCY_LEVEL = (int) (255 * .10);
 
+	private static final Color COLOR_COMPLEX = new Color(180, 180, 100, TRANSLUCENCY_LEVEL);
+	private static final Color COLOR_HIGHLIGHT_BLUE = new Color(0, 0, 255, (int) (255 * .05));
+	private static final Color COLOR_HIGHLIGHT_RED = new Color(255, 0, 0, (int) (255 * .05));
+	private static final BasicStroke DASHED_STROKE = new BasicStroke(1, BasicStroke.CAP_SQUARE,
+			BasicStroke.JOIN_MITER, 1, new float[] { 4, 2 }, 0);
+
 	/**
 	 * Painter for {@link GroupType#TRANSPARENT}. Group appears as transparent
 	 * rectangle. When mouse over group, fill color changes to blue #0000ff0c.
@@ -86,12 +92,11 @@ public class GroupPainterRegistry {
 			if (mouseover || anchors || selected) {
 				int sw = 1;
 				// fill
-				g.setColor(new Color(0, 0, 255, (int) (255 * .05)));
+				g.setColor(COLOR_HIGHLIGHT_BLUE);
 				g.fillRect((int) rect.getX(), (int) rect.getY(), (int) rect.getWidth(), (int) rect.getHeight());
 				// border
 				g.setColor(Color.GRAY);
-				g.setStroke(new BasicStroke(sw, BasicStroke.CAP_SQUARE, BasicStroke.JOIN_MITER, 1, new float[] { 4, 2 },
-						0));
+				g.setStroke(DASHED_STROKE);
 				g.drawRect((int) rect.getX(), (int) rect.getY(), (int) rect.getWidth() - sw,
 						(int) rect.getHeight() - sw);
 			}
@@ -148,22 +153,22 @@ public class GroupPainterRegistry {
 			outline.closePath();
 
 			// fill
-			g.setColor(new Color(180, 180, 100, TRANSLUCENCY_LEVEL));
+			g.setColor(COLOR_COMPLEX);
 			g.fill(outline);
 			// border
 			g.setColor(Color.GRAY);
-			g.setStroke(new BasicStroke());
+			g.setStroke(VElement.DEFAULT_STROKE);
 			g.draw(outline);
 
 			// Group highlight, on mouseover, linkanchors display and selection
 			if (mouseover || anchors || selected) {
 				// fill
-				g.setColor(new Color(255, 0, 0, (int) (255 * .05)));
+				g.setColor(COLOR_HIGHLIGHT_RED);
 				g.fill(outline);
 
 				// border
 				g.setColor(Color.GRAY);
-				g.setStroke(new BasicStroke());
+				g.setStroke(VElement.DEFAULT_STROKE);
 				g.draw(outline);
 			}
 		}
@@ -186,7 +191,7 @@ public class GroupPainterRegistry {
 			String label = group.getPathwayObject().getTextLabel();
 
 			int size = (int) group.vFromM(32);
-			g.setFont(new Font("Times", 0, size));
+			g.setFont(RenderCache.getFont("Times", Font.PLAIN, size));
 			Rectangle2D tb = g.getFontMetrics().getStringBounds(label, g);
 
 			// different alpha when selected and mouse over
@@ -204,12 +209,11 @@ public class GroupPainterRegistry {
 			Color c = Color.GREEN;
 
 			// fill
-			g.setColor(new Color(c.getRed(), c.getGreen(), c.getBlue(), alpha));
+			g.setColor(RenderCache.getColor(c, alpha));
 			g.fillRect((int) rect.getX(), (int) rect.getY(), (int) rect.getWidth(), (int) rect.getHeight());
 			// border
 			g.setColor(Color.GRAY);
-			g.setStroke(
-					new BasicStroke(sw, BasicStroke.CAP_SQUARE, BasicStroke.JOIN_MITER, 1, new float[] { 4, 2 }, 0));
+			g.setStroke(DASHED_STROKE);
 			g.drawRect((int) rect.getX(), (int) rect.getY(), (int) rect.getWidth() - sw, (int) rect.getHeight() - sw);
 		}
 	};
@@ -231,23 +235,21 @@ public class GroupPainterRegistry {
 			int sw = 1;
 			Rectangle2D rect = group.getVBounds();
 			// fill
-			g.setColor(new Color(180, 180, 100, TRANSLUCENCY_LEVEL));
+			g.setColor(COLOR_COMPLEX);
 			g.fillRect((int) rect.getX(), (int) rect.getY(), (int) rect.getWidth(), (int) rect.getHeight());
 			// border
 			g.setColor(Color.GRAY);
-			g.setStroke(
-					new BasicStroke(sw, BasicStroke.CAP_SQUARE, BasicStroke.JOIN_MITER, 1, new float[] { 4, 2 }, 0));
+			g.setStroke(DASHED_STROKE);
 			g.drawRect((int) rect.getX(), (int) rect.getY(), (int) rect.getWidth() - sw, (int) rect.getHeight() - sw);
 
 			// Group highlight, on mouseover, linkanchors display and selection
 			if (mouseover || anchors || selected) {
 				// fill
-				g.setColor(new Color(255, 0, 0, (int) (255 * .05)));
+				g.setColor(COLOR_HIGHLIGHT_RED);
 				g.fillRect((int) rect.getX(), (int) rect.getY(), (int) rect.getWidth(), (int) rect.getHeight());
 				// border
 				g.setColor(Color.GRAY);
-				g.setStroke(new BasicStroke(sw, BasicStroke.CAP_SQUARE, BasicStroke.JOIN_MITER, 1, new float[] { 4, 2 },
-						0));
+				g.setStroke(DASHED_STROKE);
 				g.drawRect((int) rect.getX(), (int) rect.getY(), (int) rect.getWidth() - sw,
 						(int) rect.getHeight() - sw);
 			}
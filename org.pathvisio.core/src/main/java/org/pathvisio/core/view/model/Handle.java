@@ -33,6 +33,8 @@ import org.pathvisio.core.view.Adjustable;
  */
 public class Handle extends VElement
 {
+	private static final Color SEGMENT_COLOR = new Color(0, 128, 255);
+
 	//The direction this handle is allowed to move in
 	final private Freedom freedom;
 
@@ -201,7 +203,7 @@ public class Handle extends VElement
 			g.setColor(Color.GREEN);
 			break;
 		case SEGMENT:
-			g.setColor(new Color(0, 128, 255));
+			g.setColor(SEGMENT_COLOR);
 			break;
 		default:
 			g.setColor(Color.YELLOW);
@@ -0,0 +1,387 @@
+/*******************************************************************************
+ * PathVisio, a tool for data visualization and analysis using biological pathways
+ * Copyright 2006-2021 BiGCaT Bioinformatics, WikiPathways
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package org.pathvisio.core.view.model;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+import org.pathvisio.debug.Logger;
+import org.pathvisio.model.CopyElement;
+import org.pathvisio.model.DataNode;
+import org.pathvisio.model.DataNode.State;
+import org.pathvisio.model.GraphLink.LinkableTo;
+import org.pathvisio.model.Group;
+import org.pathvisio.model.Groupable;
+import org.pathvisio.model.LineElement;
+import org.pathvisio.model.LineElement.Anchor;
+import org.pathvisio.model.LineElement.LinePoint;
+import org.pathvisio.model.Pathway;
+import org.pathvisio.model.PathwayElement;
+import org.pathvisio.model.PathwayElement.AnnotationRef;
+import org.pathvisio.model.PathwayElement.CitationRef;
+import org.pathvisio.model.PathwayElement.EvidenceRef;
+import org.pathvisio.model.PathwayModel;
+import org.pathvisio.model.PathwayObject;
+
+/**
+ * Restores a copy of the pathway by changing only the elements that differ,
+ * instead of replacing the whole pathway, which rebuilds the whole view.
+ * <p>
+ * The {@link UndoManager} keeps track of the elements that changed since the
+ * copy was made. For each of them that is in both pathways, the properties that
+ * differ are set to their value in the copy, and line points are moved and
+ * linked back. The element keeps its view object, selection and cached shapes.
+ * Only elements that were added since are removed, and elements that were
+ * removed since are added back as copies, just like pasting.
+ * <p>
+ * Some changes can't be restored this way, such as grouping, adding a state or
+ * removing an element that other elements link to. Everything is checked before
+ * the pathway is changed: in those cases, or when too much changed, nothing is
+ * done and the caller replaces the whole pathway.
+ *
+ * @author unknown
+ */
+final class InPlaceUndo {
+
+	/** replace the whole pathway if more than this part of it changed */
+	static final double MAX_CHANGED_FRACTION = 0.25;
+
+	private final PathwayModel current;
+	private final UndoManager undoMgr;
+
+	private final List<PathwayElement> toRemove = new ArrayList<PathwayElement>();
+	private final List<PathwayElement> toAdd = new ArrayList<PathwayElement>();
+	private final Set<String> addedIds = new HashSet<String>();
+	private final List<Runnable> updates = new ArrayList<Runnable>();
+
+	private InPlaceUndo(PathwayModel current, UndoManager undoMgr) {
+		this.current = current;
+		this.undoMgr = undoMgr;
+	}
+
+	/**
+	 * Makes the given elements of the pathway equal to those of the target.
+	 *
+	 * @param current the pathway that is shown.
+	 * @param target  the copy of the pathway to restore.
+	 * @param changed ids of all elements that may differ between the two.
+	 * @param undoMgr the undo manager, which is told about copies that get
+	 *                another id than the element they replace.
+	 * @param view    the view of the current pathway, or null.
+	 * @return false if nothing was changed, because the changes can't be
+	 *         restored in place.
+	 */
+	static boolean apply(PathwayModel current, PathwayModel target, Collection<String> changed, UndoManager undoMgr,
+			VPathwayModel view) {
+		if (changed.size() > MAX_CHANGED_FRACTION * current.getPathwayObjects().size())
+			return false;
+
+		// check everything first, so that nothing is changed if we have to give up
+		InPlaceUndo u = new InPlaceUndo(current, undoMgr);
+		if (!u.plan(target, changed))
+			return false;
+
+		if (view != null)
+			view.beginBatch();
+		try {
+			u.run();
+		} catch (RuntimeException ex) {
+			// not expected after the checks, the caller replaces the whole pathway,
+			// which also undoes the part done here
+			Logger.log.warn("Unable to undo in place", ex);
+			return false;
+		} finally {
+			if (view != null)
+				view.endBatch();
+		}
+		return true;
+	}
+
+	/**
+	 * Works out what has to change, without changing anything.
+	 *
+	 * @return false if the changes can't be restored in place.
+	 */
+	private boolean plan(PathwayModel target, Collection<String> changed) {
+		List<PathwayObject[]> both = new ArrayList<PathwayObject[]>();
+		for (String id : changed) {
+			PathwayObject cur = current.getPathwayObject(id);
+			PathwayObject tgt = target.getPathwayObject(id);
+			if (cur == null && tgt == null)
+				continue;
+			if (tgt == null) {
+				// added since the copy was made
+				if (!isSelfContained(cur, true))
+					return false;
+				toRemove.add((PathwayElement) cur);
+			} else if (cur == null) {
+				// removed since the copy was made
+				if (!isSelfContained(tgt, true))
+					return false;
+				toAdd.add((PathwayElement) tgt);
+				addedIds.add(id);
+			} else if (cur.getClass() != tgt.getClass()) {
+				return false;
+			} else if (cur instanceof PathwayElement) {
+				both.add(new PathwayObject[] { cur, tgt });
+			} else if (!(cur instanceof Anchor)) {
+				// anchors are restored with their line, other objects such as
+				// citations are not
+				return false;
+			}
+		}
+		for (PathwayObject[] pair : both) {
+			if (!planUpdate((PathwayElement) pair[0], (PathwayElement) pair[1]))
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Plans setting the properties of the current element that differ from those
+	 * of the target.
+	 *
+	 * @return false if the element can't be restored in place.
+	 */
+	private boolean planUpdate(final PathwayElement cur, PathwayElement tgt) {
+		// references to other elements are compared by id, changes of group
+		// membership, aliases and states need the whole pathway
+		if (cur instanceof Groupable && !isSame(((Groupable) cur).getGroupRef(), ((Groupable) tgt).getGroupRef()))
+			return false;
+		if (cur instanceof DataNode) {
+			DataNode c = (DataNode) cur;
+			DataNode t = (DataNode) tgt;
+			if (!isSame(c.getAliasRef(), t.getAliasRef()) || !isSameElements(c.getStates(), t.getStates()))
+				return false;
+		}
+		if (!isSameRefs(cur, tgt))
+			return false;
+
+		Set<Object> keys = new LinkedHashSet<Object>();
+		keys.addAll(tgt.getStaticPropertyKeys());
+		keys.addAll(cur.getStaticPropertyKeys());
+		keys.addAll(tgt.getDynamicPropertyKeys());
+		keys.addAll(cur.getDynamicPropertyKeys());
+		for (final Object key : keys) {
+			final Object value = tgt.getPropertyEx(key);
+			Object old = cur.getPropertyEx(key);
+			if (value instanceof PathwayObject || old instanceof PathwayObject)
+				continue; // references, see above and below
+			if (Objects.equals(value, old))
+				continue;
+			if (value instanceof Collection || value instanceof Map)
+				return false;
+			updates.add(() -> cur.setPropertyEx(key, value));
+		}
+
+		if (cur instanceof LineElement) {
+			return planLineUpdate((LineElement) cur, (LineElement) tgt);
+		}
+		return true;
+	}
+
+	/**
+	 * Plans moving and linking the points of the current line, and moving its
+	 * anchors, like in the target.
+	 */
+	private boolean planLineUpdate(LineElement cur, LineElement tgt) {
+		List<LinePoint> cp = cur.getLinePoints();
+		List<LinePoint> tp = tgt.getLinePoints();
+		if (cp.size() != tp.size())
+			return false;
+		for (int i = 0; i < cp.size(); i++) {
+			final LinePoint c = cp.get(i);
+			LinePoint t = tp.get(i);
+			final String refId = t.getElementRef() == null ? null : getElementId(t.getElementRef());
+			if (refId != null && current.getPathwayObject(refId) == null && !addedIds.contains(refId))
+				return false;
+			final double x = t.getX(), y = t.getY(), relX = t.getRelX(), relY = t.getRelY();
+			boolean linked = c.getElementRef() == null ? refId == null
+					: refId != null && refId.equals(getElementId(c.getElementRef())) && c.getRelX() == relX
+							&& c.getRelY() == relY;
+			if (!linked || c.getX() != x || c.getY() != y) {
+				updates.add(() -> {
+					link(c, refId, relX, relY);
+					c.setX(x);
+					c.setY(y);
+				});
+			}
+		}
+
+		List<Anchor> ca = cur.getAnchors();
+		List<Anchor> ta = tgt.getAnchors();
+		if (!isSameElements(ca, ta))
+			return false;
+		for (int i = 0; i < ca.size(); i++) {
+			final Anchor c = ca.get(i);
+			Anchor t = ta.get(i);
+			if (!c.getShapeType().equals(t.getShapeType()))
+				return false;
+			final double position = t.getPosition();
+			if (c.getPosition() != position) {
+				updates.add(() -> c.setPosition(position));
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Makes the planned changes: removes the elements added since the copy was
+	 * made, adds back copies of those removed since, and restores the properties
+	 * of the others.
+	 */
+	private void run() {
+		for (PathwayElement o : toRemove) {
+			current.remove(o);
+		}
+		List<LineElement[]> lines = new ArrayList<LineElement[]>();
+		for (PathwayElement o : toAdd) {
+			CopyElement c = o.copy();
+			PathwayElement p = c.getNewElement();
+			current.add(p);
+			// older actions find elements by id
+			undoMgr.elementReplaced(o.getElementId(), p.getElementId());
+			c.loadReferences(); // load annotations/citations/evidences
+			if (p instanceof LineElement) {
+				lines.add(new LineElement[] { (LineElement) p, (LineElement) o });
+			}
+		}
+		// link the ends of added lines once all elements are back
+		for (LineElement[] pair : lines) {
+			List<LinePoint> cp = pair[0].getLinePoints();
+			List<LinePoint> tp = pair[1].getLinePoints();
+			for (int i = 0; i < cp.size() && i < tp.size(); i++) {
+				LinePoint t = tp.get(i);
+				if (t.getElementRef() != null) {
+					link(cp.get(i), getElementId(t.getElementRef()), t.getRelX(), t.getRelY());
+				}
+			}
+			pair[0].getConnectorShape().recalculateShape(pair[0]);
+		}
+		for (Runnable r : updates) {
+			r.run();
+		}
+	}
+
+	private void link(LinePoint p, String refId, double relX, double relY) {
+		if (refId == null) {
+			if (p.getElementRef() != null)
+				p.unlink();
+			return;
+		}
+		PathwayObject ref = undoMgr.findElement(current, refId);
+		if (ref instanceof LinkableTo) {
+			p.linkTo((LinkableTo) ref, relX, relY);
+		}
+	}
+
+	private static String getElementId(LinkableTo ref) {
+		return ((PathwayObject) ref).getElementId();
+	}
+
+	/** true if both are null or have the same element id */
+	private static boolean isSame(PathwayObject a, PathwayObject b) {
+		if (a == null || b == null)
+			return a == b;
+		return Objects.equals(a.getElementId(), b.getElementId());
+	}
+
+	/** true if both lists have elements with the same ids, in the same order */
+	private static boolean isSameElements(List<? extends PathwayObject> a, List<? extends PathwayObject> b) {
+		if (a.size() != b.size())
+			return false;
+		for (int i = 0; i < a.size(); i++) {
+			if (!isSame(a.get(i), b.get(i)))
+				return false;
+		}
+		return true;
+	}
+
+	/** true if both elements refer to the same annotations, citations and evidences */
+	private static boolean isSameRefs(PathwayElement cur, PathwayElement tgt) {
+		List<AnnotationRef> ca = cur.getAnnotationRefs();
+		List<AnnotationRef> ta = tgt.getAnnotationRefs();
+		List<CitationRef> cc = cur.getCitationRefs();
+		List<CitationRef> tc = tgt.getCitationRefs();
+		List<EvidenceRef> ce = cur.getEvidenceRefs();
+		List<EvidenceRef> te = tgt.getEvidenceRefs();
+		if (ca.size() != ta.size() || cc.size() != tc.size() || ce.size() != te.size())
+			return false;
+		for (int i = 0; i < ca.size(); i++) {
+			if (!isSame(ca.get(i).getAnnotation(), ta.get(i).getAnnotation()))
+				return false;
+		}
+		for (int i = 0; i < cc.size(); i++) {
+			if (!isSame(cc.get(i).getCitation(), tc.get(i).getCitation()))
+				return false;
+		}
+		for (int i = 0; i < ce.size(); i++) {
+			if (!isSame(ce.get(i).getEvidence(), te.get(i).getEvidence()))
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Returns true if the element can be removed and added again as a copy
+	 * without affecting any other element.
+	 */
+	static boolean isSelfContained(PathwayObject o) {
+		return isSelfContained(o, false);
+	}
+
+	/**
+	 * Returns true if the element can be removed and added again as a copy
+	 * without affecting any other element.
+	 *
+	 * @param linkedEnds true if the ends of lines may be linked to other
+	 *                   elements, which are linked again after adding the copy.
+	 */
+	static boolean isSelfContained(PathwayObject o, boolean linkedEnds) {
+		if (!(o instanceof PathwayElement) || o instanceof Group || o instanceof State
+				|| o.getClass() == Pathway.class)
+			return false;
+		if (o instanceof Groupable && ((Groupable) o).getGroupRef() != null)
+			return false;
+		if (o instanceof LinkableTo && !((LinkableTo) o).getLinkableFroms().isEmpty())
+			return false;
+		if (o instanceof DataNode) {
+			DataNode d = (DataNode) o;
+			if (!d.getStates().isEmpty() || d.getAliasRef() != null)
+				return false;
+		}
+		if (o instanceof LineElement) {
+			LineElement l = (LineElement) o;
+			for (Anchor a : l.getAnchors()) {
+				if (!linkedEnds || !a.getLinkableFroms().isEmpty())
+					return false;
+			}
+			for (LinePoint p : l.getLinePoints()) {
+				if (!linkedEnds && p.getElementRef() != null)
+					return false;
+			}
+		}
+		PathwayElement e = (PathwayElement) o;
+		return e.getCitationRefs().isEmpty() && e.getAnnotationRefs().isEmpty() && e.getEvidenceRefs().isEmpty();
+	}
+}
@@ -38,6 +38,8 @@ public class LinkAnchor extends VElement {
 	static final double DRAW_RADIUS = 5;
 	static final double MATCH_RADIUS = DRAW_RADIUS + 5;
 	static final int HINT_STROKE_SIZE = 10;
+	private static final BasicStroke HINT_STROKE = new BasicStroke(HINT_STROKE_SIZE);
+	private static final Color HINT_COLOR = new Color(0, 255, 0, 128);
 
 	double relX, relY;
 	LinkableTo linkableTo;
@@ -66,7 +68,7 @@ public class LinkAnchor extends VElement {
 		Shape s = canvas.vFromM(new Ellipse2D.Double(abs.getX() - DRAW_RADIUS, abs.getY() - DRAW_RADIUS,
 				DRAW_RADIUS * 2, DRAW_RADIUS * 2));
 		if (drawHighlight && includeHighlight) {
-			return new BasicStroke(HINT_STROKE_SIZE).createStrokedShape(s);
+			return HINT_STROKE.createStrokedShape(s);
 		} else {
 			return s;
 		}
@@ -79,7 +81,7 @@ public class LinkAnchor extends VElement {
 	@Override
 	public void doDraw(Graphics2D g2d) {
 		if (drawHighlight) {
-			g2d.setColor(new Color(0, 255, 0, 128));
+			g2d.setColor(HINT_COLOR);
 			g2d.fill(getShape());
 		}
 
@@ -94,7 +96,7 @@ public class LinkAnchor extends VElement {
 		Ellipse2D white = new Ellipse2D.Double(cx - r * 2 / 3, cy - r * 2 / 3, 4 * r / 3, 4 * r / 3);
 		Ellipse2D inner = new Ellipse2D.Double(cx - r / 3, cy - r / 3, 2 * r / 3, 2 * r / 3);
 
-		Color fill = new Color(255, 0, 0, 255);
+		Color fill = Color.RED;
 
 		g2d.setColor(fill);
 		g2d.fill(outer);
@@ -136,6 +138,15 @@ public class LinkAnchor extends VElement {
 		return getShape();
 	}
 
+	/**
+	 * Hidden link anchors may be shown again later, without the highlight.
+	 */
+	@Override
+	protected void destroy() {
+		drawHighlight = false;
+		super.destroy();
+	}
+
 	@Override
 	public int getZOrder() {
 		return vLinkableTo.getZOrder() + 1;
@@ -0,0 +1,88 @@
+/*******************************************************************************
+ * PathVisio, a tool for data visualization and analysis using biological pathways
+ * Copyright 2006-2021 BiGCaT Bioinformatics, WikiPathways
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package org.pathvisio.core.view.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.pathvisio.model.CopyElement;
+import org.pathvisio.model.LineElement;
+import org.pathvisio.model.PathwayElement;
+import org.pathvisio.model.PathwayModel;
+
+/**
+ * Undo action for removing elements that are not linked to anything, which is
+ * what undoing an {@link AddUndoAction} does. Undo adds copies of the elements
+ * back, just like pasting. Its own inverse is an {@link AddUndoAction}, which
+ * the {@link UndoManager} fills with the elements that are added back.
+ * <p>
+ * A copy may get another element id than the element it replaces. The undo
+ * manager remembers the new id, so that older actions still find the element,
+ * see {@link UndoManager#elementReplaced(String, String)}.
+ *
+ * @author unknown
+ */
+public class RemoveUndoAction extends UndoAction {
+	private final List<PathwayElement> removed;
+	private final List<String> removedIds;
+
+	/**
+	 * @param aMessage   description of the action.
+	 * @param removed    copies of the removed elements, in the order they were
+	 *                   added to the pathway.
+	 * @param removedIds the element ids of the removed elements, in the same
+	 *                   order.
+	 */
+	public RemoveUndoAction(String aMessage, List<PathwayElement> removed, List<String> removedIds) {
+		super(aMessage);
+		this.removed = new ArrayList<PathwayElement>(removed);
+		this.removedIds = new ArrayList<String>(removedIds);
+	}
+
+	@Override
+	UndoAction createInverse(PathwayModel current, long changeMark) {
+		return new AddUndoAction(getMessage());
+	}
+
+	@Override
+	long getMemorySize() {
+		return 64 + removed.size() * LIVE_OBJECT_SIZE;
+	}
+
+	/**
+	 * Adds copies of the removed elements back to the pathway.
+	 */
+	@Override
+	public void undo() {
+		if (getUndoManager() == null)
+			return;
+		PathwayModel pathway = getUndoManager().getPathway();
+		if (pathway == null)
+			return;
+		for (int i = 0; i < removed.size(); i++) {
+			// copy again, so that the action can be used more than once
+			CopyElement c = removed.get(i).copy();
+			PathwayElement p = c.getNewElement();
+			pathway.add(p);
+			getUndoManager().elementReplaced(removedIds.get(i), p.getElementId());
+			c.loadReferences(); // load annotations/citations/evidences
+			if (p instanceof LineElement) {
+				((LineElement) p).getConnectorShape().recalculateShape((LineElement) p);
+			}
+		}
+	}
+}
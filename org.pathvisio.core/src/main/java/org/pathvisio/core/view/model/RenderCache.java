@@ -0,0 +1,173 @@
+/*******************************************************************************
+ * PathVisio, a tool for data visualization and analysis using biological pathways
+ * Copyright 2006-2021 BiGCaT Bioinformatics, WikiPathways
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package org.pathvisio.core.view.model;
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Font;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Shared cache of the fonts, strokes and translucent colors used while
+ * drawing, so that elements don't need to create new ones on every paint.
+ * <p>
+ * All returned objects are immutable and may be shared. Each cache holds at
+ * most {@link #MAX_ENTRIES} objects, the least recently used are dropped
+ * first. The methods are thread safe.
+ * 
+ * @author unknown
+ */
+public final class RenderCache {
+
+	static final int MAX_ENTRIES = 512;
+
+	private static final Map<FontKey, Font> fonts = createCache();
+	private static final Map<StrokeKey, BasicStroke> strokes = createCache();
+	private static final Map<Long, Color> colors = createCache();
+
+	private RenderCache() {
+	}
+
+	private static <K, V> Map<K, V> createCache() {
+		return Collections.synchronizedMap(new LinkedHashMap<K, V>(64, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+				return size() > MAX_ENTRIES;
+			}
+		});
+	}
+
+	/**
+	 * Returns a font with the given name, style and (fractional) size.
+	 * 
+	 * @param name  the font name, may be null for the default font.
+	 * @param style the style, e.g. {@link Font#BOLD}.
+	 * @param size  the point size.
+	 */
+	public static Font getFont(String name, int style, float size) {
+		FontKey key = new FontKey(name, style, size);
+		Font f = fonts.get(key);
+		if (f == null) {
+			f = new Font(name, style, 12).deriveFont(size);
+			fonts.put(key, f);
+		}
+		return f;
+	}
+
+	/**
+	 * Returns a solid stroke with the given width, equal to
+	 * <code>new BasicStroke(width)</code>.
+	 */
+	public static BasicStroke getStroke(float width) {
+		return getStroke(width, BasicStroke.CAP_SQUARE, BasicStroke.JOIN_MITER, 10, null);
+	}
+
+	/**
+	 * Returns a stroke with the given attributes, equal to
+	 * <code>new BasicStroke(width, cap, join, miterLimit, dash, 0)</code>.
+	 * 
+	 * @param dash the dash pattern, or null for a solid stroke. The array is not
+	 *             modified or kept.
+	 */
+	public static BasicStroke getStroke(float width, int cap, int join, float miterLimit, float[] dash) {
+		StrokeKey key = new StrokeKey(width, cap, join, miterLimit, dash);
+		BasicStroke s = strokes.get(key);
+		if (s == null) {
+			s = new BasicStroke(width, cap, join, miterLimit, dash, 0);
+			key.dash = dash == null ? null : dash.clone();
+			strokes.put(key, s);
+		}
+		return s;
+	}
+
+	/**
+	 * Returns the given color with a different alpha value.
+	 * 
+	 * @param c     the color.
+	 * @param alpha the alpha value, between 0 and 255.
+	 */
+	public static Color getColor(Color c, int alpha) {
+		if (c.getAlpha() == alpha)
+			return c;
+		Long key = ((long) alpha << 32) | (c.getRGB() & 0xffffffL);
+		Color result = colors.get(key);
+		if (result == null) {
+			result = new Color(c.getRed(), c.getGreen(), c.getBlue(), alpha);
+			colors.put(key, result);
+		}
+		return result;
+	}
+
+	private static final class FontKey {
+		final String name;
+		final int style;
+		final float size;
+
+		FontKey(String name, int style, float size) {
+			this.name = name;
+			this.style = style;
+			this.size = size;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (!(o instanceof FontKey))
+				return false;
+			FontKey k = (FontKey) o;
+			return style == k.style && size == k.size && Objects.equals(name, k.name);
+		}
+
+		@Override
+		public int hashCode() {
+			return (Objects.hashCode(name) * 31 + style) * 31 + Float.floatToIntBits(size);
+		}
+	}
+
+	private static final class StrokeKey {
+		final float width;
+		final int cap;
+		final int join;
+		final float miterLimit;
+		float[] dash;
+
+		StrokeKey(float width, int cap, int join, float miterLimit, float[] dash) {
+			this.width = width;
+			this.cap = cap;
+			this.join = join;
+			this.miterLimit = miterLimit;
+			this.dash = dash;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (!(o instanceof StrokeKey))
+				return false;
+			StrokeKey k = (StrokeKey) o;
+			return width == k.width && cap == k.cap && join == k.join && miterLimit == k.miterLimit
+					&& Arrays.equals(dash, k.dash);
+		}
+
+		@Override
+		public int hashCode() {
+			return ((Float.floatToIntBits(width) * 31 + cap) * 31 + join) * 31 + Arrays.hashCode(dash);
+		}
+	}
+}
@@ -0,0 +1,48 @@
+/*******************************************************************************
+ * PathVisio, a tool for data visualization and analysis using biological pathways
+ * Copyright 2006-2021 BiGCaT Bioinformatics, WikiPathways
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package org.pathvisio.core.view.model;
+
+import java.awt.Graphics2D;
+
+/**
+ * Implement this to paint on top of elements after they are drawn, e.g. to
+ * color data nodes by data values. Register with
+ * {@link VPathwayModel#addRenderHook(RenderHook)}.
+ * <p>
+ * Hooks are only called for the element type they declare, so that drawing
+ * elements that no hook is interested in costs nothing extra.
+ * 
+ * @author unknown
+ */
+public interface RenderHook {
+
+	/**
+	 * Returns the type of elements this hook wants to paint on, e.g.
+	 * VPathwayObject.class. The hook is called for instances of this type and
+	 * its subclasses.
+	 */
+	public Class<? extends VElement> getElementType();
+
+	/**
+	 * Called after an element of the declared type is drawn.
+	 * 
+	 * @param e   the element that was drawn.
+	 * @param g2d a copy of the graphics the drawing is painted on, not clipped to
+	 *            the element. It may be changed freely.
+	 */
+	public void elementDrawn(VElement e, Graphics2D g2d);
+}
@@ -0,0 +1,255 @@
+/*******************************************************************************
+ * PathVisio, a tool for data visualization and analysis using biological pathways
+ * Copyright 2006-2021 BiGCaT Bioinformatics, WikiPathways
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package org.pathvisio.core.view.model;
+
+import java.awt.Rectangle;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.swing.Timer;
+
+/**
+ * Collects the dirty areas of a {@link VPathwayModel} and passes them on to
+ * its {@link VPathwayWrapper} at most once per frame.
+ * <p>
+ * Moving many elements at once marks each of them dirty, with both its old and
+ * its new bounds. Instead of a repaint request per rectangle, the rectangles
+ * are merged into a small number of non-overlapping areas. When there are too
+ * many of them, or they cover most of the visible area, the visible area is
+ * repainted as a whole.
+ * <p>
+ * Dirty areas of the static layer and of the overlay are kept apart, so that
+ * the static layer is only invalidated where it really changed.
+ *
+ * @author unknown
+ */
+public class RepaintScheduler implements ActionListener {
+
+	/** above this number of separate areas, they are merged into one */
+	static final int MAX_AREAS = 8;
+
+	/** repaint the whole view when the dirty area covers more than this part */
+	static final double FULL_REPAINT_FRACTION = 0.5;
+
+	private final VPathwayWrapper target;
+	private final Timer timer;
+	private int frameInterval; // in ms
+	private long lastFlush = 0;
+
+	private final List<Rectangle> staticAreas = new ArrayList<Rectangle>();
+	private final List<Rectangle> overlayAreas = new ArrayList<Rectangle>();
+
+	// statistics
+	private long requests = 0;
+	private long flushes = 0;
+	private long repaints = 0;
+	private long fullRepaints = 0;
+
+	/**
+	 * @param target the wrapper that does the actual repainting.
+	 * @param maxFps the maximum number of flushes per second.
+	 */
+	public RepaintScheduler(VPathwayWrapper target, int maxFps) {
+		this.target = target;
+		timer = new Timer(0, this);
+		timer.setRepeats(false);
+		setMaxFps(maxFps);
+	}
+
+	/**
+	 * Sets the maximum number of times per second that dirty areas are passed on
+	 * to the wrapper. Use 0 or less to pass them on as soon as the event queue
+	 * gets to it.
+	 */
+	public synchronized void setMaxFps(int maxFps) {
+		frameInterval = maxFps > 0 ? 1000 / maxFps : 0;
+	}
+
+	/**
+	 * Returns the maximum number of flushes per second, or 0 if there is no
+	 * limit.
+	 */
+	public synchronized int getMaxFps() {
+		return frameInterval > 0 ? 1000 / frameInterval : 0;
+	}
+
+	/**
+	 * Schedules a repaint of the given area.
+	 *
+	 * @param r           the dirty area, in view coordinates.
+	 * @param staticLayer true if the static layer changed, false if only the
+	 *                    overlay needs to be repainted.
+	 */
+	public synchronized void addDirty(Rectangle r, boolean staticLayer) {
+		if (r.isEmpty())
+			return;
+		requests++;
+		if (staticLayer) {
+			merge(staticAreas, r);
+		} else {
+			merge(overlayAreas, r);
+		}
+		schedule();
+	}
+
+	/**
+	 * Adds r to the list of areas, merging it with the areas it overlaps.
+	 */
+	private static void merge(List<Rectangle> areas, Rectangle r) {
+		Rectangle merged = new Rectangle(r);
+		boolean grown = true;
+		while (grown) {
+			grown = false;
+			for (int i = areas.size() - 1; i >= 0; i--) {
+				Rectangle a = areas.get(i);
+				if (a.contains(merged)) {
+					return; // nothing new
+				}
+				if (a.intersects(merged)) {
+					merged.add(a);
+					areas.remove(i);
+					grown = true;
+				}
+			}
+		}
+		areas.add(merged);
+		if (areas.size() > MAX_AREAS) {
+			Rectangle union = areas.get(0);
+			for (int i = 1; i < areas.size(); i++) {
+				union.add(areas.get(i));
+			}
+			areas.clear();
+			areas.add(union);
+		}
+	}
+
+	private void schedule() {
+		if (timer.isRunning())
+			return;
+		long wait = lastFlush + frameInterval - System.currentTimeMillis();
+		timer.setInitialDelay((int) Math.max(0, Math.min(wait, frameInterval)));
+		timer.start();
+	}
+
+	/** Called by the timer on the event dispatch thread */
+	public void actionPerformed(ActionEvent e) {
+		flush();
+	}
+
+	/**
+	 * Passes all collected dirty areas on to the wrapper now.
+	 */
+	public void flush() {
+		List<Rectangle> s, o;
+		Rectangle full = null;
+		synchronized (this) {
+			timer.stop();
+			if (staticAreas.isEmpty() && overlayAreas.isEmpty())
+				return;
+			lastFlush = System.currentTimeMillis();
+			flushes++;
+			Rectangle view = target.getViewRect();
+			if (view != null && !view.isEmpty() && area(staticAreas, view) > FULL_REPAINT_FRACTION * area(view)) {
+				// cheaper to repaint everything that is visible, the overlay included
+				full = view;
+				fullRepaints++;
+				s = o = new ArrayList<Rectangle>();
+			} else {
+				s = new ArrayList<Rectangle>(staticAreas);
+				o = new ArrayList<Rectangle>(overlayAreas);
+				repaints += s.size() + o.size();
+			}
+			staticAreas.clear();
+			overlayAreas.clear();
+		}
+		// call the wrapper outside of the lock, it may call back into the model
+		if (full != null) {
+			target.redraw(full);
+		}
+		for (Rectangle r : s) {
+			target.redraw(r);
+		}
+		for (Rectangle r : o) {
+			target.redrawOverlay(r);
+		}
+	}
+
+	/**
+	 * Drops the collected dirty areas, e.g. because everything will be repainted
+	 * anyway.
+	 */
+	public synchronized void clear() {
+		timer.stop();
+		staticAreas.clear();
+		overlayAreas.clear();
+	}
+
+	/**
+	 * Stops the timer, pending areas are dropped.
+	 */
+	public void dispose() {
+		clear();
+	}
+
+	private static double area(Rectangle r) {
+		return (double) r.width * r.height;
+	}
+
+	/** the visible part of the areas, which don't overlap */
+	private static double area(List<Rectangle> areas, Rectangle view) {
+		double result = 0;
+		for (Rectangle r : areas) {
+			Rectangle v = r.intersection(view);
+			if (!v.isEmpty())
+				result += area(v);
+		}
+		return result;
+	}
+
+	/** Returns the number of dirty areas that were added. */
+	public synchronized long getRequestCount() {
+		return requests;
+	}
+
+	/** Returns the number of times the collected areas were passed on. */
+	public synchronized long getFlushCount() {
+		return flushes;
+	}
+
+	/** Returns the number of repaint calls made on the wrapper. */
+	public synchronized long getRepaintCount() {
+		return repaints + fullRepaints;
+	}
+
+	/** Returns the number of times the whole view was repainted instead. */
+	public synchronized long getFullRepaintCount() {
+		return fullRepaints;
+	}
+
+	/** Sets all statistics back to 0. */
+	public synchronized void resetStatistics() {
+		requests = flushes = repaints = fullRepaints = 0;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return "RepaintScheduler: " + requests + " dirty areas, " + flushes + " flushes, " + getRepaintCount()
+				+ " repaints (" + fullRepaints + " full)";
+	}
+}
@@ -21,8 +21,10 @@ import java.awt.Graphics2D;
 import java.awt.geom.Point2D;
 import java.awt.geom.Rectangle2D;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.EventObject;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
 
@@ -43,6 +45,9 @@ import org.pathvisio.core.view.Adjustable;
  * coordinates can be recalculated.
  */
 public class SelectionBox extends VElement implements Adjustable {
+	private static final BasicStroke SELECTION_STROKE = new BasicStroke(1, BasicStroke.CAP_SQUARE,
+			BasicStroke.JOIN_MITER, 1, new float[] { 1, 2 }, 0);
+
 	// Corner handles
 	// These handles are not actually visible, they are just dummy objects to
 	// mark which corner is being dragged.
@@ -65,6 +70,11 @@ public class SelectionBox extends VElement implements Adjustable {
 
 	boolean isVisible;
 
+	// state of the rubber band selection, see updateRubberBand
+	private Rectangle2D rubberBand = null; // bounds at the previous update
+	private Set<VElement> rubberBandHits = new HashSet<VElement>(); // elements intersecting the band
+	private Set<VPathwayObject> rubberBandGroupMembers = new HashSet<VPathwayObject>();
+
 	public SelectionBox(VPathwayModel canvas) {
 		super(canvas);
 
@@ -142,7 +152,7 @@ public class SelectionBox extends VElement implements Adjustable {
 				return o;
 		}
 		// Nothing in selection, check all other objects
-		for (VElement o : canvas.getDrawingObjects()) {
+		for (VElement o : canvas.getCandidatesAt(p)) {
 			if (o.vContains(p) && o != this)
 				return o;
 		}
@@ -229,6 +239,7 @@ public class SelectionBox extends VElement implements Adjustable {
 	 */
 	public void startSelecting() {
 		isSelecting = true;
+		resetRubberBand();
 		show();
 	}
 
@@ -237,6 +248,7 @@ public class SelectionBox extends VElement implements Adjustable {
 	 */
 	public void stopSelecting() {
 		isSelecting = false;
+		resetRubberBand();
 		fitToSelection();
 //		deselect();
 		hide();
@@ -355,37 +367,128 @@ public class SelectionBox extends VElement implements Adjustable {
 		markDirty();
 		setHandleLocation();
 
+		if (isSelecting) { // Selecting, so add containing objects to selection
+			updateRubberBand(getVBounds());
+		}
+	}
+
+	private void resetRubberBand() {
+		rubberBand = null;
+		rubberBandHits.clear();
+		rubberBandGroupMembers.clear();
+	}
+
+	/**
+	 * Selects the elements that intersect the rubber band, and deselects the ones
+	 * that no longer do. Only the elements near the area that was added to or
+	 * removed from the band since the previous update are tested, and the
+	 * selection events of one update are fired together when it is done.
+	 */
+	private void updateRubberBand(Rectangle2D bounds) {
+		Set<VElement> candidates = new LinkedHashSet<VElement>();
+		if (rubberBand == null) {
+			// first update, also deselect what was selected before
+			candidates.addAll(canvas.getCandidatesIn(bounds));
+			candidates.addAll(selection);
+		} else {
+			for (Rectangle2D r : subtract(bounds, rubberBand)) {
+				candidates.addAll(canvas.getCandidatesIn(r));
+			}
+			for (Rectangle2D r : subtract(rubberBand, bounds)) {
+				candidates.addAll(canvas.getCandidatesIn(r));
+			}
+		}
+		rubberBand = new Rectangle2D.Double(bounds.getX(), bounds.getY(), bounds.getWidth(), bounds.getHeight());
+
+		List<VElement> entered = new ArrayList<VElement>();
+		List<VElement> left = new ArrayList<VElement>();
+		boolean groupsChanged = false;
+		for (VElement o : candidates) {
+			if ((o == this) || (o instanceof Handle)) {
+				continue;
+			}
+			if (o.vIntersects(bounds)) { // && !(o instanceof Group)
+				if (rubberBandHits.add(o)) {
+					entered.add(o);
+					groupsChanged |= o instanceof VGroup;
+				}
+			} else {
+				if (rubberBandHits.remove(o)) {
+					groupsChanged |= o instanceof VGroup;
+				}
+				left.add(o);
+			}
+		}
+
 		// Keep track of objects that were selected via a group
 		// Don't deselect them if they're out of the selection bounds
-		Set<VPathwayObject> groupObjects = new HashSet<VPathwayObject>();
-
-		if (isSelecting) { // Selecting, so add containing objects to selection
-			Rectangle2D bounds = getVBounds();
-			for (VElement o : canvas.getDrawingObjects()) {
-				if ((o == this) || (o instanceof Handle)) {
-					continue;
+		if (groupsChanged) {
+			Set<VPathwayObject> groupObjects = new HashSet<VPathwayObject>();
+			for (VElement o : rubberBandHits) {
+				if (o instanceof VGroup) {
+					groupObjects.addAll(((VGroup) o).getGroupGraphics());
+				}
+			}
+			// members of groups that left the band may have to be deselected
+			for (VPathwayObject o : rubberBandGroupMembers) {
+				if (!groupObjects.contains(o) && !rubberBandHits.contains(o)) {
+					left.add(o);
 				}
+			}
+			rubberBandGroupMembers = groupObjects;
+		}
 
-				
-				if (o.vIntersects(bounds)) { // && !(o instanceof Group)
-					// exclude objects in a group to avoid double selection
-					if (o instanceof VGroupable) {
-						Groupable pe = ((VGroupable) o).getPathwayObject();
-						Group ref = ((Groupable) pe).getGroupRef();
-						if (ref != null) {
-							continue;
-						}
-						if (o instanceof VGroup) {
-							groupObjects.addAll(((VGroup) o).getGroupGraphics());
-						}
+		boolean held = heldSelection != null;
+		if (!held)
+			holdEvents();
+		try {
+			for (VElement o : entered) {
+				// exclude objects in a group to avoid double selection
+				if (o instanceof VGroupable) {
+					Groupable pe = ((VGroupable) o).getPathwayObject();
+					Group ref = ((Groupable) pe).getGroupRef();
+					if (ref != null) {
+						continue;
 					}
-					addToSelection(o);
-
-				} else if (o.isSelected() && !groupObjects.contains(o)) {
+				}
+				addToSelection(o);
+			}
+			for (VElement o : left) {
+				if (o.isSelected() && !rubberBandGroupMembers.contains(o)) {
 					removeFromSelection(o);
 				}
 			}
+		} finally {
+			if (!held)
+				releaseEvents();
+		}
+	}
+
+	/**
+	 * Returns up to four rectangles that together cover the part of a outside b,
+	 * grown by a pixel so that elements touching the edge of b are included.
+	 */
+	private static List<Rectangle2D> subtract(Rectangle2D a, Rectangle2D b) {
+		List<Rectangle2D> result = new ArrayList<Rectangle2D>();
+		Rectangle2D i = a.createIntersection(b);
+		if (i.isEmpty()) {
+			result.add(a);
+		} else {
+			// strips above and below the intersection
+			if (i.getMinY() > a.getMinY())
+				result.add(new Rectangle2D.Double(a.getMinX(), a.getMinY(), a.getWidth(), i.getMinY() - a.getMinY()));
+			if (i.getMaxY() < a.getMaxY())
+				result.add(new Rectangle2D.Double(a.getMinX(), i.getMaxY(), a.getWidth(), a.getMaxY() - i.getMaxY()));
+			// strips left and right of the intersection
+			if (i.getMinX() > a.getMinX())
+				result.add(new Rectangle2D.Double(a.getMinX(), i.getMinY(), i.getMinX() - a.getMinX(), i.getHeight()));
+			if (i.getMaxX() < a.getMaxX())
+				result.add(new Rectangle2D.Double(i.getMaxX(), i.getMinY(), a.getMaxX() - i.getMaxX(), i.getHeight()));
 		}
+		for (Rectangle2D r : result) {
+			r.setRect(r.getX() - 1, r.getY() - 1, r.getWidth() + 2, r.getHeight() + 2);
+		}
+		return result;
 	}
 
 	private Handle getHorizontalOpposite(Handle h) {
@@ -454,8 +557,7 @@ public class SelectionBox extends VElement implements Adjustable {
 	public void doDraw(Graphics2D g) {
 		if (isVisible) {
 			int sw = 1;
-			g.setStroke(
-					new BasicStroke(sw, BasicStroke.CAP_SQUARE, BasicStroke.JOIN_MITER, 1, new float[] { 1, 2 }, 0));
+			g.setStroke(SELECTION_STROKE);
 			Rectangle2D rect = getVBounds();
 			g.drawRect((int) rect.getX(), (int) rect.getY(), (int) rect.getWidth() - sw, (int) rect.getHeight() - sw);
 		}
@@ -484,11 +586,57 @@ public class SelectionBox extends VElement implements Adjustable {
 	 * @param e
 	 */
 	public void fireSelectionEvent(SelectionEvent e) {
+		if (heldSelection != null) {
+			heldChanged = true;
+			return;
+		}
 		for (SelectionListener l : listeners) {
 			l.selectionEvent(e);
 		}
 	}
 
+	// the selection when events were held, null if they are not held
+	private Set<VElement> heldSelection = null;
+	private boolean heldChanged = false;
+
+	/**
+	 * Holds back selection events until {@link #releaseEvents()}, used during a
+	 * batch of changes.
+	 */
+	void holdEvents() {
+		if (heldSelection == null) {
+			heldSelection = new LinkedHashSet<VElement>(selection);
+			heldChanged = false;
+		}
+	}
+
+	/**
+	 * Stops holding back selection events, and fires a single
+	 * {@link SelectionEvent#SELECTION_CHANGED} for the net change of the
+	 * selection in the meantime, if there is any.
+	 */
+	void releaseEvents() {
+		Set<VElement> before = heldSelection;
+		heldSelection = null;
+		if (before == null || !heldChanged)
+			return;
+		Set<VElement> removed = new LinkedHashSet<VElement>();
+		for (VElement o : before) {
+			if (!selection.contains(o)) {
+				removed.add(o);
+			}
+		}
+		Set<VElement> added = new LinkedHashSet<VElement>();
+		for (VElement o : selection) {
+			if (!before.contains(o)) {
+				added.add(o);
+			}
+		}
+		if (!added.isEmpty() || !removed.isEmpty()) {
+			fireSelectionEvent(new SelectionEvent(this, added, removed));
+		}
+	}
+
 	/**
 	 * implement this if you want to be notified when the set of selected objects
 	 * changes
@@ -508,6 +656,12 @@ public class SelectionBox extends VElement implements Adjustable {
 
 		public static final int SELECTION_CLEARED = 2;
 
+		/**
+		 * Any number of elements were added and removed at once, see
+		 * {@link #added} and {@link #removed}.
+		 */
+		public static final int SELECTION_CHANGED = 3;
+
 		public SelectionBox source;
 
 		public VElement affectedObject;
@@ -516,6 +670,12 @@ public class SelectionBox extends VElement implements Adjustable {
 
 		public Set<VElement> selection;
 
+		/** the newly selected elements, only set for SELECTION_CHANGED */
+		public Set<VElement> added = Collections.emptySet();
+
+		/** the elements that are no longer selected, only set for SELECTION_CHANGED */
+		public Set<VElement> removed = Collections.emptySet();
+
 		public SelectionEvent(SelectionBox source, int type, VElement affectedObject) {
 			super(source);
 			this.source = source;
@@ -527,6 +687,12 @@ public class SelectionBox extends VElement implements Adjustable {
 		public SelectionEvent(SelectionBox source, int type) {
 			this(source, type, null);
 		}
+
+		public SelectionEvent(SelectionBox source, Set<VElement> added, Set<VElement> removed) {
+			this(source, SELECTION_CHANGED);
+			this.added = added;
+			this.removed = removed;
+		}
 	}
 
 	protected int getZOrder() {
@@ -0,0 +1,406 @@
+/*******************************************************************************
+ * PathVisio, a tool for data visualization and analysis using biological pathways
+ * Copyright 2006-2021 BiGCaT Bioinformatics, WikiPathways
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package org.pathvisio.core.view.model;
+
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An R-tree of rectangular bounds, used by {@link VPathwayModel} to find the
+ * elements under a point or inside a rectangle without visiting every element
+ * on the drawing.
+ * <p>
+ * The index is conservative: it returns every item whose stored bounds touch
+ * the query, and callers are expected to do the precise hit test (e.g.
+ * {@link VElement#vContains(Point2D)}) on the returned candidates.
+ *
+ * @param <T> the type of the indexed items.
+ * @author unknown
+ */
+public class SpatialIndex<T> {
+
+	static final int MAX_ENTRIES = 16;
+	static final int MIN_ENTRIES = 4;
+
+	/**
+	 * Rectangular bounds, stored as min/max pairs to keep the comparisons cheap.
+	 */
+	private static class Box {
+		double minX, minY, maxX, maxY;
+
+		void setEmpty() {
+			minX = minY = Double.POSITIVE_INFINITY;
+			maxX = maxY = Double.NEGATIVE_INFINITY;
+		}
+
+		void include(Box b) {
+			minX = Math.min(minX, b.minX);
+			minY = Math.min(minY, b.minY);
+			maxX = Math.max(maxX, b.maxX);
+			maxY = Math.max(maxY, b.maxY);
+		}
+
+		boolean contains(Box b) {
+			return b.minX >= minX && b.minY >= minY && b.maxX <= maxX && b.maxY <= maxY;
+		}
+
+		boolean intersects(double x1, double y1, double x2, double y2) {
+			return minX <= x2 && maxX >= x1 && minY <= y2 && maxY >= y1;
+		}
+
+		double area() {
+			if (maxX < minX || maxY < minY)
+				return 0;
+			return (maxX - minX) * (maxY - minY);
+		}
+
+		/** the area that would be added to this box by including b */
+		double enlargement(Box b) {
+			double x1 = Math.min(minX, b.minX);
+			double y1 = Math.min(minY, b.minY);
+			double x2 = Math.max(maxX, b.maxX);
+			double y2 = Math.max(maxY, b.maxY);
+			return (x2 - x1) * (y2 - y1) - area();
+		}
+	}
+
+	/**
+	 * A node of the tree. Leaf nodes hold entries, other nodes hold child nodes.
+	 */
+	private static class Node extends Box {
+		final boolean leaf;
+		Node parent;
+		final List<Box> items = new ArrayList<Box>(MAX_ENTRIES + 1);
+
+		Node(boolean leaf) {
+			this.leaf = leaf;
+			setEmpty();
+		}
+
+		void add(Box b) {
+			items.add(b);
+			if (leaf) {
+				((Entry) b).leaf = this;
+			} else {
+				((Node) b).parent = this;
+			}
+			include(b);
+		}
+
+		/** recalculates the bounds from the direct children */
+		void recalculateBounds() {
+			setEmpty();
+			for (Box b : items) {
+				include(b);
+			}
+		}
+	}
+
+	/** A single indexed item with its bounds. */
+	private static class Entry extends Box {
+		final Object item;
+		Node leaf;
+
+		Entry(Object item) {
+			this.item = item;
+		}
+
+		void setBounds(Rectangle2D r) {
+			if (r == null || Double.isNaN(r.getX()) || Double.isNaN(r.getY()) || Double.isNaN(r.getWidth())
+					|| Double.isNaN(r.getHeight())) {
+				// no usable bounds, store an empty rectangle in the origin
+				minX = minY = maxX = maxY = 0;
+			} else {
+				minX = Math.min(r.getMinX(), r.getMaxX());
+				minY = Math.min(r.getMinY(), r.getMaxY());
+				maxX = Math.max(r.getMinX(), r.getMaxX());
+				maxY = Math.max(r.getMinY(), r.getMaxY());
+			}
+		}
+	}
+
+	private Node root = new Node(true);
+	private final Map<T, Entry> index = new HashMap<T, Entry>();
+
+	/**
+	 * Returns the number of items in this index.
+	 */
+	public int size() {
+		return index.size();
+	}
+
+	/**
+	 * Returns true if the given item is in this index.
+	 */
+	public boolean contains(T item) {
+		return index.containsKey(item);
+	}
+
+	/**
+	 * Removes all items from this index.
+	 */
+	public void clear() {
+		index.clear();
+		root = new Node(true);
+	}
+
+	/**
+	 * Adds an item with the given bounds to the index. If the item is already
+	 * present, its bounds are updated instead.
+	 *
+	 * @param item   the item to add.
+	 * @param bounds the bounds of the item.
+	 */
+	public void insert(T item, Rectangle2D bounds) {
+		Entry e = index.get(item);
+		if (e != null) {
+			update(e, bounds);
+			return;
+		}
+		e = new Entry(item);
+		e.setBounds(bounds);
+		index.put(item, e);
+		insertEntry(e);
+	}
+
+	/**
+	 * Removes an item from the index. Does nothing if the item is not present.
+	 *
+	 * @param item the item to remove.
+	 */
+	public void remove(T item) {
+		Entry e = index.remove(item);
+		if (e != null) {
+			removeEntry(e);
+		}
+	}
+
+	/**
+	 * Finds all items whose bounds intersect or touch the given rectangle.
+	 *
+	 * @param r      the rectangle to search.
+	 * @param result the collection to which the found items are added.
+	 */
+	public void search(Rectangle2D r, Collection<? super T> result) {
+		search(root, r.getMinX(), r.getMinY(), r.getMaxX(), r.getMaxY(), result);
+	}
+
+	/**
+	 * Finds all items whose bounds contain the given point.
+	 *
+	 * @param p      the point to search.
+	 * @param result the collection to which the found items are added.
+	 */
+	public void search(Point2D p, Collection<? super T> result) {
+		search(root, p.getX(), p.getY(), p.getX(), p.getY(), result);
+	}
+
+	@SuppressWarnings("unchecked")
+	private void search(Node n, double x1, double y1, double x2, double y2, Collection<? super T> result) {
+		for (Box b : n.items) {
+			if (b.intersects(x1, y1, x2, y2)) {
+				if (n.leaf) {
+					result.add((T) ((Entry) b).item);
+				} else {
+					search((Node) b, x1, y1, x2, y2, result);
+				}
+			}
+		}
+	}
+
+	private void update(Entry e, Rectangle2D bounds) {
+		Node leaf = e.leaf;
+		e.setBounds(bounds);
+		if (leaf.contains(e)) {
+			// still fits in the same leaf, only tighten the bounds on the way up
+			adjustBounds(leaf);
+		} else {
+			removeEntry(e);
+			insertEntry(e);
+		}
+	}
+
+	private void insertEntry(Entry e) {
+		Node leaf = chooseLeaf(e);
+		leaf.add(e);
+		if (leaf.items.size() > MAX_ENTRIES) {
+			split(leaf);
+		} else {
+			adjustBounds(leaf.parent);
+		}
+	}
+
+	private Node chooseLeaf(Entry e) {
+		Node n = root;
+		while (!n.leaf) {
+			Node best = null;
+			double bestEnlargement = Double.POSITIVE_INFINITY;
+			double bestArea = Double.POSITIVE_INFINITY;
+			for (Box b : n.items) {
+				double area = b.area();
+				double enlargement = b.enlargement(e);
+				if (best == null || enlargement < bestEnlargement
+						|| (enlargement == bestEnlargement && area < bestArea)) {
+					best = (Node) b;
+					bestEnlargement = enlargement;
+					bestArea = area;
+				}
+			}
+			n = best;
+		}
+		return n;
+	}
+
+	/**
+	 * Splits an overflowing node in two, using the quadratic split of the
+	 * original R-tree algorithm, and propagates the split upwards.
+	 */
+	private void split(Node n) {
+		List<Box> items = new ArrayList<Box>(n.items);
+		Node a = new Node(n.leaf);
+		Node b = new Node(n.leaf);
+
+		// pick the two seeds that would waste the most area together
+		int seedA = 0, seedB = 1;
+		double worst = Double.NEGATIVE_INFINITY;
+		for (int i = 0; i < items.size(); i++) {
+			Box bi = items.get(i);
+			for (int j = i + 1; j < items.size(); j++) {
+				Box bj = items.get(j);
+				double waste = bi.enlargement(bj) - bj.area();
+				if (waste > worst) {
+					worst = waste;
+					seedA = i;
+					seedB = j;
+				}
+			}
+		}
+		a.add(items.get(seedA));
+		b.add(items.get(seedB));
+		items.remove(seedB); // seedB > seedA, so remove it first
+		items.remove(seedA);
+
+		while (!items.isEmpty()) {
+			// make sure both nodes get the minimum number of entries
+			if (a.items.size() + items.size() == MIN_ENTRIES) {
+				for (Box o : items)
+					a.add(o);
+				break;
+			}
+			if (b.items.size() + items.size() == MIN_ENTRIES) {
+				for (Box o : items)
+					b.add(o);
+				break;
+			}
+			// assign the item with the strongest preference for one of the nodes
+			int next = 0;
+			double maxDiff = Double.NEGATIVE_INFINITY;
+			double nextA = 0, nextB = 0;
+			for (int i = 0; i < items.size(); i++) {
+				Box bi = items.get(i);
+				double da = a.enlargement(bi);
+				double db = b.enlargement(bi);
+				double diff = Math.abs(da - db);
+				if (diff > maxDiff) {
+					maxDiff = diff;
+					next = i;
+					nextA = da;
+					nextB = db;
+				}
+			}
+			Box o = items.remove(next);
+			if (nextA < nextB || (nextA == nextB && a.items.size() <= b.items.size())) {
+				a.add(o);
+			} else {
+				b.add(o);
+			}
+		}
+
+		Node parent = n.parent;
+		if (parent == null) {
+			// splitting the root, grow the tree
+			root = new Node(false);
+			root.add(a);
+			root.add(b);
+		} else {
+			parent.items.remove(n);
+			parent.add(a);
+			parent.add(b);
+			if (parent.items.size() > MAX_ENTRIES) {
+				split(parent);
+			} else {
+				adjustBounds(parent);
+			}
+		}
+	}
+
+	private void removeEntry(Entry e) {
+		Node leaf = e.leaf;
+		leaf.items.remove(e);
+		e.leaf = null;
+
+		// condense the tree: dissolve nodes that became too small and reinsert
+		// their entries afterwards
+		List<Entry> orphans = new ArrayList<Entry>();
+		Node n = leaf;
+		while (n != root) {
+			Node parent = n.parent;
+			if (n.items.size() < MIN_ENTRIES) {
+				parent.items.remove(n);
+				collectEntries(n, orphans);
+			} else {
+				n.recalculateBounds();
+			}
+			n = parent;
+		}
+		root.recalculateBounds();
+		// shorten the tree if the root has only a single child left
+		while (!root.leaf && root.items.size() == 1) {
+			root = (Node) root.items.get(0);
+			root.parent = null;
+		}
+		if (!root.leaf && root.items.isEmpty()) {
+			root = new Node(true);
+		}
+		for (Entry o : orphans) {
+			insertEntry(o);
+		}
+	}
+
+	private void collectEntries(Node n, List<Entry> result) {
+		for (Box b : n.items) {
+			if (n.leaf) {
+				result.add((Entry) b);
+			} else {
+				collectEntries((Node) b, result);
+			}
+		}
+	}
+
+	/** recalculates bounds from the given node up to the root */
+	private void adjustBounds(Node n) {
+		while (n != null) {
+			n.recalculateBounds();
+			n = n.parent;
+		}
+	}
+}
@@ -16,22 +16,81 @@
  ******************************************************************************/
 package org.pathvisio.core.view.model;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.concurrent.Executor;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.jdom2.output.Format;
+import org.jdom2.output.XMLOutputter;
+import org.pathvisio.debug.Logger;
+import org.pathvisio.model.ConverterException;
+import org.pathvisio.model.GpmlFormat;
 import org.pathvisio.model.PathwayModel;
+import org.pathvisio.model.PathwayObject;
 
 /**
  * A single item on the undo stack. Stores a complete copy of the Pathway as it
- * was before the user modified it, so it can be restored.
+ * was before the user modified it, so it can be restored. Subclasses such as
+ * {@link GeometryUndoAction} and {@link AddUndoAction} record only the changes
+ * of the action, and undo those in place.
+ * <p>
+ * The {@link UndoManager} compresses the copies of older actions to GPML, see
+ * {@link #compress()}.
  *
  * TODO: remember selection state as well.
  */
 public class UndoAction {
 	public UndoAction(String aMessage, PathwayModel current) {
+		this(aMessage, current, -1);
+	}
+
+	/**
+	 * @param aMessage   description of the action.
+	 * @param current    a copy of the pathway before the action.
+	 * @param changeMark the value of {@link UndoManager#getChangeMark()} when the
+	 *                   copy was made, which lets the undo manager restore only the
+	 *                   elements that changed since.
+	 */
+	UndoAction(String aMessage, PathwayModel current, long changeMark) {
 		message = aMessage;
+		this.changeMark = changeMark;
 		originalState = current;
+		snapshot = current != null;
+		liveSize = current == null ? 0 : (current.getPathwayObjects().size() + 1) * LIVE_OBJECT_SIZE;
+		memorySize = liveSize;
+	}
+
+	/**
+	 * Constructor for actions that record only the changes they undo, instead of
+	 * a complete copy of the pathway.
+	 */
+	protected UndoAction(String aMessage) {
+		this(aMessage, null);
 	}
 
+	/**
+	 * rough estimate of the memory used by a pathway object, in bytes, for copies
+	 * that are not compressed. Compressed copies count with their real size.
+	 */
+	static final long LIVE_OBJECT_SIZE = 2048;
+
 	private String message;
 	private PathwayModel originalState;
+	private byte[] compressedState; // originalState as gzipped GPML
+	private final boolean snapshot;
+	private final long changeMark;
+	private final long liveSize;
+	private volatile long memorySize;
+	private boolean compressScheduled = false;
+	private boolean compressFailed = false; // don't try again
+	private boolean taken = false; // the copy was handed out by undo()
 	private UndoManager undoMgr;
 
 	/**
@@ -44,13 +103,131 @@ public class UndoAction {
 		this.undoMgr = undoMgr;
 	}
 
+	protected UndoManager getUndoManager() {
+		return undoMgr;
+	}
+
+	/**
+	 * Returns the element with the given id, or the copy that undo or redo added
+	 * back in its place, see {@link UndoManager#findElement(PathwayModel, String)}.
+	 */
+	PathwayObject findElement(PathwayModel pathway, String id) {
+		if (undoMgr == null)
+			return pathway.getPathwayObject(id);
+		return undoMgr.findElement(pathway, id);
+	}
+
 	public String getMessage() {
 		return message;
 	}
 
+	/**
+	 * Returns true if this action stores a complete copy of the pathway.
+	 */
+	boolean isSnapshot() {
+		return snapshot;
+	}
+
+	/**
+	 * Returns the number of bytes used by this action: the size of the compressed
+	 * copy of the pathway, or an estimate if it isn't compressed (yet). Subclasses
+	 * that don't store a copy of the pathway should override this.
+	 */
+	long getMemorySize() {
+		return memorySize;
+	}
+
+	/**
+	 * Lets the given executor compress the copy of the pathway, unless that was
+	 * done already. Until it is done, the memory use is an estimate of the copy
+	 * as it is.
+	 */
+	void scheduleCompression(Executor executor) {
+		if (!snapshot || compressScheduled)
+			return;
+		compressScheduled = true;
+		executor.execute(new Runnable() {
+			public void run() {
+				compress();
+			}
+		});
+	}
+
+	/**
+	 * Compresses the copy now if that was scheduled but hasn't happened yet, so
+	 * that {@link #getMemorySize()} returns its real size.
+	 */
+	void finishCompression() {
+		if (compressScheduled)
+			compress();
+	}
+
+	/**
+	 * Replaces the copy of the pathway by compressed GPML, which takes a fraction
+	 * of the memory. The copy is read back when it is needed by {@link #undo()}.
+	 * May be called from any thread, the copy isn't used by anything else.
+	 */
+	synchronized void compress() {
+		if (originalState == null || taken || compressFailed)
+			return;
+		try {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			Writer out = new OutputStreamWriter(new GZIPOutputStream(bytes), "UTF-8");
+			new XMLOutputter(Format.getRawFormat()).output(GpmlFormat.createJdom(originalState), out);
+			out.close();
+			compressedState = bytes.toByteArray();
+			originalState = null;
+			memorySize = compressedState.length;
+		} catch (Exception ex) {
+			// not fatal, keep the copy as it is
+			compressFailed = true;
+			memorySize = liveSize;
+			Logger.log.warn("Unable to compress undo state '" + message + "'", ex);
+		}
+	}
+
+	/**
+	 * Returns the copy of the pathway, reading it back if it was compressed. From
+	 * then on, the copy belongs to the caller and is no longer compressed.
+	 */
+	private synchronized PathwayModel takeOriginalState() {
+		taken = true;
+		if (originalState == null && compressedState != null) {
+			try {
+				Reader in = new InputStreamReader(new GZIPInputStream(new ByteArrayInputStream(compressedState)),
+						"UTF-8");
+				PathwayModel p = new PathwayModel();
+				GpmlFormat.readFromXml(p, in, false);
+				in.close();
+				originalState = p;
+				compressedState = null;
+			} catch (ConverterException ex) {
+				Logger.log.error("Unable to restore undo state '" + message + "'", ex);
+			} catch (IOException ex) {
+				Logger.log.error("Unable to restore undo state '" + message + "'", ex);
+			}
+		}
+		return originalState;
+	}
+
+	/**
+	 * Returns an action that brings the pathway back to its current state after
+	 * this action is undone, which is what redo (or undo after a redo) does. Call
+	 * this right before {@link #undo()}. By default this is a copy of the whole
+	 * pathway, subclasses that record only their changes return an action that
+	 * records the opposite changes.
+	 *
+	 * @param current    the pathway, which is about to be changed by undo.
+	 * @param changeMark the value of {@link UndoManager#getChangeMark()} now.
+	 */
+	UndoAction createInverse(PathwayModel current, long changeMark) {
+		return new UndoAction(message, (PathwayModel) current.clone(), changeMark);
+	}
+
 	void printSummary() {
 		System.out.printf("'%20s'\n", message);
-		System.out.print("" + originalState.summary());
+		if (originalState != null)
+			System.out.print("" + originalState.summary());
 	}
 
 	public void undo() {
@@ -59,8 +236,10 @@ public class UndoAction {
 		 * Engine.getCurrent().createVPathway (originalState);
 		 * Engine.getCurrent().getActiveVPathway().setUndoManager(um);
 		 */
-		if (undoMgr != null) {
-			undoMgr.getEngine().replacePathwayModel(originalState);
+		PathwayModel state = takeOriginalState();
+		if (undoMgr != null && state != null && !undoMgr.restoreInPlace(state, changeMark)) {
+			undoMgr.getEngine().replacePathwayModel(state);
+			undoMgr.pathwayReplaced(changeMark);
 		}
 	}
 }
@@ -17,23 +17,178 @@
 package org.pathvisio.core.view.model;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.function.Supplier;
 
 import org.pathvisio.core.Engine;
+import org.pathvisio.event.PathwayModelEvent;
+import org.pathvisio.event.PathwayModelListener;
+import org.pathvisio.event.PathwayObjectEvent;
+import org.pathvisio.event.PathwayObjectListener;
+import org.pathvisio.model.DataNode.State;
+import org.pathvisio.model.PathwayElement;
 import org.pathvisio.model.PathwayModel;
+import org.pathvisio.model.PathwayObject;
 import org.pathvisio.core.view.UndoManagerEvent;
 import org.pathvisio.core.view.UndoManagerListener;
 
-/** Manages a stack of undo actions */
-public class UndoManager {
+/**
+ * Manages a stack of undo actions, and a stack of redo actions. Listens to the
+ * pathway, so that an {@link AddUndoAction} on top of the stack can record the
+ * elements it adds.
+ * <p>
+ * The size of the history is limited by memory rather than by the number of
+ * actions: small pathways get a deep history, large ones a shorter one. Only
+ * the most recent copies of the pathway are kept as they are, older ones are
+ * compressed on a background thread. Undo and redo push the inverse of the
+ * action onto the opposite stack, see {@link UndoAction#createInverse}, so
+ * undoing a move or an addition doesn't copy the pathway either.
+ * <p>
+ * The undo manager also keeps track of the elements that changed, so that a
+ * copy of the pathway can often be restored by only replacing those elements,
+ * see {@link InPlaceUndo}.
+ */
+public class UndoManager implements PathwayModelListener, PathwayObjectListener {
 	public static final String CANT_UNDO = "Can't undo";
+	public static final String CANT_REDO = "Can't redo";
 
 	private List<UndoAction> undoList = new ArrayList<UndoAction>();
+	private List<UndoAction> redoList = new ArrayList<UndoAction>();
 
 	private PathwayModel pathway;
 
 	public void setPathway(PathwayModel pathway) {
+		if (this.pathway != null) {
+			this.pathway.removeListener(this);
+			for (PathwayElement o : this.pathway.getPathwayElements()) {
+				o.removeListener(this);
+			}
+		}
 		this.pathway = pathway;
+		if (pathway != null) {
+			pathway.addListener(this);
+			for (PathwayElement o : pathway.getPathwayElements()) {
+				o.addListener(this);
+			}
+		}
+	}
+
+	// counts changes to elements, and the count at the last change of each element
+	private long changeCount = 0;
+	private Map<String, Long> lastChange = new HashMap<String, Long>();
+
+	/**
+	 * Returns a number that identifies the current state of the pathway. Pass it
+	 * to {@link UndoAction#UndoAction(String, PathwayModel, long)} together with a
+	 * copy of the pathway made now, so that the copy can be restored in place.
+	 */
+	long getChangeMark() {
+		return changeCount;
+	}
+
+	private void changed(PathwayObject o) {
+		if (o == null)
+			return;
+		if (o.getElementId() != null) {
+			lastChange.put(o.getElementId(), ++changeCount);
+		}
+		if (o instanceof State) {
+			changed(((State) o).getDataNode());
+		}
+	}
+
+	/**
+	 * Records that an element changed.
+	 */
+	public void gmmlObjectModified(PathwayObjectEvent e) {
+		changed(e.getModifiedPathwayObject());
+	}
+
+	/**
+	 * Tries to restore a copy of the pathway by replacing only the elements that
+	 * changed since the copy was made.
+	 *
+	 * @param target the copy of the pathway.
+	 * @param mark   the value of {@link #getChangeMark()} when the copy was made,
+	 *               or -1 if unknown.
+	 * @return true if the pathway was restored, false if the caller should
+	 *         replace the whole pathway.
+	 */
+	boolean restoreInPlace(PathwayModel target, long mark) {
+		if (mark < 0 || pathway == null)
+			return false;
+		List<String> changed = new ArrayList<String>();
+		for (Map.Entry<String, Long> e : lastChange.entrySet()) {
+			if (e.getValue() > mark) {
+				changed.add(e.getKey());
+			}
+		}
+		return InPlaceUndo.apply(pathway, target, changed, this, engine.getActiveVPathwayModel());
+	}
+
+	/**
+	 * Called after the whole pathway was replaced by a copy. The elements that
+	 * changed since the copy was made have changed again, back to what they were.
+	 *
+	 * @param mark the value of {@link #getChangeMark()} when the copy was made,
+	 *             or -1 if unknown.
+	 */
+	void pathwayReplaced(long mark) {
+		for (Map.Entry<String, Long> e : lastChange.entrySet()) {
+			if (e.getValue() > mark) {
+				e.setValue(++changeCount);
+			}
+		}
+	}
+
+	PathwayModel getPathway() {
+		return pathway;
+	}
+
+	// ids of elements that undo or redo added back as a copy with another id, by
+	// the id of the element they replace
+	private Map<String, String> replacedIds = new HashMap<String, String>();
+
+	/**
+	 * Called when undo or redo adds a copy of an element back to the pathway. If
+	 * the copy got another id, actions that refer to the element by its old id
+	 * find the copy instead.
+	 *
+	 * @param oldId the id of the element that was removed.
+	 * @param newId the id of the copy.
+	 */
+	void elementReplaced(String oldId, String newId) {
+		if (oldId != null && newId != null && !oldId.equals(newId)) {
+			replacedIds.put(oldId, newId);
+		}
+	}
+
+	/**
+	 * Returns the element with the given id, or the copy that replaced it, see
+	 * {@link #elementReplaced(String, String)}.
+	 *
+	 * @param pathway the pathway to look in.
+	 * @param id      the element id recorded by an action.
+	 * @return the element, or null if there is none.
+	 */
+	PathwayObject findElement(PathwayModel pathway, String id) {
+		PathwayObject result = pathway.getPathwayObject(id);
+		// follow copies of copies, but never around in circles
+		for (int i = 0; result == null && i < replacedIds.size(); i++) {
+			id = replacedIds.get(id);
+			if (id == null)
+				break;
+			result = pathway.getPathwayObject(id);
+		}
+		return result;
 	}
 
 	private Engine engine;
@@ -68,7 +223,104 @@ public class UndoManager {
 		return engine;
 	}
 
-	static final int MAX_UNDO_SIZE = 25;
+	/** default maximum memory used by the undo and redo history, in bytes */
+	static final long DEFAULT_MEMORY_BUDGET = 64L * 1024 * 1024;
+
+	/** number of most recent copies of the pathway that are not compressed */
+	static final int LIVE_SNAPSHOTS = 2;
+
+	private long memoryBudget = DEFAULT_MEMORY_BUDGET;
+
+	/**
+	 * Sets the maximum memory used by the undo and redo history. When it is
+	 * exceeded, the oldest actions are dropped, but the most recent undo action
+	 * is always kept.
+	 *
+	 * @param bytes the budget, in bytes.
+	 */
+	public void setMemoryBudget(long bytes) {
+		memoryBudget = bytes;
+		trim();
+	}
+
+	public long getMemoryBudget() {
+		return memoryBudget;
+	}
+
+	/**
+	 * Returns the memory used by the undo and redo history, in bytes. Copies of
+	 * the pathway count with the size of their compressed GPML, or with an
+	 * estimate as long as they are not compressed.
+	 */
+	public long getMemoryUse() {
+		long result = 0;
+		for (UndoAction a : undoList) {
+			result += a.getMemorySize();
+		}
+		for (UndoAction a : redoList) {
+			result += a.getMemorySize();
+		}
+		return result;
+	}
+
+	/**
+	 * Drops the redo actions furthest away and then the oldest undo actions,
+	 * until the history fits in the memory budget. If the history doesn't fit,
+	 * the copies that are waiting to be compressed are compressed first, so that
+	 * their real size is known.
+	 */
+	private void trim() {
+		long used = getMemoryUse();
+		if (used > memoryBudget) {
+			for (UndoAction a : undoList) {
+				a.finishCompression();
+			}
+			for (UndoAction a : redoList) {
+				a.finishCompression();
+			}
+			used = getMemoryUse();
+		}
+		while (used > memoryBudget && redoList.size() > 0) {
+			used -= redoList.remove(0).getMemorySize();
+		}
+		while (used > memoryBudget && undoList.size() > 1) {
+			used -= undoList.remove(0).getMemorySize();
+		}
+	}
+
+	private ExecutorService compressor = null;
+
+	/**
+	 * Compresses all copies of the pathway, except the most recent ones.
+	 */
+	private void compressOlder() {
+		compressOlder(undoList, LIVE_SNAPSHOTS);
+		compressOlder(redoList, 1);
+	}
+
+	private void compressOlder(List<UndoAction> actions, int keep) {
+		int snapshots = 0;
+		for (int i = actions.size() - 1; i >= 0; i--) {
+			UndoAction a = actions.get(i);
+			if (a.isSnapshot() && ++snapshots > keep) {
+				a.scheduleCompression(getCompressor());
+			}
+		}
+	}
+
+	private ExecutorService getCompressor() {
+		if (compressor == null) {
+			compressor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+				public Thread newThread(Runnable r) {
+					Thread t = new Thread(r, "Undo history compressor");
+					t.setDaemon(true);
+					t.setPriority(Thread.MIN_PRIORITY);
+					return t;
+				}
+			});
+		}
+		return compressor;
+	}
 
 	/**
 	 * Insert a new action into the Undo Queue based on an UndoAction object that
@@ -82,13 +334,19 @@ public class UndoManager {
 	public void newAction(UndoAction act) {
 		if (!isActive())
 			return; // Don' record event if inactive
+		if (batchDepth > 0) {
+			if (batchRecorded)
+				return; // the batch is undone as a whole
+			batchRecorded = true;
+		}
 
 		act.setUndoManager(this);
+		coalesceTarget = null;
 		undoList.add(act);
-		if (undoList.size() > MAX_UNDO_SIZE) {
-			undoList.remove(0);
-		}
-		fireUndoManagerEvent(new UndoManagerEvent(getTopMessage()));
+		redoList.clear(); // a new action ends the redo history
+		compressOlder();
+		trim();
+		fireUndoManagerEvent(new UndoManagerEvent(getTopMessage(), getRedoMessage()));
 	}
 
 	/**
@@ -99,16 +357,203 @@ public class UndoManager {
 	 * @param desc: description of the change, for display in the edit menu.
 	 */
 	public void newAction(String desc) {
-		if (!isActive())
-			return; // Don' record event if inactive
+		if (!isActive() || (batchDepth > 0 && batchRecorded))
+			return; // Don' record event if inactive, or if the batch has one already
 
 		if (pathway != null) {
-			UndoAction x = new UndoAction(desc, (PathwayModel) pathway.clone());
+			UndoAction x = new UndoAction(desc, (PathwayModel) pathway.clone(), changeCount);
 			x.setUndoManager(this);
 			newAction(x);
 		}
 	}
 
+	/**
+	 * Insert a new action that only records the position and size of the given
+	 * elements (and the points of lines), instead of copying the whole pathway.
+	 * Use this for actions that only move or resize elements. Call this method
+	 * before the action actually takes place.
+	 *
+	 * @param desc     description of the change, for display in the edit menu.
+	 * @param elements the elements that will be moved or resized.
+	 */
+	public void newGeometryAction(String desc, Collection<? extends PathwayObject> elements) {
+		if (!isActive() || (batchDepth > 0 && batchRecorded))
+			return; // Don' record event if inactive, or if the batch has one already
+
+		if (pathway != null) {
+			VPathwayModel view = engine.getActiveVPathwayModel();
+			if (view != null && view.getPathwayModel() == pathway) {
+				// only the lines linked to the elements can move along with them
+				newAction(new GeometryUndoAction(desc, elements, view.getDependentLines(elements)));
+			} else {
+				newAction(new GeometryUndoAction(desc, pathway, elements));
+			}
+		}
+	}
+
+	/**
+	 * Insert a new action that records the elements added to the pathway until
+	 * the next action, and removes them on undo. Use this for actions that only
+	 * add new elements. Call this method before the action actually takes place.
+	 *
+	 * @param desc description of the change, for display in the edit menu.
+	 */
+	public void newAddAction(String desc) {
+		if (!isActive() || (batchDepth > 0 && batchRecorded))
+			return; // Don' record event if inactive, or if the batch has one already
+
+		if (pathway != null) {
+			newAction(new AddUndoAction(desc));
+		}
+	}
+
+	/**
+	 * Edits of the same kind on the same elements, each started within this many
+	 * milliseconds of the previous one, are merged into one undo action.
+	 */
+	static final long COALESCE_TIME = 1000;
+
+	// the action that following edits of the same kind are merged into
+	private UndoAction coalesceTarget = null;
+	private Set<Object> coalesceElements = null;
+	private long coalesceTime = 0;
+
+	/**
+	 * Like {@link #newAction(String)}, but for edits that are often repeated in
+	 * quick succession, such as changing a property with a spinner. If the
+	 * previous action was of the same kind, on the same elements, and recorded
+	 * less than {@link #COALESCE_TIME} ago, nothing is recorded and both edits are
+	 * undone in one step.
+	 *
+	 * @param desc     description of the change, for display in the edit menu.
+	 * @param elements the elements that will be changed.
+	 */
+	public void newCoalescingAction(String desc, Collection<?> elements) {
+		if (!isActive() || (batchDepth > 0 && batchRecorded))
+			return; // Don' record event if inactive, or if the batch has one already
+
+		if (pathway != null && !coalesce(desc, elements)) {
+			newAction(desc);
+			startCoalescing(elements);
+		}
+	}
+
+	/**
+	 * Like {@link #newGeometryAction(String, Collection)}, but for moves that are
+	 * often repeated in quick succession, such as nudging with the arrow keys.
+	 * See {@link #newCoalescingAction(String, Collection)}.
+	 *
+	 * @param desc     description of the change, for display in the edit menu.
+	 * @param elements the elements that will be moved or resized.
+	 */
+	public void newCoalescingGeometryAction(String desc, Collection<? extends PathwayObject> elements) {
+		newCoalescingGeometryAction(desc, elements, () -> elements);
+	}
+
+	/**
+	 * Like {@link #newCoalescingGeometryAction(String, Collection)}, but only
+	 * collects the elements when a new action is recorded, not for every edit
+	 * that is merged into the previous one.
+	 *
+	 * @param desc     description of the change, for display in the edit menu.
+	 * @param key      what is edited, e.g. the selected view objects. Edits are
+	 *                 only merged if their keys are equal.
+	 * @param elements collects the elements that will be moved or resized.
+	 */
+	public void newCoalescingGeometryAction(String desc, Collection<?> key,
+			Supplier<? extends Collection<? extends PathwayObject>> elements) {
+		if (!isActive() || (batchDepth > 0 && batchRecorded))
+			return; // Don' record event if inactive, or if the batch has one already
+
+		if (pathway != null && !coalesce(desc, key)) {
+			newGeometryAction(desc, elements.get());
+			startCoalescing(key);
+		}
+	}
+
+	/**
+	 * Returns true if the action on top of the stack already covers an edit of
+	 * the given kind, so there is no need to record a new one.
+	 */
+	private boolean coalesce(String desc, Collection<?> elements) {
+		long now = System.currentTimeMillis();
+		if (coalesceTarget == null || undoList.isEmpty() || undoList.get(undoList.size() - 1) != coalesceTarget
+				|| now - coalesceTime > COALESCE_TIME || !coalesceTarget.getMessage().equals(desc)
+				|| !coalesceElements.equals(new HashSet<Object>(elements))) {
+			return false;
+		}
+		coalesceTime = now;
+		if (batchDepth > 0) {
+			batchRecorded = true; // the batch is covered by the action on top
+		}
+		return true;
+	}
+
+	/**
+	 * Marks the action that was just recorded as the one to merge following edits
+	 * into.
+	 */
+	private void startCoalescing(Collection<?> elements) {
+		if (undoList.isEmpty())
+			return;
+		coalesceTarget = undoList.get(undoList.size() - 1);
+		coalesceElements = new HashSet<Object>(elements);
+		coalesceTime = System.currentTimeMillis();
+	}
+
+	private int batchDepth = 0;
+	private boolean batchRecorded = false;
+
+	/**
+	 * Starts a batch, see {@link VPathwayModel#beginBatch()}. Only the first
+	 * action of a batch is recorded, so the whole batch is undone in one step.
+	 * If a batch does more than the first action covers, e.g. a move followed by
+	 * a delete, start it with a full {@link #newAction(String)}.
+	 */
+	void beginBatch() {
+		if (batchDepth++ == 0) {
+			batchRecorded = false;
+		}
+	}
+
+	void endBatch() {
+		if (batchDepth > 0) {
+			batchDepth--;
+		}
+	}
+
+	/**
+	 * Passes added and removed elements on to the most recent action, if that is
+	 * an {@link AddUndoAction}.
+	 */
+	public void pathwayModified(PathwayModelEvent e) {
+		PathwayObject o = e.getAffectedData();
+		if (e.getType() == PathwayModelEvent.ADDED) {
+			if (o instanceof PathwayElement)
+				o.addListener(this);
+			changed(o);
+		} else if (e.getType() == PathwayModelEvent.DELETED) {
+			if (o instanceof PathwayElement)
+				o.removeListener(this);
+			changed(o);
+		}
+		UndoAction top;
+		if (undoing) {
+			// changes made by undo or redo are no new actions, but they may be what
+			// the inverse action has to remove again
+			top = inverse;
+		} else {
+			top = undoList.size() == 0 ? null : undoList.get(undoList.size() - 1);
+		}
+		if (top instanceof AddUndoAction) {
+			if (e.getType() == PathwayModelEvent.ADDED) {
+				((AddUndoAction) top).elementAdded(e.getAffectedData());
+			} else if (e.getType() == PathwayModelEvent.DELETED) {
+				((AddUndoAction) top).elementRemoved(e.getAffectedData());
+			}
+		}
+	}
+
 	public String getTopMessage() {
 		String result;
 		if (undoList.size() == 0) {
@@ -119,12 +564,67 @@ public class UndoManager {
 		return result;
 	}
 
+	public String getRedoMessage() {
+		String result;
+		if (redoList.size() == 0) {
+			result = CANT_REDO;
+		} else {
+			result = redoList.get(redoList.size() - 1).getMessage();
+		}
+		return result;
+	}
+
+	private boolean undoing = false;
+	private UndoAction inverse = null; // the inverse of the action being undone or redone
+
 	void undo() {
 		if (undoList.size() > 0 && isActive()) {
 			UndoAction a = undoList.get(undoList.size() - 1);
-			a.undo();
+			// take it off the stack first, so it doesn't record its own undo
 			undoList.remove(a);
-			fireUndoManagerEvent(new UndoManagerEvent(getTopMessage()));
+			coalesceTarget = null;
+			// the current state, to return to on redo
+			UndoAction r = null;
+			if (pathway != null) {
+				r = a.createInverse(pathway, changeCount);
+				r.setUndoManager(this);
+			}
+			undoing = true;
+			inverse = r;
+			try {
+				a.undo();
+			} finally {
+				undoing = false;
+				inverse = null;
+			}
+			if (r != null) {
+				redoList.add(r);
+				compressOlder();
+				trim();
+			}
+			fireUndoManagerEvent(new UndoManagerEvent(getTopMessage(), getRedoMessage()));
+		}
+	}
+
+	void redo() {
+		if (redoList.size() > 0 && isActive() && pathway != null) {
+			UndoAction r = redoList.remove(redoList.size() - 1);
+			coalesceTarget = null;
+			// the current state, to return to on undo
+			UndoAction a = r.createInverse(pathway, changeCount);
+			a.setUndoManager(this);
+			undoing = true;
+			inverse = a;
+			try {
+				r.undo();
+			} finally {
+				undoing = false;
+				inverse = null;
+			}
+			undoList.add(a);
+			compressOlder();
+			trim();
+			fireUndoManagerEvent(new UndoManagerEvent(getTopMessage(), getRedoMessage()));
 		}
 	}
 
@@ -153,7 +653,16 @@ public class UndoManager {
 
 	public void dispose() {
 		assert (!disposed);
+		setPathway(null);
 		undoList.clear();
+		redoList.clear();
+		lastChange.clear();
+		replacedIds.clear();
+		coalesceTarget = null;
+		if (compressor != null) {
+			compressor.shutdownNow();
+			compressor = null;
+		}
 		listeners.clear();
 		disposed = true;
 	}
@@ -164,7 +673,8 @@ public class UndoManager {
 	@SuppressWarnings("unused")
 	private void printSummary() {
 		System.out.println("===============================");
-		System.out.println(undoList.size() + " remaining");
+		System.out.println(undoList.size() + " remaining, " + redoList.size() + " to redo, " + getMemoryUse()
+				+ " bytes");
 		for (int i = undoList.size() - 1; i >= 0; --i) {
 			System.out.printf("%3d: ", i);
 			undoList.get(i).printSummary();
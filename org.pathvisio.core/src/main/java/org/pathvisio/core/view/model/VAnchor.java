@@ -16,7 +16,6 @@
  ******************************************************************************/
 package org.pathvisio.core.view.model;
 
-import java.awt.BasicStroke;
 import java.awt.Color;
 import java.awt.Graphics2D;
 import java.awt.Rectangle;
@@ -26,9 +25,7 @@ import java.awt.geom.Ellipse2D;
 import java.awt.geom.Point2D;
 
 import org.pathvisio.model.type.AnchorShapeType;
-import org.pathvisio.model.GraphLink.LinkableFrom;
 import org.pathvisio.model.LineElement.Anchor;
-import org.pathvisio.model.LineElement.LinePoint;
 import org.pathvisio.model.PathwayObject;
 import org.pathvisio.core.view.Adjustable;
 import org.pathvisio.model.shape.AnchorShape;
@@ -79,6 +76,11 @@ public class VAnchor extends VElement implements VLinkableTo, Adjustable {
 		return handle;
 	}
 
+	/** Returns the line this anchor is on */
+	VLineElement getVLineElement() {
+		return vLineElement;
+	}
+
 	public Anchor getAnchor() {
 		return anchor;
 	}
@@ -113,13 +115,10 @@ public class VAnchor extends VElement implements VLinkableTo, Adjustable {
 		mx = mFromV(position.getX());
 		my = mFromV(position.getY());
 
-		// Redraw graphRefs
-		for (LinkableFrom ref : anchor.getLinkableFroms()) {
-			if (ref instanceof LinePoint) {
-				VLinePoint vp = canvas.getPoint((LinePoint) ref);
-				if (vp != null && vp.getLine() != vLineElement) {
-					vp.getLine().recalculateConnector();
-				}
+		// Redraw lines linked to this anchor
+		for (VLinePoint vp : canvas.getLinkedPoints(anchor)) {
+			if (vp.getLine() != vLineElement) {
+				vp.getLine().recalculateConnector();
 			}
 		}
 	}
@@ -162,7 +161,7 @@ public class VAnchor extends VElement implements VLinkableTo, Adjustable {
 
 		AnchorShape arrowShape = getAnchorShape();
 		if (arrowShape != null) {
-			g.setStroke(new BasicStroke());
+			g.setStroke(DEFAULT_STROKE);
 			g.setPaint(c);
 			g.fill(arrowShape.getShape());
 			g.draw(arrowShape.getShape());
@@ -170,8 +169,8 @@ public class VAnchor extends VElement implements VLinkableTo, Adjustable {
 
 		if (isHighlighted()) {
 			Color hc = getHighlightColor();
-			g.setColor(new Color(hc.getRed(), hc.getGreen(), hc.getBlue(), 128));
-			g.setStroke(new BasicStroke(HIGHLIGHT_STROKE_WIDTH));
+			g.setColor(RenderCache.getColor(hc, 128));
+			g.setStroke(RenderCache.getStroke(HIGHLIGHT_STROKE_WIDTH));
 			g.draw(getShape());
 		}
 	}
@@ -193,20 +192,23 @@ public class VAnchor extends VElement implements VLinkableTo, Adjustable {
 	LinkAnchor linkAnchor = null;
 
 	public LinkAnchor getLinkAnchorAt(Point2D p) {
-		if (linkAnchor != null && linkAnchor.getMatchArea().contains(p)) {
+		if (linkAnchor != null && !linkAnchor.toBeRemoved() && linkAnchor.getMatchArea().contains(p)) {
 			return linkAnchor;
 		}
 		return null;
 	}
 
 	public void hideLinkAnchors() {
-		if (linkAnchor != null)
+		if (linkAnchor != null && !linkAnchor.toBeRemoved())
 			linkAnchor.destroy();
-		linkAnchor = null;
 	}
 
 	public void showLinkAnchors() {
-		linkAnchor = new LinkAnchor(canvas, this, anchor, 0, 0);
+		if (linkAnchor == null) {
+			linkAnchor = new LinkAnchor(canvas, this, anchor, 0, 0);
+		} else {
+			linkAnchor.restore(); // reuse the hidden one
+		}
 	}
 
 	/**
@@ -139,7 +139,7 @@ public class VCitation extends VElement implements VElementMouseListener {
 	 * @return
 	 */
 	protected Font getVFont() {
-		return new Font(FONT_NAME, Font.PLAIN, getVFontSize());
+		return RenderCache.getFont(FONT_NAME, Font.PLAIN, getVFontSize());
 	}
 
 	/**
@@ -233,6 +233,9 @@ public class VCitation extends VElement implements VElementMouseListener {
 			resetShapeCache();
 		this.g2d = g;
 
+		if (canvas.isSimplifiedDrawing())
+			return;
+
 		String xrefStr = getXRefText();
 		if ("".equals(xrefStr))
 			return;
@@ -244,7 +247,7 @@ public class VCitation extends VElement implements VElementMouseListener {
 
 		if (isHighlighted()) {
 			Color hc = getHighlightColor();
-			g.setColor(new Color(hc.getRed(), hc.getGreen(), hc.getBlue(), (int) (255 * 0.3)));
+			g.setColor(RenderCache.getColor(hc, (int) (255 * 0.3)));
 			g.fill(bounds);
 		}
 
@@ -20,8 +20,11 @@ import java.awt.BasicStroke;
 import java.awt.Color;
 import java.awt.Graphics2D;
 import java.awt.Shape;
+import java.awt.geom.AffineTransform;
 import java.awt.geom.Point2D;
 import java.awt.geom.Rectangle2D;
+import java.util.Comparator;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.pathvisio.core.preferences.GlobalPreference;
 import org.pathvisio.core.preferences.PreferenceManager;
@@ -43,6 +46,32 @@ public abstract class VElement implements Comparable<VElement> {
 
 	protected VPathwayModel canvas;
 
+	private static final AtomicLong sequenceCounter = new AtomicLong();
+	// creation order, breaks ties between elements with the same z-order
+	private final long sequence = sequenceCounter.getAndIncrement();
+
+	// z-order under which this element is stored in the drawing list of the canvas
+	int drawZOrder;
+	boolean inDrawList = false;
+	// drawn in the overlay layer instead of the static layer of the canvas
+	boolean inOverlay = false;
+
+	/**
+	 * Orders elements the way they are stored in the drawing list of
+	 * {@link VPathwayModel}, i.e. by the z-order they had when they were (re)placed
+	 * in the list. Equal to the natural ordering as long as the z-order is up to
+	 * date.
+	 */
+	static final Comparator<VElement> DRAW_LIST_ORDER = new Comparator<VElement>() {
+		public int compare(VElement a, VElement b) {
+			if (a == b)
+				return 0;
+			if (a.drawZOrder != b.drawZOrder)
+				return a.drawZOrder < b.drawZOrder ? -1 : 1;
+			return a.sequence < b.sequence ? -1 : 1;
+		}
+	};
+
 	protected VElement(VPathwayModel canvas) {
 		this.canvas = canvas;
 		canvas.addObject(this);
@@ -56,15 +85,19 @@ public abstract class VElement implements Comparable<VElement> {
 	private boolean isSelected;
 
 	/**
-	 * Will be called by VPathway whenever the zoom factor is changed. Default
-	 * implementation refreshes the cache of VBounds and VOutline.
+	 * Will be called whenever the zoom factor has changed, before the outline or
+	 * bounds of this element are used again. The cached VBounds and VOutline are
+	 * already refreshed by then.
 	 */
 	void zoomChanged() {
-		resetShapeCache();
 	}
 
 	private Shape vOutlineCache;
 	private Rectangle2D vBoundsCache;
+	// outline and bounds in model coordinates, kept when the zoom factor changes
+	private Shape mOutlineCache;
+	private Rectangle2D mBoundsCache;
+	private double cacheZoom = Double.NaN; // zoom factor of vOutlineCache and vBoundsCache
 
 	/**
 	 * Resets cache for VOutline and VBounds so that they will be recalculated on
@@ -73,6 +106,38 @@ public abstract class VElement implements Comparable<VElement> {
 	protected void resetShapeCache() {
 		vOutlineCache = null;
 		vBoundsCache = null;
+		mOutlineCache = null;
+		mBoundsCache = null;
+		canvas.boundsChanged(this);
+	}
+
+	/**
+	 * Returns true if the outline of this element scales linearly with the zoom
+	 * factor, i.e. it doesn't depend on sizes in view coordinates such as fixed
+	 * size handles or font metrics. The outline of such elements is calculated
+	 * once and only transformed when the zoom factor changes. Default is false.
+	 */
+	protected boolean isZoomLinear() {
+		return false;
+	}
+
+	/**
+	 * Drops the cached view geometry if the zoom factor changed since it was
+	 * calculated. This happens lazily, so that changing the zoom factor doesn't
+	 * need to visit every element.
+	 */
+	private void checkZoom() {
+		double zoom = canvas.getZoomFactor();
+		if (zoom != cacheZoom) {
+			cacheZoom = zoom;
+			vOutlineCache = null;
+			vBoundsCache = null;
+			zoomChanged();
+		}
+	}
+
+	private static Rectangle2D scale(Rectangle2D r, double f) {
+		return new Rectangle2D.Double(r.getX() * f, r.getY() * f, r.getWidth() * f, r.getHeight() * f);
 	}
 
 	public final void draw(Graphics2D g2d) {
@@ -100,12 +165,13 @@ public abstract class VElement implements Comparable<VElement> {
 	 * event dispatch thread.
 	 */
 	protected void markDirty() {
+		canvas.promoteToOverlay(this);
 		if (oldrect != null) {
-			canvas.addDirtyRect(oldrect);
+			canvas.addDirtyRect(this, oldrect);
 		}
 		resetShapeCache();
 		Rectangle2D newrect = getVBounds();
-		canvas.addDirtyRect(newrect);
+		canvas.addDirtyRect(this, newrect);
 		oldrect = newrect;
 	}
 
@@ -244,12 +310,29 @@ public abstract class VElement implements Comparable<VElement> {
 	 * @return
 	 */
 	public final Rectangle2D getVBounds() {
+		checkZoom();
 		if (vBoundsCache == null) {
-			vBoundsCache = calculateVBounds();
+			if (mBoundsCache != null) {
+				vBoundsCache = scale(mBoundsCache, cacheZoom);
+			} else {
+				vBoundsCache = calculateVBounds();
+				if (isZoomLinear()) {
+					mBoundsCache = scale(vBoundsCache, 1 / cacheZoom);
+				}
+			}
 		}
 		return vBoundsCache;
 	}
 
+	/**
+	 * Gets the rectangular bounds of this object in model coordinates, i.e.
+	 * {@link #getVBounds()} without the zoom factor.
+	 */
+	Rectangle2D getMBounds() {
+		Rectangle2D vb = getVBounds();
+		return mBoundsCache != null ? mBoundsCache : scale(vb, 1 / cacheZoom);
+	}
+
 	/**
 	 * Calculates the rectangular bounds of this object This method is equivalent to
 	 * {@link #getVOutline()}.getBounds2D()
@@ -269,12 +352,48 @@ public abstract class VElement implements Comparable<VElement> {
 	 * @return the outline of this element
 	 */
 	protected final Shape getVOutline() {
+		checkZoom();
 		if (vOutlineCache == null) {
-			vOutlineCache = calculateVOutline();
+			if (mOutlineCache != null) {
+				vOutlineCache = AffineTransform.getScaleInstance(cacheZoom, cacheZoom)
+						.createTransformedShape(mOutlineCache);
+			} else {
+				vOutlineCache = calculateVOutline();
+				if (isZoomLinear()) {
+					mOutlineCache = AffineTransform.getScaleInstance(1 / cacheZoom, 1 / cacheZoom)
+							.createTransformedShape(vOutlineCache);
+				}
+			}
 		}
 		return vOutlineCache;
 	}
 
+	/**
+	 * Returns the cached outline in model coordinates, or null if it wasn't
+	 * calculated yet or this element doesn't scale linearly with the zoom factor.
+	 */
+	Shape getCachedMOutline() {
+		return mOutlineCache;
+	}
+
+	/**
+	 * Stores an outline calculated in advance by {@link GeometryPrecomputer}.
+	 * Ignored if the zoom factor changed since, or the outline is already known.
+	 */
+	void setPrecomputedOutline(Shape vOutline, Rectangle2D vBounds, Shape mOutline, double zoom) {
+		checkZoom();
+		if (zoom != cacheZoom || vOutlineCache != null)
+			return;
+		vOutlineCache = vOutline;
+		if (vBoundsCache == null)
+			vBoundsCache = vBounds;
+		if (mOutline != null) {
+			mOutlineCache = mOutline;
+			if (mBoundsCache == null)
+				mBoundsCache = scale(vBoundsCache, 1 / zoom);
+		}
+	}
+
 	/**
 	 * Calculate the outline of this element. The outline is used to check whether a
 	 * point is contained in this element or not and includes the stroke and takes
@@ -314,7 +433,8 @@ public abstract class VElement implements Comparable<VElement> {
 	 * the type of object by default, but can be overridden by the user.
 	 *
 	 * The comparison is consistent with "equals", i.e. it doesn't return 0 if the
-	 * objects are different, even if their drawing order is the same.
+	 * objects are different, even if their drawing order is the same. Elements
+	 * with the same z-order are drawn in the order they were created.
 	 *
 	 * @param d VPathwayElement that this is compared to.
 	 */
@@ -328,9 +448,9 @@ public abstract class VElement implements Comparable<VElement> {
 		a = getZOrder();
 		b = d.getZOrder();
 
-		// if sorting order is equal, use hash code
+		// if sorting order is equal, use creation order
 		if (b == a) {
-			return hashCode() - d.hashCode();
+			return sequence < d.sequence ? -1 : 1;
 		} else
 			// not simply "a - b" because of the risk of integer overflows
 			return a < b ? -1 : 1;
@@ -363,9 +483,23 @@ public abstract class VElement implements Comparable<VElement> {
 		return removeMe;
 	}
 
+	/**
+	 * Puts an element that was destroyed back on the drawing, so that it can be
+	 * reused instead of creating a new one. Only for elements that don't hold on to
+	 * other resources, such as {@link LinkAnchor}.
+	 */
+	void restore() {
+		if (!removeMe)
+			return;
+		removeMe = false;
+		canvas.restoreObject(this);
+		markDirty();
+	}
+
 	protected void destroy() {
 		// Remove from canvas
 		removeMe = true;
+		canvas.scheduleRemoval(this);
 		markDirty();
 		destroyHandles();
 	}
@@ -131,7 +131,7 @@ public class VGroup extends VShapedElement implements VElementMouseListener {
 	@Override
 	protected boolean vContains(Point2D point) {
 		// return false if point falls on any individual element
-		for (VElement vpe : canvas.getDrawingObjects()) {
+		for (VElement vpe : canvas.getCandidatesAt(point)) {
 			if (vpe instanceof VPathwayObject && !(vpe instanceof VGroup) && vpe.vContains(point)) {
 				return false;
 
@@ -91,8 +91,8 @@ public class VInfoBox extends VPathwayElement {
 	 * @param g the {@link Graphics2D}
 	 */
 	public void doDraw(Graphics2D g) {
-		Font f = new Font(fontName, Font.PLAIN, getVFontSize());
-		Font fb = new Font(f.getFontName(), Font.BOLD, f.getSize());
+		Font f = RenderCache.getFont(fontName, Font.PLAIN, getVFontSize());
+		Font fb = RenderCache.getFont(f.getFontName(), Font.BOLD, f.getSize());
 
 		if (isSelected()) {
 			g.setColor(selectColor);
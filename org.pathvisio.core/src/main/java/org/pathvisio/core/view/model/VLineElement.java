@@ -22,6 +22,8 @@ import java.awt.Graphics2D;
 import java.awt.Shape;
 import java.awt.geom.AffineTransform;
 import java.awt.geom.Area;
+import java.awt.geom.Line2D;
+import java.awt.geom.PathIterator;
 import java.awt.geom.Point2D;
 import java.awt.geom.Rectangle2D;
 import java.util.ArrayList;
@@ -33,7 +35,6 @@ import java.util.Map;
 import org.pathvisio.model.connector.ConnectorShape;
 import org.pathvisio.model.connector.ConnectorShape.Segment;
 import org.pathvisio.model.connector.ConnectorShape.WayPoint;
-import org.pathvisio.model.GraphLink.LinkableFrom;
 import org.pathvisio.model.type.LineStyleType;
 import org.pathvisio.model.type.ArrowHeadType;
 import org.pathvisio.model.LineElement;
@@ -64,6 +65,8 @@ import org.pathvisio.model.shape.ShapeRegistry;
  */
 public class VLineElement extends VPathwayElement implements VGroupable, Adjustable {
 
+	private static final float[] DASH_PATTERN = new float[] { 4, 4 };
+
 	private List<VLinePoint> points;
 
 	private Map<Anchor, VAnchor> anchors = new HashMap<Anchor, VAnchor>();
@@ -72,6 +75,14 @@ public class VLineElement extends VPathwayElement implements VGroupable, Adjusta
 
 	ConnectorShape shape;
 
+	// geometry in view coordinates, reset when the model or the zoom factor changes
+	private Shape vConnectorCache;
+	private ArrowShape[] vHeadsCache;
+	private Shape vShapeCache;
+	private List<Line2D> vHitSegmentsCache;
+	private double geometryZoom = Double.NaN; // zoom factor of the cached geometry
+	private Segment[] geometrySegments; // connector segments of the cached geometry
+
 	/**
 	 * Constructor for this class
 	 * 
@@ -209,13 +220,47 @@ public class VLineElement extends VPathwayElement implements VGroupable, Adjusta
 		return getMLine().getConnectorShape();
 	}
 
+	/**
+	 * Drops the cached connector, arrowheads and outline if the zoom factor
+	 * changed since they were calculated, or if the connector was recalculated
+	 * without a change event (e.g. after paste).
+	 */
+	private void checkGeometryZoom() {
+		double zoom = canvas.getZoomFactor();
+		Segment[] segments = getConnectorShape().getSegments();
+		if (zoom != geometryZoom || segments != geometrySegments) {
+			resetGeometry();
+			geometryZoom = zoom;
+			geometrySegments = segments;
+		}
+	}
+
+	/**
+	 * Drops the cached connector, arrowheads and outline. Called when the line
+	 * points, waypoints, connector type, line width or line endings may have
+	 * changed, i.e. on every modification of the model line.
+	 */
+	private void resetGeometry() {
+		vConnectorCache = null;
+		vHeadsCache = null;
+		vShapeCache = null;
+		vHitSegmentsCache = null;
+	}
+
 	/**
 	 * Get the connector shape translated to view coordinates allowing for Line
 	 * Ending This allows the line to be drawn only upto the point where the line
-	 * ending starts
+	 * ending starts. The returned shape is cached and must not be modified.
 	 */
 	public Shape getVConnectorAdjusted() {
+		checkGeometryZoom();
+		if (vConnectorCache == null) {
+			vConnectorCache = calculateVConnectorAdjusted();
+		}
+		return vConnectorCache;
+	}
 
+	private Shape calculateVConnectorAdjusted() {
 		// call to getLineEndingWidth
 		double startGap = getGap(getPathwayObject().getStartLineType());
 		double endGap = getGap(getPathwayObject().getEndLineType());
@@ -254,17 +299,22 @@ public class VLineElement extends VPathwayElement implements VGroupable, Adjusta
 
 		Shape l = getVConnectorAdjusted();
 
-		ArrowShape[] heads = getVHeadsAdjusted();
-		ArrowShape hs = heads[0];
-		ArrowShape he = heads[1];
+		ArrowShape hs = null;
+		ArrowShape he = null;
+		// arrowheads are just a few pixels at a low level of detail, leave them out
+		if (!canvas.isSimplifiedDrawing()) {
+			ArrowShape[] heads = getVHeadsAdjusted();
+			hs = heads[0];
+			he = heads[1];
+		}
 
 		g.draw(l);
 		drawHead(g, he, c);
 		drawHead(g, hs, c);
 		if (isHighlighted()) {
 			Color hc = getHighlightColor();
-			g.setColor(new Color(hc.getRed(), hc.getGreen(), hc.getBlue(), 128));
-			g.setStroke(new BasicStroke(HIGHLIGHT_STROKE_WIDTH));
+			g.setColor(RenderCache.getColor(hc, 128));
+			g.setStroke(RenderCache.getStroke(HIGHLIGHT_STROKE_WIDTH));
 			g.draw(l);
 			if (he != null)
 				g.draw(he.getShape());
@@ -298,7 +348,7 @@ public class VLineElement extends VPathwayElement implements VGroupable, Adjusta
 	 */
 	public Shape mayCross(Point2D point) {
 		Shape shape = null;
-		for (VElement o : canvas.getDrawingObjects()) {
+		for (VElement o : canvas.getCandidatesAt(point)) {
 			if (o instanceof VDataNode || o instanceof Shape)
 				if (o.vContains(point)) {
 					shape = o.getVOutline();
@@ -320,6 +370,14 @@ public class VLineElement extends VPathwayElement implements VGroupable, Adjusta
 		return getVShape(true);
 	}
 
+	/**
+	 * The outline only depends on the model points, line width and arrowheads.
+	 */
+	@Override
+	protected boolean isZoomLinear() {
+		return true;
+	}
+
 	/**
 	 * Returns the properly sized and rotated arrowheads
 	 * 
@@ -337,11 +395,20 @@ public class VLineElement extends VPathwayElement implements VGroupable, Adjusta
 
 	/**
 	 * Returns the properly sized and rotated arrowheads which have been adjusted
-	 * for Line ending thickness
+	 * for Line ending thickness. The returned array is cached and must not be
+	 * modified.
 	 * 
 	 * @return An array with two arrowheads, for the start and end respectively
 	 */
 	public ArrowShape[] getVHeadsAdjusted() {
+		checkGeometryZoom();
+		if (vHeadsCache == null) {
+			vHeadsCache = calculateVHeadsAdjusted();
+		}
+		return vHeadsCache;
+	}
+
+	private ArrowShape[] calculateVHeadsAdjusted() {
 		Segment[] segments = getConnectorShape().getSegments();
 
 		// last segment in the Connector Shape
@@ -357,27 +424,142 @@ public class VLineElement extends VPathwayElement implements VGroupable, Adjusta
 		return new ArrowShape[] { hs, he };
 	}
 
+	/**
+	 * Returns the outline of the line and its arrowheads, including the stroke.
+	 * The returned shape is cached and must not be modified.
+	 */
 	protected Shape getVShape(boolean rotate) {
+		checkGeometryZoom();
+		if (vShapeCache == null) {
+			vShapeCache = calculateVShape();
+		}
+		return vShapeCache;
+	}
+
+	private Shape calculateVShape() {
 		Shape l = getVConnectorAdjusted();
 
 		ArrowShape[] heads = getVHeadsAdjusted();
 		ArrowShape hs = heads[0];
 		ArrowShape he = heads[1];
 
-		float thickness = (float) vFromM(getPathwayObject().getLineWidth());
-		if (getPathwayObject().getLineStyle() == LineStyleType.DOUBLE)
-			thickness *= 4;
-		BasicStroke bs = new BasicStroke(thickness);
+		BasicStroke bs = RenderCache.getStroke(getVOutlineWidth());
 
 		Area total = new Area(bs.createStrokedShape(l));
-		if (hs != null)
+		// the arrowheads with what they enclose
+		if (hs != null) {
 			total.add(new Area(bs.createStrokedShape(hs.getShape())));
-		if (he != null)
+			total.add(new Area(hs.getShape()));
+		}
+		if (he != null) {
 			total.add(new Area(bs.createStrokedShape(he.getShape())));
+			total.add(new Area(he.getShape()));
+		}
 
 		return total;
 	}
 
+	/**
+	 * The width of the stroke around the connector and arrowheads that makes up
+	 * the outline.
+	 */
+	private float getVOutlineWidth() {
+		float thickness = (float) vFromM(getPathwayObject().getLineWidth());
+		if (getPathwayObject().getLineStyle() == LineStyleType.DOUBLE)
+			thickness *= 4;
+		return thickness;
+	}
+
+	/** maximum distance between a curve and its flattened version, in pixels */
+	private static final double HIT_FLATNESS = 0.5;
+
+	/**
+	 * Returns the straight segments of the connector and of the arrowhead
+	 * outlines, in view coordinates. Curves are flattened. Used for hit testing,
+	 * which is much cheaper on these than on the outline {@link Area}.
+	 */
+	private List<Line2D> getVHitSegments() {
+		checkGeometryZoom();
+		if (vHitSegmentsCache == null) {
+			List<Line2D> result = new ArrayList<Line2D>();
+			addSegments(getVConnectorAdjusted(), result);
+			for (ArrowShape h : getVHeadsAdjusted()) {
+				if (h != null)
+					addSegments(h.getShape(), result);
+			}
+			vHitSegmentsCache = result;
+		}
+		return vHitSegmentsCache;
+	}
+
+	private static void addSegments(Shape s, List<Line2D> result) {
+		double[] c = new double[6];
+		double startX = 0, startY = 0, x = 0, y = 0;
+		for (PathIterator i = s.getPathIterator(null, HIT_FLATNESS); !i.isDone(); i.next()) {
+			switch (i.currentSegment(c)) {
+			case PathIterator.SEG_MOVETO:
+				startX = x = c[0];
+				startY = y = c[1];
+				break;
+			case PathIterator.SEG_LINETO:
+				result.add(new Line2D.Double(x, y, c[0], c[1]));
+				x = c[0];
+				y = c[1];
+				break;
+			case PathIterator.SEG_CLOSE:
+				result.add(new Line2D.Double(x, y, startX, startY));
+				x = startX;
+				y = startY;
+				break;
+			}
+		}
+	}
+
+	/**
+	 * Tests the distance to the connector and arrowhead segments, with half the
+	 * outline width as tolerance, and whether the point is inside an arrowhead,
+	 * instead of using the outline {@link Area}.
+	 */
+	@Override
+	protected boolean vContains(Point2D point) {
+		if (!getVBounds().contains(point))
+			return false;
+		double tolerance = getVOutlineWidth() / 2;
+		double toleranceSq = tolerance * tolerance;
+		for (Line2D l : getVHitSegments()) {
+			if (l.ptSegDistSq(point) <= toleranceSq)
+				return true;
+		}
+		for (ArrowShape h : getVHeadsAdjusted()) {
+			if (h != null && h.getShape().contains(point))
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Tests the connector and arrowhead segments against the rectangle grown by
+	 * half the outline width, and the arrowheads against the rectangle itself,
+	 * instead of using the outline {@link Area}.
+	 */
+	@Override
+	protected boolean vIntersects(Rectangle2D r) {
+		if (!getVBounds().intersects(r))
+			return false;
+		double tolerance = getVOutlineWidth() / 2;
+		Rectangle2D grown = new Rectangle2D.Double(r.getX() - tolerance, r.getY() - tolerance,
+				r.getWidth() + 2 * tolerance, r.getHeight() + 2 * tolerance);
+		for (Line2D l : getVHitSegments()) {
+			if (grown.intersectsLine(l))
+				return true;
+		}
+		for (ArrowShape h : getVHeadsAdjusted()) {
+			if (h != null && h.getShape().intersects(r))
+				return true;
+		}
+		return false;
+	}
+
 	private void setAnchors() {
 		// Check for new anchors
 		List<Anchor> manchors = getPathwayObject().getAnchors();
@@ -436,7 +618,7 @@ public class VLineElement extends VPathwayElement implements VGroupable, Adjusta
 	protected void drawHead(Graphics2D g, ArrowShape head, Color c) {
 		if (head != null) {
 			// reset stroked line to solid, but use given thickness
-			g.setStroke(new BasicStroke((float) vFromM(getPathwayObject().getLineWidth())));
+			g.setStroke(RenderCache.getStroke((float) vFromM(getPathwayObject().getLineWidth())));
 			switch (head.getFillType()) {
 			case OPEN:
 				g.setPaint(Color.WHITE);
@@ -610,15 +792,10 @@ public class VLineElement extends VPathwayElement implements VGroupable, Adjusta
 		for (LinePoint p : getPathwayObject().getLinePoints()) {
 			p.moveBy(canvas.mFromV(vdx), canvas.mFromV(vdy));
 		}
-		// Redraw graphRefs //TODO
+		// Redraw lines linked to the anchors
 		for (Anchor anchor : getPathwayObject().getAnchors()) {
-			for (LinkableFrom ref : anchor.getLinkableFroms()) {
-				if (ref instanceof LinePoint) {
-					VLinePoint vp = canvas.getPoint((LinePoint) ref);
-					if (vp != null) {
-						vp.getLine().recalculateConnector();
-					}
-				}
+			for (VLinePoint vp : canvas.getLinkedPoints(anchor)) {
+				vp.getLine().recalculateConnector();
 			}
 		}
 //		for (GraphRefContainer ref : gdata.getReferences()) {
@@ -649,6 +826,7 @@ public class VLineElement extends VPathwayElement implements VGroupable, Adjusta
 
 	public void gmmlObjectModified(PathwayObjectEvent e) {
 		getConnectorShape().recalculateShape(getMLine());
+		resetGeometry();
 
 		WayPoint[] wps = getConnectorShape().getWayPoints();
 		List<LinePoint> mps = getPathwayObject().getLinePoints();
@@ -792,13 +970,12 @@ public class VLineElement extends VPathwayElement implements VGroupable, Adjusta
 	protected void setLineStyle(Graphics2D g) {
 		LineStyleType ls = getPathwayObject().getLineStyle();
 		float lt = (float) vFromM(getPathwayObject().getLineWidth());
-		if (ls == LineStyleType.SOLID) {
-			g.setStroke(new BasicStroke(lt));
+		if (ls == LineStyleType.SOLID || canvas.isSimplifiedDrawing()) {
+			g.setStroke(RenderCache.getStroke(lt));
 		} else if (ls == LineStyleType.DASHED) {
-			g.setStroke(
-					new BasicStroke(lt, BasicStroke.CAP_SQUARE, BasicStroke.JOIN_MITER, 10, new float[] { 4, 4 }, 0));
+			g.setStroke(RenderCache.getStroke(lt, BasicStroke.CAP_SQUARE, BasicStroke.JOIN_MITER, 10, DASH_PATTERN));
 		} else if (ls == LineStyleType.DOUBLE) {
-			g.setStroke(new CompositeStroke(new BasicStroke(lt * 2), new BasicStroke(lt)));
+			g.setStroke(new CompositeStroke(RenderCache.getStroke(lt * 2), RenderCache.getStroke(lt)));
 		}
 	}
 }
@@ -33,7 +33,9 @@ import java.util.Comparator;
 import java.util.ConcurrentModificationException;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -52,6 +54,7 @@ import org.pathvisio.model.DataNode;
 import org.pathvisio.model.DataNode.State;
 import org.pathvisio.model.Drawable;
 import org.pathvisio.model.Evidence;
+import org.pathvisio.model.GraphLink.LinkableFrom;
 import org.pathvisio.model.GraphLink.LinkableTo;
 import org.pathvisio.model.GraphicalLine;
 import org.pathvisio.model.Group;
@@ -99,14 +102,28 @@ public class VPathwayModel implements PathwayModelListener {
 	private static final double FUZZY_SIZE = 8; // fuzz-factor around mouse cursor
 	static final int ZORDER_SELECTIONBOX = Integer.MAX_VALUE;
 	static final int ZORDER_HANDLE = Integer.MAX_VALUE - 1;
+	// more added or removed elements than this are handled in a single pass
+	private static final int BULK_CHANGE_MIN = 8;
+	private static final int BULK_CHANGE_RATIO = 16; // .. if they are also 1/16 of the drawing
 
 	private PathwayModel data; // the associated {@link PathwayModel}.
-	private PathwayModel temporaryCopy = null;
 	private VPathwayWrapper parent; // may be null, optional gui-specific wrapper for this VPathwayModel.
+	private RepaintScheduler repaintScheduler; // null if there is no parent
 	private VInfoBox vInfoBox;
-	private List<VElement> drawingObjects;// All visible objects (incl. handles; excl. selectionBox objects)
+	private List<VElement> drawingObjects;// All visible objects (incl. handles; excl. selectionBox objects), in drawing order
 	SelectionBox selection;
 	private List<VElement> toAdd = new ArrayList<VElement>();
+	private Set<VElement> toRemove = new LinkedHashSet<VElement>(); // destroyed, not yet taken out of the lists
+	// view objects by model object, for the elements in drawingObjects
+	private Map<PathwayObject, VPathwayObject> viewObjects = new IdentityHashMap<PathwayObject, VPathwayObject>();
+	// spatial index of the model backed elements, used for hit testing
+	private SpatialIndex<VElement> spatialIndex = new SpatialIndex<VElement>();
+	private Set<VElement> indexPending = new LinkedHashSet<VElement>(); // bounds changed since last query
+	private Set<VElement> unindexedObjects = new LinkedHashSet<VElement>(); // handles, groups, etc.
+	private Set<VElement> drawOrderPending = new LinkedHashSet<VElement>(); // z-order changed since last draw
+	private ZOrderIndex zOrderIndex = new ZOrderIndex(); // z-orders of the elements, sorted
+	private Set<VElement> overlayObjects = new HashSet<VElement>(); // drawn on top of the static layer
+	private boolean overlayGesture = false; // promote changing elements to the overlay
 	private VElement lastEnteredElement = null;
 	private VElement pressedObject = null; // VElement that is pressed last mouseDown event
 	Template newTemplate = null;
@@ -133,6 +150,12 @@ public class VPathwayModel implements PathwayModelListener {
 			throw new InstantiationError("Please call PreferenceManager.init() before instantiating a VPathway");
 		}
 		this.parent = parent;
+		if (parent != null) {
+			repaintScheduler = new RepaintScheduler(parent,
+					PreferenceManager.getCurrent().getInt(GlobalPreference.REPAINT_MAX_FPS));
+		}
+		undoManager.setMemoryBudget(
+				PreferenceManager.getCurrent().getInt(GlobalPreference.UNDO_MEMORY_BUDGET) * 1024L * 1024L);
 
 		drawingObjects = new ArrayList<VElement>();
 
@@ -305,6 +328,69 @@ public class VPathwayModel implements PathwayModelListener {
 		return p;
 	}
 
+	/**
+	 * Returns the view line points that are linked to the given element, found
+	 * through the links the model keeps for it, without looking at every line of
+	 * the drawing.
+	 *
+	 * @param target an element or anchor that lines can link to.
+	 * @return the linked points of the lines that are shown, possibly empty.
+	 */
+	Collection<VLinePoint> getLinkedPoints(LinkableTo target) {
+		List<VLinePoint> points = new ArrayList<VLinePoint>();
+		for (LinkableFrom ref : target.getLinkableFroms()) {
+			if (ref instanceof LinePoint) {
+				VLinePoint vp = getPoint((LinePoint) ref);
+				if (vp != null) {
+					points.add(vp);
+				}
+			}
+		}
+		return points;
+	}
+
+	/**
+	 * Returns the lines that may move or change shape when the given elements
+	 * are moved or resized: the lines among them, the members of groups among
+	 * them, and every line that is linked to any of these, directly or through
+	 * an anchor.
+	 *
+	 * @param elements the elements that are about to be moved or resized.
+	 * @return the affected lines.
+	 */
+	public Set<LineElement> getDependentLines(Collection<? extends PathwayObject> elements) {
+		Set<LineElement> result = new LinkedHashSet<LineElement>();
+		Set<PathwayObject> visited = new HashSet<PathwayObject>();
+		List<PathwayObject> queue = new ArrayList<PathwayObject>(elements);
+		while (!queue.isEmpty()) {
+			PathwayObject o = queue.remove(queue.size() - 1);
+			if (o == null || !visited.add(o))
+				continue;
+			if (o instanceof LineElement) {
+				LineElement l = (LineElement) o;
+				result.add(l);
+				queue.addAll(l.getAnchors());
+			}
+			if (o instanceof Group) {
+				VPathwayObject vg = getPathwayElementView(o);
+				if (vg instanceof VGroup) {
+					for (VPathwayObject member : ((VGroup) vg).getGroupGraphics()) {
+						queue.add(member.getPathwayObject());
+					}
+				}
+			}
+			if (o instanceof DataNode) {
+				queue.addAll(((DataNode) o).getStates());
+			}
+			if (o instanceof LinkableTo) {
+				for (VLinePoint p : getLinkedPoints((LinkableTo) o)) {
+					queue.add(p.getLine().getPathwayObject());
+				}
+			}
+		}
+		return result;
+	}
+
 	/**
 	 * Returns the view representation {@link VPathwayObject} of the given model
 	 * element {@link PathwayElement}
@@ -314,15 +400,27 @@ public class VPathwayModel implements PathwayModelListener {
 	 *         {@link PathwayElement} or <code>null</code> if no view is available
 	 */
 	public VPathwayObject getPathwayElementView(PathwayObject e) {
-		// TODO: store Graphics in a hashmap to improve speed
-		for (VElement ve : drawingObjects) {
-			if (ve instanceof VPathwayObject) {
-				VPathwayObject ge = (VPathwayObject) ve;
-				if (ge.getPathwayObject() == e)
-					return ge;
-			}
-		}
-		return null;
+		return viewObjects.get(e);
+	}
+
+	/**
+	 * Returns true if there is a view representation for the given model element.
+	 *
+	 * @param e the model element.
+	 */
+	public boolean hasPathwayElementView(PathwayObject e) {
+		return viewObjects.containsKey(e);
+	}
+
+	/**
+	 * Returns a read-only map from model elements to their view representation.
+	 * The map uses identity comparison on the model elements and is kept up to
+	 * date as view objects are added to or removed from the drawing.
+	 *
+	 * @return the map of model elements to view objects.
+	 */
+	public Map<PathwayObject, VPathwayObject> getPathwayElementViews() {
+		return Collections.unmodifiableMap(viewObjects);
 	}
 
 	/**
@@ -344,6 +442,7 @@ public class VPathwayModel implements PathwayModelListener {
 		data.addListener(this);
 		undoManager.setPathway(data);
 		addScheduled();
+		precomputeGeometry(drawingObjects);
 		Logger.log.trace("Done creating view structure");
 	}
 
@@ -452,6 +551,17 @@ public class VPathwayModel implements PathwayModelListener {
 
 		clearSelection();
 		drawingObjects = new ArrayList<VElement>();
+		viewObjects.clear();
+		drawOrderPending.clear();
+		toRemove.clear();
+		dragPreview = null;
+		linkProvidersShown.clear();
+		overlayObjects.clear();
+		overlayGesture = false;
+		spatialIndex.clear();
+		zOrderIndex.clear();
+		indexPending.clear();
+		unindexedObjects.clear();
 		// transfer selectionBox with corresponding listeners
 		SelectionBox newSelection = new SelectionBox(this);
 		for (Iterator<SelectionListener> i = selection.getListeners().iterator(); i.hasNext();) {
@@ -497,12 +607,40 @@ public class VPathwayModel implements PathwayModelListener {
 	 *            the clipping area.
 	 */
 	public void draw(Graphics2D g2d) {
+		drawLayers(g2d, true, true);
+	}
+
+	/**
+	 * Paints the static layer of the drawing, i.e. all components except the ones
+	 * in the overlay layer. This method will draw opaquely, like
+	 * {@link #draw(Graphics2D)}. The result can be cached until
+	 * {@link VPathwayWrapper#redraw(Rectangle)} is called for the area.
+	 * 
+	 * @param g2d the graphics device to draw on.
+	 * @see #isInOverlay(VElement)
+	 */
+	public void drawStatic(Graphics2D g2d) {
+		drawLayers(g2d, true, false);
+	}
+
+	/**
+	 * Paints the overlay layer of the drawing on top of the static layer, without
+	 * erasing the background.
+	 * 
+	 * @param g2d the graphics device to draw on.
+	 * @see #isInOverlay(VElement)
+	 */
+	public void drawOverlay(Graphics2D g2d) {
+		drawLayers(g2d, false, true);
+	}
+
+	private void drawLayers(Graphics2D g2d, boolean staticLayer, boolean overlay) {
 		addScheduled();
 		cleanUp();
 
+		// save original, non-clipped, to pass on to render hooks
+		Graphics2D g2dFull = renderHooks.isEmpty() ? null : (Graphics2D) g2d.create();
 		try {
-			// save original, non-clipped, to pass on to VPathwayEvent
-			Graphics2D g2dFull = (Graphics2D) g2d.create();
 
 			// we only redraw the part within the clipping area.
 			Rectangle area = g2d.getClipBounds();
@@ -512,9 +650,11 @@ public class VPathwayModel implements PathwayModelListener {
 				area = new Rectangle(0, 0, size.width, size.height);
 			}
 
-			// erase the background
-			g2d.setColor(java.awt.Color.WHITE);
-			g2d.fillRect(area.x, area.y, area.width, area.height);
+			if (staticLayer) {
+				// erase the background
+				g2d.setColor(java.awt.Color.WHITE);
+				g2d.fillRect(area.x, area.y, area.width, area.height);
+			}
 
 			g2d.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
 			g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
@@ -522,23 +662,85 @@ public class VPathwayModel implements PathwayModelListener {
 
 			g2d.clip(area);
 			g2d.setColor(java.awt.Color.BLACK);
-			Collections.sort(drawingObjects);
-			cleanUp();
-			for (VElement o : drawingObjects) {
+			updateLevelOfDetail(g2d);
+			updateDrawOrder();
+			List<VElement> layer = drawingObjects;
+			if (!staticLayer) {
+				// only the overlay, no need to visit the whole drawing
+				layer = new ArrayList<VElement>(overlayObjects);
+				Collections.sort(layer, VElement.DRAW_LIST_ORDER);
+			}
+			for (VElement o : layer) {
+				if (o.inOverlay ? !overlay : !staticLayer) {
+					continue;
+				}
 				if (o.vIntersects(area)) {
 					if (checkDrawAllowed(o)) {
-						o.draw((Graphics2D) g2d.create());
-						fireVPathwayEvent(new VPathwayModelEvent(this, o, (Graphics2D) g2dFull.create(),
-								VPathwayEventType.ELEMENT_DRAWN));
+						o.draw(g2d);
+						if (g2dFull != null) {
+							callRenderHooks(o, g2dFull);
+						}
 					}
 				}
 			}
+			if (overlay && dragPreview != null) {
+				dragPreview.draw(g2d);
+			}
 		} catch (ConcurrentModificationException ex) {
 			// guard against messing up repaint event completely
 			Logger.log.error("Concurrent modification", ex);
+		} finally {
+			if (g2dFull != null)
+				g2dFull.dispose();
 		}
 	}
 
+	private void callRenderHooks(VElement o, Graphics2D g2dFull) {
+		for (int i = 0; i < renderHooks.size(); i++) {
+			RenderHook hook = renderHooks.get(i);
+			if (hook.getElementType().isInstance(o)) {
+				Graphics2D g = (Graphics2D) g2dFull.create();
+				hook.elementDrawn(o, g);
+				g.dispose();
+			}
+		}
+	}
+
+	private boolean simplifiedText = false;
+	private boolean simplifiedDrawing = false;
+
+	/**
+	 * Chooses the level of detail for this draw, from the zoom factor combined
+	 * with any scaling of the graphics (e.g. when exporting or printing).
+	 */
+	private void updateLevelOfDetail(Graphics2D g2d) {
+		double pctScale = getPctZoom() * Math.sqrt(Math.abs(g2d.getTransform().getDeterminant()));
+		PreferenceManager prefs = PreferenceManager.getCurrent();
+		simplifiedText = pctScale < prefs.getInt(GlobalPreference.LOD_TEXT_ZOOM);
+		simplifiedDrawing = pctScale < prefs.getInt(GlobalPreference.LOD_DETAIL_ZOOM);
+	}
+
+	/**
+	 * Returns true if text is too small to read at the current level of detail,
+	 * and elements should draw text labels as plain boxes instead.
+	 *
+	 * @see GlobalPreference#LOD_TEXT_ZOOM
+	 */
+	public boolean isSimplifiedText() {
+		return simplifiedText;
+	}
+
+	/**
+	 * Returns true if elements should leave out small details, such as
+	 * arrowheads, citations, states and dashed strokes, at the current level of
+	 * detail.
+	 *
+	 * @see GlobalPreference#LOD_DETAIL_ZOOM
+	 */
+	public boolean isSimplifiedDrawing() {
+		return simplifiedDrawing;
+	}
+
 	/**
 	 * This will cause a complete redraw of the pathway to be scheduled. The redraw
 	 * will happen as soon as all other swing events are processed.
@@ -547,18 +749,104 @@ public class VPathwayModel implements PathwayModelListener {
 	 * visualization method) as it is quite slow.
 	 */
 	public void redraw() {
-		if (parent != null)
+		if (parent != null) {
+			repaintScheduler.clear();
 			parent.redraw();
+		}
+	}
+
+	/**
+	 * Returns the scheduler that collects dirty areas before they are passed on
+	 * to the wrapper, or null if this VPathwayModel has no wrapper. Can be used
+	 * to change the frame rate, or to look at how well repaints are coalesced.
+	 */
+	public RepaintScheduler getRepaintScheduler() {
+		return repaintScheduler;
 	}
 
 	/**
 	 * Adds object boundaries to the "dirty" area, the area which needs to be
 	 * redrawn. The redraw will not happen immediately, but will be scheduled on the
-	 * event dispatch thread.
+	 * event dispatch thread, together with the other areas that became dirty in
+	 * the same frame. See {@link RepaintScheduler}.
 	 */
-	void addDirtyRect(Rectangle2D ar) {
+	void addDirtyRect(VElement source, Rectangle2D ar) {
+		if (parent == null)
+			return;
+		if (batchDepth > 0) {
+			// repaint once when the batch ends
+			if (batchDirtyRect == null) {
+				batchDirtyRect = new Rectangle2D.Double();
+				batchDirtyRect.setRect(ar);
+			} else {
+				batchDirtyRect.add(ar);
+			}
+			batchDirtyStatic |= !source.inOverlay;
+		} else {
+			// the static layer under an overlay element doesn't change
+			scheduleRepaint(ar.getBounds(), !source.inOverlay);
+		}
+	}
+
+	private void scheduleRepaint(Rectangle r, boolean staticLayer) {
 		if (parent != null)
-			parent.redraw(ar.getBounds());
+			repaintScheduler.addDirty(r, staticLayer);
+	}
+
+	// ================================================================================
+	// Overlay Methods
+	// ================================================================================
+	/**
+	 * Returns true if the given element is drawn in the overlay layer instead of
+	 * the static layer. Handles, the selection box and link anchors are always in
+	 * the overlay. Other elements are promoted to the overlay while they are
+	 * changed by a drag gesture, so that drag feedback only repaints the overlay
+	 * instead of everything under the dirty area. Promoted elements are drawn above
+	 * the static layer until the gesture ends.
+	 *
+	 * @param o the element.
+	 * @return true if o is in the overlay layer.
+	 */
+	public boolean isInOverlay(VElement o) {
+		return o.inOverlay;
+	}
+
+	private static boolean isOverlayType(VElement o) {
+		return o instanceof Handle || o instanceof SelectionBox || o instanceof LinkAnchor;
+	}
+
+	/**
+	 * Called by {@link VElement#markDirty()}. During a drag gesture, moves the
+	 * element from the static layer to the overlay.
+	 */
+	void promoteToOverlay(VElement o) {
+		if (overlayGesture && !o.inOverlay && o.inDrawList && !o.toBeRemoved()) {
+			o.inOverlay = true;
+			overlayObjects.add(o);
+			// remove it from the static layer, where it was drawn with its cached bounds
+			scheduleRepaint(o.getVBounds().getBounds(), true);
+		}
+	}
+
+	private void startOverlayGesture() {
+		overlayGesture = true;
+	}
+
+	/**
+	 * Moves the elements promoted during the drag gesture back to the static layer.
+	 */
+	private void stopOverlayGesture() {
+		if (!overlayGesture)
+			return;
+		overlayGesture = false;
+		for (Iterator<VElement> i = overlayObjects.iterator(); i.hasNext();) {
+			VElement o = i.next();
+			if (!isOverlayType(o)) {
+				i.remove();
+				o.inOverlay = false;
+				scheduleRepaint(o.getVBounds().getBounds(), true);
+			}
+		}
 	}
 
 	// ================================================================================
@@ -698,6 +986,32 @@ public class VPathwayModel implements PathwayModelListener {
 		return result;
 	}
 
+	/**
+	 * Get the model elements of all selected view objects, including members of
+	 * selected groups.
+	 *
+	 * @return the selected model elements, each of them once.
+	 */
+	private List<PathwayObject> getSelectedPathwayObjects() {
+		Set<PathwayObject> result = new LinkedHashSet<PathwayObject>();
+		for (VElement g : selection.getSelection()) {
+			if (g instanceof VPathwayObject) {
+				addWithMembers(((VPathwayObject) g).getPathwayObject(), result);
+			}
+		}
+		return new ArrayList<PathwayObject>(result);
+	}
+
+	private static void addWithMembers(PathwayObject o, Set<PathwayObject> result) {
+		if (!result.add(o))
+			return;
+		if (o instanceof Group) {
+			for (Groupable member : ((Group) o).getPathwayElements()) {
+				addWithMembers((PathwayObject) member, result);
+			}
+		}
+	}
+
 	/**
 	 * Responds to ctrl/command-G. First checks for current status of selection with
 	 * respect to grouping. If selection is already grouped (members of the same
@@ -813,7 +1127,64 @@ public class VPathwayModel implements PathwayModelListener {
 			break;
 		}
 		addScheduled();
-		cleanUp();
+		if (batchDepth == 0) {
+			cleanUp();
+		}
+	}
+
+	// ================================================================================
+	// Batch Methods
+	// ================================================================================
+	private int batchDepth = 0;
+	private Rectangle2D batchDirtyRect = null; // union of the areas to repaint
+	private boolean batchDirtyStatic = false; // whether the static layer changed
+
+	/**
+	 * Starts a batch of changes. Until the matching {@link #endBatch()}, removed
+	 * elements are not cleaned up, dirty areas are not repainted, selection
+	 * events are held back and the undo manager records only the first action.
+	 * When the batch ends, all of this is applied at once. Use this around bulk
+	 * operations that change many elements, such as paste or delete.
+	 * <p>
+	 * Batches may be nested, the changes are applied when the outermost batch
+	 * ends. Always call endBatch in a finally block.
+	 */
+	public void beginBatch() {
+		if (batchDepth++ == 0) {
+			selection.holdEvents();
+		}
+		if (undoManager != null)
+			undoManager.beginBatch();
+	}
+
+	/**
+	 * Ends a batch of changes started with {@link #beginBatch()}.
+	 */
+	public void endBatch() {
+		if (batchDepth == 0)
+			throw new IllegalStateException("endBatch() without beginBatch()");
+		if (undoManager != null)
+			undoManager.endBatch();
+		if (--batchDepth == 0) {
+			addScheduled();
+			cleanUp();
+			Rectangle2D dirty = batchDirtyRect;
+			batchDirtyRect = null;
+			if (dirty != null) {
+				scheduleRepaint(dirty.getBounds(), batchDirtyStatic);
+			}
+			batchDirtyStatic = false;
+			selection.releaseEvents();
+		}
+	}
+
+	/**
+	 * Returns true if a batch of changes is in progress.
+	 *
+	 * @see #beginBatch()
+	 */
+	public boolean isBatching() {
+		return batchDepth > 0;
 	}
 
 	// ================================================================================
@@ -837,12 +1208,89 @@ public class VPathwayModel implements PathwayModelListener {
 	 * elements array. This method adds the elements that are scheduled to be added.
 	 */
 	void addScheduled() {
+		if (toAdd.isEmpty())
+			return;
+		// inserting one by one shifts the list for every element, which makes
+		// loading a pathway quadratic. For larger batches append and sort once.
+		boolean bulk = isBulkChange(toAdd.size());
 		for (VElement elt : toAdd) {
-			if (!drawingObjects.contains(elt)) { // Don't add duplicates!
-				drawingObjects.add(elt);
+			if (!elt.inDrawList && !elt.toBeRemoved()) { // Don't add duplicates!
+				if (bulk) {
+					elt.drawZOrder = elt.getZOrder();
+					elt.inDrawList = true;
+					drawingObjects.add(elt);
+				} else {
+					insertInDrawOrder(elt);
+				}
+				if (isOverlayType(elt)) {
+					elt.inOverlay = true;
+					overlayObjects.add(elt);
+				}
+				if (elt instanceof VPathwayObject) {
+					registerView((VPathwayObject) elt);
+				}
+				if (isIndexed(elt)) {
+					indexPending.add(elt);
+				} else {
+					unindexedObjects.add(elt);
+				}
 			}
 		}
 		toAdd.clear();
+		if (bulk) {
+			Collections.sort(drawingObjects, VElement.DRAW_LIST_ORDER);
+		}
+	}
+
+	/**
+	 * Returns true if adding or removing the given number of elements is better
+	 * done with a single pass over the drawing list than element by element.
+	 */
+	private boolean isBulkChange(int count) {
+		return count > BULK_CHANGE_MIN && count * BULK_CHANGE_RATIO > drawingObjects.size();
+	}
+
+	/**
+	 * Schedules a destroyed element to be taken out of the drawing on the next
+	 * clean-up, so that clean-up doesn't have to look at every element.
+	 *
+	 * @param o the destroyed element.
+	 */
+	void scheduleRemoval(VElement o) {
+		toRemove.add(o);
+	}
+
+	/**
+	 * Called by {@link VElement#restore()}, puts a destroyed element back on the
+	 * drawing.
+	 *
+	 * @param o the restored element.
+	 */
+	void restoreObject(VElement o) {
+		toRemove.remove(o);
+		if (!o.inDrawList) {
+			toAdd.add(o);
+		}
+	}
+
+	private void registerView(VPathwayObject v) {
+		PathwayObject o = v.getPathwayObject();
+		if (o != null) {
+			viewObjects.put(o, v);
+		}
+		if (v instanceof VGroupable) {
+			zOrderIndex.add((VGroupable) v);
+		}
+	}
+
+	private void unregisterView(VPathwayObject v) {
+		PathwayObject o = v.getPathwayObject();
+		if (o != null && viewObjects.get(o) == v) {
+			viewObjects.remove(o);
+		}
+		if (v instanceof VGroupable) {
+			zOrderIndex.remove((VGroupable) v);
+		}
 	}
 
 	/**
@@ -852,7 +1300,7 @@ public class VPathwayModel implements PathwayModelListener {
 	 *           graphics
 	 */
 	private void newObject(Point ve) {
-		undoManager.newAction("New Object");
+		undoManager.newAddAction("New Object");
 		double mx = mFromV((double) ve.x);
 		double my = mFromV((double) ve.y);
 
@@ -908,11 +1356,16 @@ public class VPathwayModel implements PathwayModelListener {
 	 * @param removeFromModel Whether to remove the model representation or not
 	 */
 	public void removeDrawingObjects(List<VElement> toRemove, boolean removeFromModel) {
-		for (VElement o : toRemove) {
-			removeDrawingObject(o, removeFromModel);
+		beginBatch();
+		try {
+			for (VElement o : toRemove) {
+				removeDrawingObject(o, removeFromModel);
+			}
+			selection.fitToSelection();
+			cleanUp();
+		} finally {
+			endBatch();
 		}
-		selection.fitToSelection();
-		cleanUp();
 	}
 
 	/**
@@ -929,7 +1382,9 @@ public class VPathwayModel implements PathwayModelListener {
 					data.remove(((VPathwayObject) toRemove).getPathwayObject());
 				}
 			}
-			cleanUp();
+			if (batchDepth == 0) {
+				cleanUp();
+			}
 		}
 	}
 
@@ -976,11 +1431,32 @@ public class VPathwayModel implements PathwayModelListener {
 	 */
 	public void setPctZoom(double pctZoomFactor) {
 		zoomFactor = pctZoomFactor / 100.0;
-		for (VElement vpe : drawingObjects) {
-			vpe.zoomChanged();
-		}
-		if (parent != null)
+		// elements refresh their view geometry lazily, and the spatial index is
+		// in model coordinates, so nothing needs to be recalculated here. Only
+		// the visible elements are prepared for the next paint.
+		if (parent != null) {
+			precomputeGeometry(getCandidatesIn(parent.getViewRect()));
 			parent.resized();
+		}
+	}
+
+	/**
+	 * Calculates the outlines of the given model backed elements in parallel, so
+	 * that they don't have to be calculated one by one during the next paint.
+	 * Can be switched off with {@link GlobalPreference#PRECOMPUTE_GEOMETRY}.
+	 *
+	 * @see GeometryPrecomputer
+	 */
+	private void precomputeGeometry(Collection<VElement> elements) {
+		if (!PreferenceManager.getCurrent().getBoolean(GlobalPreference.PRECOMPUTE_GEOMETRY))
+			return;
+		List<VElement> todo = new ArrayList<VElement>();
+		for (VElement o : elements) {
+			if (o instanceof VPathwayObject && o.isZoomLinear() && !o.toBeRemoved()) {
+				todo.add(o);
+			}
+		}
+		GeometryPrecomputer.precompute(todo, zoomFactor);
 	}
 
 	public void centeredZoom(double pctZoomFactor) {
@@ -1040,10 +1516,7 @@ public class VPathwayModel implements PathwayModelListener {
 	 * @param g   the handle
 	 */
 	private void linkPointToObject(Point2D p2d, Handle g) {
-		if (dragUndoState == DRAG_UNDO_CHANGE_START) {
-			dragUndoState = DRAG_UNDO_CHANGED;
-		}
-		hideLinkAnchors();
+		startDragUndo();
 		VLinePoint vPoint = (VLinePoint) g.getAdjustable();
 		VLineElement vLine = vPoint.getLine();
 		LineElement line = vLine.getPathwayObject();
@@ -1064,13 +1537,15 @@ public class VPathwayModel implements PathwayModelListener {
 			}
 		}
 		LinkableTo linkableTo = null;
+		Set<LinkProvider> shown = new HashSet<LinkProvider>();
 		for (LinkProvider linkProvider : linkProviders) {
 			// do nothing if linkprovider is an anchor with disallowlinks true
 			if (linkProvider instanceof VAnchor
 					&& ((VAnchor) linkProvider).getAnchor().getShapeType().isDisallowLinks()) {
 				break;
 			}
-			linkProvider.showLinkAnchors();
+			showLinkAnchors(linkProvider);
+			shown.add(linkProvider);
 			LinkAnchor linkAnchor = linkProvider.getLinkAnchorAt(p2d);
 			// if link anchor valid
 			if (linkAnchor != null) {
@@ -1092,6 +1567,8 @@ public class VPathwayModel implements PathwayModelListener {
 				currentLinkAnchor.unhighlight();
 			}
 		}
+		// only the providers that are no longer under the cursor change
+		hideLinkAnchorsExcept(shown);
 	}
 
 	/**
@@ -1102,7 +1579,7 @@ public class VPathwayModel implements PathwayModelListener {
 	 */
 	private List<LinkProvider> getLinkProvidersAt(Point2D p2d) {
 		List<LinkProvider> result = new ArrayList<LinkProvider>();
-		for (VElement o : drawingObjects) {
+		for (VElement o : getCandidatesAt(p2d)) {
 			if (o instanceof LinkProvider && o.getVBounds().contains(p2d)) {
 				result.add((LinkProvider) o);
 			}
@@ -1110,13 +1587,36 @@ public class VPathwayModel implements PathwayModelListener {
 		return result;
 	}
 
+	// link providers that currently show their link anchors
+	private Set<LinkProvider> linkProvidersShown = new LinkedHashSet<LinkProvider>();
+
+	/**
+	 * Shows the link anchors of the given provider, unless they are shown
+	 * already.
+	 */
+	private void showLinkAnchors(LinkProvider p) {
+		if (linkProvidersShown.add(p)) {
+			p.showLinkAnchors();
+		}
+	}
+
 	/**
-	 * 
+	 * Hides the link anchors of all providers that show them.
 	 */
 	private void hideLinkAnchors() {
-		for (VElement pe : getDrawingObjects()) {
-			if (pe instanceof LinkProvider) {
-				((LinkProvider) pe).hideLinkAnchors();
+		hideLinkAnchorsExcept(Collections.<LinkProvider>emptySet());
+	}
+
+	/**
+	 * Hides the link anchors of the providers that show them, except the given
+	 * ones.
+	 */
+	private void hideLinkAnchorsExcept(Set<LinkProvider> keep) {
+		for (Iterator<LinkProvider> i = linkProvidersShown.iterator(); i.hasNext();) {
+			LinkProvider p = i.next();
+			if (!keep.contains(p)) {
+				i.remove();
+				p.hideLinkAnchors();
 			}
 		}
 	}
@@ -1160,14 +1660,24 @@ public class VPathwayModel implements PathwayModelListener {
 		// And only when the right button isn't clicked
 		if (pressedObject != null && isDragging && !e.isKeyDown(java.awt.event.MouseEvent.BUTTON3_DOWN_MASK)) {
 			if (dragUndoState == DRAG_UNDO_CHANGE_START) {
-				dragUndoState = DRAG_UNDO_CHANGED;
+				startDragUndo();
+				startDragPreview();
 			}
 			double vdx = e.getX() - vPreviousX;
 			double vdy = e.getY() - vPreviousY;
-			if (pressedObject instanceof Handle) {
-				((Handle) (pressedObject)).vMoveTo(e.getX(), e.getY());
+			if (dragPreview != null) {
+				scheduleRepaint(dragPreview.getVBounds(), false);
+				dragPreview.moveBy(vdx, vdy);
+				scheduleRepaint(dragPreview.getVBounds(), false);
 			} else {
-				pressedObject.vMoveBy(vdx, vdy);
+				if (!selection.isSelecting()) {
+					startOverlayGesture();
+				}
+				if (pressedObject instanceof Handle) {
+					((Handle) (pressedObject)).vMoveTo(e.getX(), e.getY());
+				} else {
+					pressedObject.vMoveBy(vdx, vdy);
+				}
 			}
 
 			vPreviousX = e.getX();
@@ -1308,7 +1818,6 @@ public class VPathwayModel implements PathwayModelListener {
 		if (!openHref(e, vpe)) {
 			// setFocus();
 			vDragStart = new Point(e.getX(), e.getY());
-			temporaryCopy = (PathwayModel) data.clone();
 
 			if (editMode) {
 				if (newTemplate != null) {
@@ -1334,22 +1843,8 @@ public class VPathwayModel implements PathwayModelListener {
 	 * @param e the mouse event.
 	 */
 	public void mouseUp(MouseEvent e) {
+		finishDragPreview();
 		if (isDragging) {
-			if (dragUndoState == DRAG_UNDO_CHANGED) {
-				assert (temporaryCopy != null);
-				// further specify the type of undo event,
-				// depending on the type of object being dragged
-				String message = "Drag Object";
-				if (pressedObject instanceof Handle) {
-					if (((Handle) pressedObject).getFreedom() == Handle.Freedom.ROTATION) {
-						message = "Rotate Object";
-					} else {
-						message = "Resize Object";
-					}
-				}
-				undoManager.newAction(new UndoAction(message, temporaryCopy));
-				temporaryCopy = null;
-			}
 			resetHighlight();
 			hideLinkAnchors();
 			if (selection.isSelecting()) { // If we were selecting, stop it
@@ -1365,12 +1860,112 @@ public class VPathwayModel implements PathwayModelListener {
 			setNewTemplate(null);
 		}
 		isDragging = false;
+		stopOverlayGesture();
 		dragUndoState = DRAG_UNDO_NOT_RECORDING;
 		if (pressedObject != null) {
 			fireVPathwayEvent(new VPathwayModelEvent(this, pressedObject, e, VPathwayEventType.ELEMENT_CLICKED_UP));
 		}
 	}
 
+	// ================================================================================
+	// Drag Preview Methods
+	// ================================================================================
+	private DragPreview dragPreview = null;
+
+	/**
+	 * Returns true if a large selection is being dragged as an image, see
+	 * {@link GlobalPreference#ENABLE_DRAG_PREVIEW}. The elements are moved when
+	 * the mouse button is released.
+	 */
+	public boolean isDragPreview() {
+		return dragPreview != null;
+	}
+
+	/**
+	 * Called at the start of a drag, after {@link #startDragUndo()} has recorded
+	 * the geometry of the dragged elements. If the selection or group that is
+	 * dragged is large enough, renders it into a {@link DragPreview} that is
+	 * moved instead. Only moves are previewed, the snap modifier only applies to
+	 * handles, which are always dragged directly.
+	 */
+	private void startDragPreview() {
+		if (!(pressedObject == selection || pressedObject instanceof VGroup) || selection.isSelecting())
+			return;
+		PreferenceManager prefs = PreferenceManager.getCurrent();
+		if (!prefs.getBoolean(GlobalPreference.ENABLE_DRAG_PREVIEW))
+			return;
+		addScheduled();
+		cleanUp();
+		updateDrawOrder();
+		List<VElement> moved = new ArrayList<VElement>();
+		int count = 0;
+		Rectangle2D bounds = null;
+		for (VElement o : drawingObjects) {
+			if (o.inOverlay || !isMovedWithSelection(o))
+				continue;
+			moved.add(o);
+			if (o instanceof VPathwayObject)
+				count++;
+			if (bounds == null) {
+				bounds = new Rectangle2D.Double();
+				bounds.setRect(o.getVBounds());
+			} else {
+				bounds.add(o.getVBounds());
+			}
+		}
+		if (bounds == null || count < prefs.getInt(GlobalPreference.DRAG_PREVIEW_MIN_ELEMENTS))
+			return;
+
+		Rectangle area = bounds.getBounds();
+		if (parent != null) {
+			// only render what can be dragged into view, not the whole drawing
+			Rectangle view = parent.getViewRect();
+			view.grow(view.width / 4, view.height / 4);
+			area = area.intersection(view);
+			if (area.isEmpty())
+				return;
+		}
+		dragPreview = new DragPreview(moved, area);
+		scheduleRepaint(dragPreview.getVBounds(), false);
+	}
+
+	/**
+	 * Returns true if the element is moved when the current selection is moved,
+	 * i.e. it is selected or belongs to a selected element.
+	 */
+	private boolean isMovedWithSelection(VElement o) {
+		if (o instanceof VState) {
+			VPathwayObject dn = getPathwayElementView(((VState) o).getPathwayObject().getDataNode());
+			return o.isSelected() || (dn != null && dn.isSelected());
+		} else if (o instanceof VCitation) {
+			return ((VCitation) o).getParent().isSelected();
+		} else if (o instanceof VAnchor) {
+			return ((VAnchor) o).getVLineElement().isSelected();
+		}
+		return o instanceof VPathwayObject && o.isSelected();
+	}
+
+	/**
+	 * Ends the drag preview, if there is one, and moves the dragged elements in
+	 * one go to where the image was dropped. The move is undone by the geometry
+	 * action recorded when the drag started.
+	 */
+	private void finishDragPreview() {
+		if (dragPreview == null)
+			return;
+		DragPreview p = dragPreview;
+		dragPreview = null;
+		scheduleRepaint(p.getVBounds(), false);
+		if (p.getDx() != 0 || p.getDy() != 0) {
+			beginBatch();
+			try {
+				pressedObject.vMoveBy(p.getDx(), p.getDy());
+			} finally {
+				endBatch();
+			}
+		}
+	}
+
 	/**
 	 * Handles mouse entered input.
 	 * 
@@ -1484,7 +2079,11 @@ public class VPathwayModel implements PathwayModelListener {
 	public VElement getObjectAt(Point2D p2d) {
 		int zmax = Integer.MIN_VALUE;
 		VElement probj = null;
-		for (VElement o : drawingObjects) {
+		Rectangle2D fuzz = new Rectangle2D.Double(p2d.getX() - FUZZY_SIZE, p2d.getY() - FUZZY_SIZE, FUZZY_SIZE * 2,
+				FUZZY_SIZE * 2);
+		// the fuzz area contains the point, so one lookup serves both passes
+		List<VElement> candidates = getCandidatesIn(fuzz);
+		for (VElement o : candidates) {
 			// first we use vContains, which is good for detecting (non-transparent) shapes
 			if (o.vContains(p2d) && o.getZOrder() > zmax) {
 				probj = o;
@@ -1494,9 +2093,7 @@ public class VPathwayModel implements PathwayModelListener {
 		if (probj == null) {
 			// if there is nothing at that point, we use vIntersects with a fuzz area,
 			// which is good for detecting lines and transparent shapes.
-			Rectangle2D fuzz = new Rectangle2D.Double(p2d.getX() - FUZZY_SIZE, p2d.getY() - FUZZY_SIZE, FUZZY_SIZE * 2,
-					FUZZY_SIZE * 2);
-			for (VElement o : drawingObjects) {
+			for (VElement o : candidates) {
 				if (o.vIntersects(fuzz) && o.getZOrder() > zmax) {
 					probj = o;
 					zmax = o.getZOrder();
@@ -1516,7 +2113,7 @@ public class VPathwayModel implements PathwayModelListener {
 	 */
 	public List<VElement> getObjectsAt(Point2D p2d) {
 		List<VElement> result = new ArrayList<VElement>();
-		for (VElement o : drawingObjects) {
+		for (VElement o : getCandidatesAt(p2d)) {
 			if (o.vContains(p2d)) {
 				result.add(o);
 			}
@@ -1591,8 +2188,8 @@ public class VPathwayModel implements PathwayModelListener {
 	 * which case the change event was already recorded)
 	 *
 	 * in other cases, it is set to DRAG_UNDO_CHANGE_START at the start of the drag.
-	 * If additional move events occur, the state is changed to DRAG_UNDO_CHANGED.
-	 * The latter will lead to recording of the undo event.
+	 * When the first move event occurs, the undo event is recorded and the state
+	 * is changed to DRAG_UNDO_CHANGED, see {@link #startDragUndo()}.
 	 */
 	private static final int DRAG_UNDO_NOT_RECORDING = 0;
 	private static final int DRAG_UNDO_CHANGE_START = 1;
@@ -1600,6 +2197,34 @@ public class VPathwayModel implements PathwayModelListener {
 
 	private int dragUndoState = DRAG_UNDO_NOT_RECORDING;
 
+	/**
+	 * Records the undo event of a drag that is about to change the pathway. Moving,
+	 * resizing and rotating elements and dragging the ends of lines only change
+	 * their geometry and links. Dragging the segment of a line may replace its
+	 * points, which only a copy of the pathway can undo.
+	 */
+	private void startDragUndo() {
+		if (dragUndoState != DRAG_UNDO_CHANGE_START)
+			return;
+		dragUndoState = DRAG_UNDO_CHANGED;
+		// further specify the type of undo event,
+		// depending on the type of object being dragged
+		String message = "Drag Object";
+		if (pressedObject instanceof Handle) {
+			Handle h = (Handle) pressedObject;
+			if (h.getFreedom() == Handle.Freedom.ROTATION) {
+				message = "Rotate Object";
+			} else {
+				message = "Resize Object";
+			}
+			if (h.getAdjustable() instanceof VLineElement) {
+				undoManager.newAction(message);
+				return;
+			}
+		}
+		undoManager.newGeometryAction(message, getSelectedPathwayObjects());
+	}
+
 	/** minimum drag length for it to be considered a drag and not a click */
 	private static final int MIN_DRAG_LENGTH = 3;
 
@@ -1706,6 +2331,7 @@ public class VPathwayModel implements PathwayModelListener {
 			registerKeyboardAction(viewActions.delete1);
 			registerKeyboardAction(viewActions.delete2);
 			registerKeyboardAction(viewActions.undo);
+			registerKeyboardAction(viewActions.redo);
 			registerKeyboardAction(viewActions.addAnchor);
 			registerKeyboardAction(viewActions.orderBringToFront);
 			registerKeyboardAction(viewActions.orderSendToBack);
@@ -1761,24 +2387,34 @@ public class VPathwayModel implements PathwayModelListener {
 
 			switch (ks.getKeyCode()) {
 			case 37:
-				undoManager.newAction("Move object");
+				newMoveByKeyAction();
 				selection.vMoveBy(-increment, 0);
 				break;
 			case 39:
-				undoManager.newAction("Move object");
+				newMoveByKeyAction();
 				selection.vMoveBy(increment, 0);
 				break;
 			case 38:
-				undoManager.newAction("Move object");
+				newMoveByKeyAction();
 				selection.vMoveBy(0, -increment);
 				break;
 			case 40:
-				undoManager.newAction("Move object");
+				newMoveByKeyAction();
 				selection.vMoveBy(0, increment);
 			}
 		}
 	}
 
+	/**
+	 * Records the undo action for moving the selection with the arrow keys. The
+	 * selected elements are only collected if the move isn't merged into the
+	 * previous one.
+	 */
+	private void newMoveByKeyAction() {
+		undoManager.newCoalescingGeometryAction("Move object", selection.getSelection(),
+				this::getSelectedPathwayObjects);
+	}
+
 	// ================================================================================
 	// Alignment Methods
 	// ================================================================================
@@ -1850,37 +2486,43 @@ public class VPathwayModel implements PathwayModelListener {
 	 * @param layoutType the layout type.
 	 */
 	public void layoutSelected(LayoutType layoutType) {
-		List<VGroupable> selectedGraphics = getSelectedNonGroupGraphics();
+		beginBatch();
+		try {
+			List<VGroupable> selectedGraphics = getSelectedNonGroupGraphics();
+
+			if (selectedGraphics.size() > 0) {
+				undoManager.newCoalescingGeometryAction(layoutType.getDescription(), selection.getSelection(),
+						this::getSelectedPathwayObjects);
+				switch (layoutType) {
+				case COMMON_WIDTH:
+					scaleWidth(selectedGraphics);
+					break;
+				case COMMON_HEIGHT:
+					scaleHeight(selectedGraphics);
+					break;
+				case ALIGN_CENTERX:
+				case ALIGN_CENTERY:
+				case ALIGN_TOP:
+				case ALIGN_LEFT:
+				case ALIGN_RIGHT:
+				case ALIGN_BOTTOM:
+					alignGraphics(layoutType, selectedGraphics);
+					break;
+				case STACK_BOTTOM:
+				case STACK_TOP:
+				case STACK_LEFT:
+				case STACK_RIGHT:
+				case STACK_CENTERX:
+				case STACK_CENTERY:
+					stackGraphics(layoutType, selectedGraphics);
+					break;
+				}
 
-		if (selectedGraphics.size() > 0) {
-			undoManager.newAction(layoutType.getDescription());
-			switch (layoutType) {
-			case COMMON_WIDTH:
-				scaleWidth(selectedGraphics);
-				break;
-			case COMMON_HEIGHT:
-				scaleHeight(selectedGraphics);
-				break;
-			case ALIGN_CENTERX:
-			case ALIGN_CENTERY:
-			case ALIGN_TOP:
-			case ALIGN_LEFT:
-			case ALIGN_RIGHT:
-			case ALIGN_BOTTOM:
-				alignGraphics(layoutType, selectedGraphics);
-				break;
-			case STACK_BOTTOM:
-			case STACK_TOP:
-			case STACK_LEFT:
-			case STACK_RIGHT:
-			case STACK_CENTERX:
-			case STACK_CENTERY:
-				stackGraphics(layoutType, selectedGraphics);
-				break;
+				selection.fitToSelection();
+				redraw();
 			}
-
-			selection.fitToSelection();
-			redraw();
+		} finally {
+			endBatch();
 		}
 	}
 
@@ -2020,46 +2662,32 @@ public class VPathwayModel implements PathwayModelListener {
 	/**
 	 * Returns the highest z-order of all pathway model objects with z-order.
 	 * 
-	 * @param pathwayModel the pathway model.
-	 * @return the highest z-order of all pathway model objects.
+	 * @return the highest z-order of all pathway model objects, or 0 if that is
+	 *         higher.
 	 */
 	public int getMaxZOrder() {
-		List<PathwayElement> dataObjects = data.getPathwayElements();
-		if (dataObjects.size() == 0)
-			return 0;
-		int zMax = 0;
-		for (DataNode e : data.getDataNodes()) {
-			zMax = Math.max(e.getZOrder(), zMax);
-			for (State st : e.getStates())
-				zMax = Math.max(st.getZOrder(), zMax);
-		}
-		for (ShapedElement e : data.getShapedElements()) {
-			zMax = Math.max(e.getZOrder(), zMax);
-		}
-		for (LineElement e : data.getLineElements()) {
-			zMax = Math.max(e.getZOrder(), zMax);
-		}
-		return zMax;
+		addScheduled();
+		return zOrderIndex.getMax();
 	}
 
 	/**
 	 * Returns the lowest z-order of all pathway model objects with z-order.
 	 * 
-	 * @param the pathwayModel.
+	 * @return the lowest z-order of all pathway model objects, or 0 if that is
+	 *         lower.
 	 */
 	public int getMinZOrder() {
-		List<PathwayElement> dataObjects = data.getPathwayElements();
-		if (dataObjects.size() == 0)
-			return 0;
-		int zMin = 0;
-		// no need to check z-order of states, z-order of datanode is always lower.
-		for (ShapedElement e : data.getShapedElementsExclStates()) {
-			zMin = Math.min(e.getZOrder(), zMin);
-		}
-		for (LineElement e : data.getLineElements()) {
-			zMin = Math.min(e.getZOrder(), zMin);
-		}
-		return zMin;
+		addScheduled();
+		return zOrderIndex.getMin();
+	}
+
+	/**
+	 * Sets the z-order of g, and updates the index right away, so that the next
+	 * element of a selection sees the new value.
+	 */
+	private void setZOrder(VDrawable g, int z) {
+		g.getPathwayObject().setZOrder(z);
+		zOrderIndex.update(g);
 	}
 
 	/**
@@ -2068,10 +2696,15 @@ public class VPathwayModel implements PathwayModelListener {
 	 * @param gs the set of graphics to move.
 	 */
 	public void moveGraphicsTop(List<VDrawable> gs) {
-		Collections.sort(gs, new ZComparator());
-		int base = getMaxZOrder() + 1;
-		for (VDrawable g : gs) {
-			g.getPathwayObject().setZOrder(base++);
+		beginBatch();
+		try {
+			Collections.sort(gs, new ZComparator());
+			int base = getMaxZOrder() + 1;
+			for (VDrawable g : gs) {
+				setZOrder(g, base++);
+			}
+		} finally {
+			endBatch();
 		}
 	}
 
@@ -2081,10 +2714,15 @@ public class VPathwayModel implements PathwayModelListener {
 	 * @param gs the set of graphics to move.
 	 */
 	public void moveGraphicsBottom(List<VDrawable> gs) {
-		Collections.sort(gs, new ZComparator());
-		int base = getMinZOrder() - gs.size() - 1;
-		for (VDrawable g : gs) {
-			g.getPathwayObject().setZOrder(base++);
+		beginBatch();
+		try {
+			Collections.sort(gs, new ZComparator());
+			int base = getMinZOrder() - gs.size() - 1;
+			for (VDrawable g : gs) {
+				setZOrder(g, base++);
+			}
+		} finally {
+			endBatch();
 		}
 	}
 
@@ -2095,33 +2733,52 @@ public class VPathwayModel implements PathwayModelListener {
 	 * @param gs the set of graphics to move.
 	 */
 	public void moveGraphicsUp(List<VDrawable> gs) {
-		// TODO: Doesn't really work very well with multiple selections
-		for (VDrawable g : gs) {
-			// make sure there is enough space between g and the next
-			autoRenumberZOrder();
-
-			int order = g.getPathwayObject().getZOrder();
-			VDrawable nextGraphics = null;
-			int nextZ = order;
-			for (VDrawable i : getOverlappingGraphics(g)) {
-				int iorder = i.getPathwayObject().getZOrder();
-				if (nextGraphics == null && iorder > nextZ) {
-					nextZ = iorder;
-					nextGraphics = i;
-				} else if (nextGraphics != null && iorder < nextZ && iorder > order) {
-					nextZ = iorder;
-					nextGraphics = i;
+		beginBatch();
+		try {
+			// TODO: Doesn't really work very well with multiple selections
+			addScheduled();
+			for (VDrawable g : gs) {
+				int z = getNextZOrder(g, true) + 1;
+				if (zOrderIndex.isUsedByOther(z, g)) {
+					// no space between g and the next, make some
+					renumberZOrder();
+					z = getNextZOrder(g, true) + 1;
 				}
+				setZOrder(g, z);
 			}
-			g.getPathwayObject().setZOrder(nextZ + 1);
+		} finally {
+			endBatch();
 		}
 	}
 
 	/**
-	 * Makes sure there is always a minimum spacing of two between two consecutive
-	 * elements, so that we can freely move items in between.
+	 * Returns the z-order of the nearest overlapping element above g (or below,
+	 * if up is false), or the z-order of g if there is none.
 	 */
-	private void autoRenumberZOrder() {
+	private int getNextZOrder(VDrawable g, boolean up) {
+		int order = g.getZOrder();
+		int nextZ = order;
+		for (VDrawable i : getOverlappingGraphics(g)) {
+			int iorder = i.getZOrder();
+			if (up ? iorder > order && (nextZ == order || iorder < nextZ)
+					: iorder < order && (nextZ == order || iorder > nextZ)) {
+				nextZ = iorder;
+			}
+		}
+		return nextZ;
+	}
+
+	/** spacing between z-orders after renumbering */
+	private static final int ZORDER_SPACING = 16;
+
+	/**
+	 * Makes sure there is a spacing of at least {@link #ZORDER_SPACING} between
+	 * two consecutive elements, so that we can freely move items in between. This
+	 * touches every element, but is only needed when there is no free z-order
+	 * left between two elements.
+	 */
+	private void renumberZOrder() {
+		updateDrawOrder();
 		List<VGroupable> elts = new ArrayList<VGroupable>();
 		for (VElement vp : drawingObjects) {
 			if (vp instanceof VGroupable) {
@@ -2130,17 +2787,16 @@ public class VPathwayModel implements PathwayModelListener {
 		}
 		if (elts.size() < 2)
 			return; // nothing to renumber
+		// the sort is stable, so the drawing order breaks ties and nothing changes visually
 		Collections.sort(elts, new ZComparator());
 
-		final int spacing = 2;
-
-		int waterLevel = elts.get(0).getPathwayObject().getZOrder();
+		int waterLevel = elts.get(0).getZOrder();
 		for (int i = 1; i < elts.size(); ++i) {
 			VGroupable curr = elts.get(i);
-			if (curr.getPathwayObject().getZOrder() - waterLevel < spacing) {
-				curr.getPathwayObject().setZOrder(waterLevel + spacing);
+			if (curr.getZOrder() - waterLevel < ZORDER_SPACING) {
+				setZOrder(curr, waterLevel + ZORDER_SPACING);
 			}
-			waterLevel = curr.getPathwayObject().getZOrder();
+			waterLevel = curr.getZOrder();
 		}
 	}
 
@@ -2151,25 +2807,21 @@ public class VPathwayModel implements PathwayModelListener {
 	 * @param gs the set of graphics to move.
 	 */
 	public void moveGraphicsDown(List<VDrawable> gs) {
-		// TODO: Doesn't really work very well with multiple selections
-		for (VDrawable g : gs) {
-			// make sure there is enough space between g and the previous
-			autoRenumberZOrder();
-
-			int order = g.getPathwayObject().getZOrder();
-			VDrawable nextGraphics = null;
-			int nextZ = order;
-			for (VDrawable i : getOverlappingGraphics(g)) {
-				int iorder = i.getPathwayObject().getZOrder();
-				if (nextGraphics == null && iorder < nextZ) {
-					nextZ = iorder;
-					nextGraphics = i;
-				} else if (nextGraphics != null && iorder > nextZ && iorder < order) {
-					nextZ = iorder;
-					nextGraphics = i;
+		beginBatch();
+		try {
+			// TODO: Doesn't really work very well with multiple selections
+			addScheduled();
+			for (VDrawable g : gs) {
+				int z = getNextZOrder(g, false) - 1;
+				if (zOrderIndex.isUsedByOther(z, g)) {
+					// no space between g and the previous, make some
+					renumberZOrder();
+					z = getNextZOrder(g, false) - 1;
 				}
+				setZOrder(g, z);
 			}
-			g.getPathwayObject().setZOrder(nextZ - 1);
+		} finally {
+			endBatch();
 		}
 	}
 
@@ -2184,7 +2836,7 @@ public class VPathwayModel implements PathwayModelListener {
 		List<VDrawable> result = new ArrayList<VDrawable>();
 		Rectangle2D r1 = ((VElement) g).getVBounds();
 
-		for (VElement ve : drawingObjects) {
+		for (VElement ve : getCandidatesIn(r1)) {
 			if (ve instanceof VDrawable && ve != g) {
 				VDrawable i = (VDrawable) ve;
 				if (r1.intersects(ve.getVBounds())) {
@@ -2195,6 +2847,125 @@ public class VPathwayModel implements PathwayModelListener {
 		return result;
 	}
 
+	// ================================================================================
+	// Drawing Order Methods
+	// ================================================================================
+	/**
+	 * Inserts an element into the drawing list at the position given by its
+	 * z-order, so the list never needs to be sorted as a whole.
+	 */
+	private void insertInDrawOrder(VElement o) {
+		o.drawZOrder = o.getZOrder();
+		int i = Collections.binarySearch(drawingObjects, o, VElement.DRAW_LIST_ORDER);
+		if (i < 0) {
+			drawingObjects.add(-i - 1, o);
+		}
+		o.inDrawList = true;
+	}
+
+	/**
+	 * Moves the elements whose z-order has changed since they were placed in the
+	 * drawing list to their new position. Called before drawing, rather than
+	 * from {@link #boundsChanged(VElement)}, so that the list is never modified
+	 * while it is being iterated.
+	 */
+	private void updateDrawOrder() {
+		if (drawOrderPending.isEmpty())
+			return;
+		for (VElement o : drawOrderPending) {
+			// find it with the z-order it was stored under
+			int i = Collections.binarySearch(drawingObjects, o, VElement.DRAW_LIST_ORDER);
+			if (i >= 0) {
+				drawingObjects.remove(i);
+				insertInDrawOrder(o);
+			}
+		}
+		drawOrderPending.clear();
+	}
+
+	// ================================================================================
+	// Spatial Index Methods
+	// ================================================================================
+	/**
+	 * Only model backed elements are kept in the spatial index, their bounds are
+	 * reset through {@link VElement#resetShapeCache()} whenever the model changes.
+	 * The index is in model coordinates, so that it stays valid when zooming,
+	 * which is why only elements whose geometry scales with the zoom factor are
+	 * indexed. Groups (whose bounds follow their members), the info box and
+	 * helpers such as handles and the selection box are few, and are checked one
+	 * by one instead.
+	 */
+	private boolean isIndexed(VElement o) {
+		return o instanceof VPathwayObject && o.isZoomLinear() && !(o instanceof VGroup);
+	}
+
+	/**
+	 * Called by {@link VElement} when its cached bounds are reset, so that its
+	 * entry in the spatial index is updated before the next lookup.
+	 */
+	void boundsChanged(VElement o) {
+		if (spatialIndex.contains(o)) {
+			indexPending.add(o);
+		}
+		// a model change that affects the bounds may also change the z-order.
+		// drawZOrder is only refreshed when the draw list is sorted, so the index
+		// compares against the z-order it stored itself
+		if (o instanceof VGroupable) {
+			zOrderIndex.update((VGroupable) o);
+		}
+		if (o.inDrawList && o.drawZOrder != o.getZOrder()) {
+			drawOrderPending.add(o);
+		}
+	}
+
+	/**
+	 * Brings the spatial index up to date with the current bounds of all
+	 * elements.
+	 */
+	private void updateSpatialIndex() {
+		if (!indexPending.isEmpty()) {
+			List<VElement> pending = new ArrayList<VElement>(indexPending);
+			indexPending.clear();
+			for (VElement o : pending) {
+				spatialIndex.insert(o, o.getMBounds());
+			}
+		}
+	}
+
+	/**
+	 * Returns the elements whose bounds may contain the given point, ordered by
+	 * z-order. This is a superset of the elements that actually contain the point,
+	 * use {@link VElement#vContains(Point2D)} for the precise test.
+	 *
+	 * @param p2d the point in view coordinates.
+	 * @return the candidate elements.
+	 */
+	List<VElement> getCandidatesAt(Point2D p2d) {
+		updateSpatialIndex();
+		List<VElement> result = new ArrayList<VElement>();
+		spatialIndex.search(new Point2D.Double(mFromV(p2d.getX()), mFromV(p2d.getY())), result);
+		result.addAll(unindexedObjects);
+		Collections.sort(result);
+		return result;
+	}
+
+	/**
+	 * Returns the elements whose bounds may intersect the given rectangle, ordered
+	 * by z-order.
+	 *
+	 * @param r the rectangle in view coordinates.
+	 * @return the candidate elements.
+	 */
+	List<VElement> getCandidatesIn(Rectangle2D r) {
+		updateSpatialIndex();
+		List<VElement> result = new ArrayList<VElement>();
+		spatialIndex.search(new Rectangle2D.Double(mFromV(r.getX()), mFromV(r.getY()), mFromV(r.getWidth()),
+				mFromV(r.getHeight())), result);
+		result.addAll(unindexedObjects);
+		Collections.sort(result);
+		return result;
+	}
+
 	// ================================================================================
 	// Copy and Paste Methods
 	// ================================================================================
@@ -2229,54 +3000,59 @@ public class VPathwayModel implements PathwayModelListener {
 	 * @param yShift
 	 */
 	public void paste(List<PathwayElement> elements, double xShift, double yShift) {
-		undoManager.newAction("Paste");
-		clearSelection();
+		beginBatch();
+		try {
+			undoManager.newAction("Paste");
+			clearSelection();
 
-		List<Annotation> annotations = new ArrayList<Annotation>();
-		List<Citation> citations = new ArrayList<Citation>();
-		List<Evidence> evidences = new ArrayList<Evidence>();
+			List<Annotation> annotations = new ArrayList<Annotation>();
+			List<Citation> citations = new ArrayList<Citation>();
+			List<Evidence> evidences = new ArrayList<Evidence>();
 
-		// Copy pathway objects of given list
-		for (PathwayElement o : elements) {
-			// if pathway, skip because it should be unique
-			if (o.getClass() == Pathway.class) {
-				continue;
-			}
-			lastAdded = null;
+			// Copy pathway objects of given list
+			for (PathwayElement o : elements) {
+				// if pathway, skip because it should be unique
+				if (o.getClass() == Pathway.class) {
+					continue;
+				}
+				lastAdded = null;
 
-			// shift location of pathway element for pasting? TODO
-			if (o instanceof LineElement) {
-				for (LinePoint mp : ((LineElement) o).getLinePoints()) {
-					mp.setX(mp.getX() + xShift);
-					mp.setY(mp.getY() + yShift);
+				// shift location of pathway element for pasting? TODO
+				if (o instanceof LineElement) {
+					for (LinePoint mp : ((LineElement) o).getLinePoints()) {
+						mp.setX(mp.getX() + xShift);
+						mp.setY(mp.getY() + yShift);
+					}
+				} else if (o instanceof ShapedElement) {
+					((ShapedElement) o).setLeft(((ShapedElement) o).getLeft() + xShift);
+					((ShapedElement) o).setTop(((ShapedElement) o).getTop() + yShift);
 				}
-			} else if (o instanceof ShapedElement) {
-				((ShapedElement) o).setLeft(((ShapedElement) o).getLeft() + xShift);
-				((ShapedElement) o).setTop(((ShapedElement) o).getTop() + yShift);
-			}
 
-			// make another copy to preserve clipboard contents for next paste
-			CopyElement c = o.copy();
-			PathwayElement p = c.getNewElement();
+				// make another copy to preserve clipboard contents for next paste
+				CopyElement c = o.copy();
+				PathwayElement p = c.getNewElement();
 
-			data.add(p); // causes lastAdded to be set
-			c.loadReferences(); // load annotations/citations/evidences/ref
-			lastAdded.select();
-			if (!(lastAdded instanceof VGroup)) { // avoids "double selecting" grouped objects
-				selection.addToSelection(lastAdded);
+				data.add(p); // causes lastAdded to be set
+				c.loadReferences(); // load annotations/citations/evidences/ref
+				lastAdded.select();
+				if (!(lastAdded instanceof VGroup)) { // avoids "double selecting" grouped objects
+					selection.addToSelection(lastAdded);
+				}
+				// TODO handle LinePoints? Links?
+				// TODO handle Groups???
 			}
-			// TODO handle LinePoints? Links?
-			// TODO handle Groups???
-		}
 
-		// Refresh connector shapes
-		for (PathwayObject o : elements) {
-			if (o instanceof LineElement) {
-				((LineElement) o).getConnectorShape().recalculateShape(((LineElement) o));
+			// Refresh connector shapes
+			for (PathwayObject o : elements) {
+				if (o instanceof LineElement) {
+					((LineElement) o).getConnectorShape().recalculateShape(((LineElement) o));
+				}
 			}
+			moveGraphicsTop(getSelectedGraphics());
+			redraw();
+		} finally {
+			endBatch();
 		}
-		moveGraphicsTop(getSelectedGraphics());
-		redraw();
 	}
 
 	/**
@@ -2314,6 +3090,70 @@ public class VPathwayModel implements PathwayModelListener {
 		Logger.log.trace(listeners.remove(l) + ": " + l);
 	}
 
+	private List<RenderHook> renderHooks = new ArrayList<RenderHook>();
+
+	/**
+	 * Registers a hook that paints on top of elements after they are drawn.
+	 * Causes a complete redraw.
+	 */
+	public void addRenderHook(RenderHook hook) {
+		if (!renderHooks.contains(hook)) {
+			renderHooks.add(hook);
+			redraw();
+		}
+	}
+
+	public void removeRenderHook(RenderHook hook) {
+		if (renderHooks.remove(hook)) {
+			redraw();
+		}
+	}
+
+	/**
+	 * Registers a listener for {@link VPathwayEventType#ELEMENT_DRAWN} events,
+	 * which are fired after each element is drawn. The listener is called as a
+	 * {@link RenderHook} for all elements, so drawing only creates these events
+	 * while such a listener is registered. Causes a complete redraw.
+	 */
+	public void addElementDrawnListener(VPathwayModelListener l) {
+		addRenderHook(new ElementDrawnHook(l));
+	}
+
+	public void removeElementDrawnListener(VPathwayModelListener l) {
+		removeRenderHook(new ElementDrawnHook(l));
+	}
+
+	/**
+	 * Passes drawn elements on to a listener as ELEMENT_DRAWN events. Equal for
+	 * the same listener, so that it can be removed again.
+	 */
+	private class ElementDrawnHook implements RenderHook {
+		private final VPathwayModelListener listener;
+
+		ElementDrawnHook(VPathwayModelListener listener) {
+			this.listener = listener;
+		}
+
+		public Class<? extends VElement> getElementType() {
+			return VElement.class;
+		}
+
+		public void elementDrawn(VElement e, Graphics2D g2d) {
+			listener.vPathwayModelEvent(
+					new VPathwayModelEvent(VPathwayModel.this, e, g2d, VPathwayEventType.ELEMENT_DRAWN));
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			return o instanceof ElementDrawnHook && ((ElementDrawnHook) o).listener == listener;
+		}
+
+		@Override
+		public int hashCode() {
+			return System.identityHashCode(listener);
+		}
+	}
+
 	private List<VElementMouseListener> elementListeners = new ArrayList<VElementMouseListener>();
 
 	public void addVElementMouseListener(VElementMouseListener l) {
@@ -2482,6 +3322,10 @@ public class VPathwayModel implements PathwayModelListener {
 		undoManager.undo();
 	}
 
+	public void redo() {
+		undoManager.redo();
+	}
+
 	// ================================================================================
 	// Clean-Up and Dispose Methods
 	// ================================================================================
@@ -2502,8 +3346,10 @@ public class VPathwayModel implements PathwayModelListener {
 		listeners.clear();
 		selection.getListeners().clear();
 		viewActions = null;
-		if (parent != null)
+		if (parent != null) {
+			repaintScheduler.dispose();
 			parent.dispose();
+		}
 		parent = null; // disconnect from VPathwaySwing
 		undoManager.dispose();
 		undoManager = null;
@@ -2512,12 +3358,38 @@ public class VPathwayModel implements PathwayModelListener {
 	}
 
 	private void cleanUp() {
-		for (Iterator<VElement> i = drawingObjects.iterator(); i.hasNext();) {
-			VElement elt = i.next();
-			if (elt.toBeRemoved()) {
-				i.remove();
+		if (toRemove.isEmpty())
+			return;
+		boolean bulk = isBulkChange(toRemove.size());
+		if (bulk) {
+			for (Iterator<VElement> i = drawingObjects.iterator(); i.hasNext();) {
+				if (i.next().toBeRemoved()) {
+					i.remove();
+				}
+			}
+		}
+		for (VElement elt : toRemove) {
+			if (elt.inDrawList && !bulk) {
+				// the list is sorted on the z-order the element was stored under
+				int i = Collections.binarySearch(drawingObjects, elt, VElement.DRAW_LIST_ORDER);
+				if (i >= 0) {
+					drawingObjects.remove(i);
+				}
+			}
+			elt.inDrawList = false;
+			drawOrderPending.remove(elt);
+			if (elt.inOverlay) {
+				elt.inOverlay = false;
+				overlayObjects.remove(elt);
+			}
+			if (elt instanceof VPathwayObject) {
+				unregisterView((VPathwayObject) elt);
 			}
+			spatialIndex.remove(elt);
+			indexPending.remove(elt);
+			unindexedObjects.remove(elt);
 		}
+		toRemove.clear();
 	}
 
 	// ================================================================================
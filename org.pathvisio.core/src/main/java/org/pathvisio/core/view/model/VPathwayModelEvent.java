@@ -36,6 +36,10 @@ public class VPathwayModelEvent extends EventObject {
 		EDIT_MODE_OFF,
 		MODEL_LOADED,
 		ELEMENT_DOUBLE_CLICKED,
+		/**
+		 * Fired after an element is drawn, only to listeners registered with
+		 * {@link VPathwayModel#addElementDrawnListener(VPathwayModelListener)}.
+		 */
 		ELEMENT_DRAWN,
 		ELEMENT_CLICKED_UP,
 		ELEMENT_CLICKED_DOWN,
@@ -37,6 +37,15 @@ public abstract interface VPathwayWrapper {
 
 	public void redraw(Rectangle r);
 
+	/**
+	 * Redraw a part of the overlay layer only, the static layer under it did not
+	 * change. See {@link VPathwayModel#drawOverlay}. Wrappers that don't cache
+	 * the static layer can leave this to {@link #redraw(Rectangle)}.
+	 */
+	public default void redrawOverlay(Rectangle r) {
+		redraw(r);
+	}
+
 	public Rectangle getViewRect();
 
 	/** signal to indicate that the pathway changed size */
@@ -24,12 +24,16 @@ import java.awt.Graphics2D;
 import java.awt.Rectangle;
 import java.awt.Shape;
 import java.awt.Stroke;
+import java.awt.font.FontRenderContext;
 import java.awt.font.TextAttribute;
+import java.awt.font.TextLayout;
 import java.awt.geom.AffineTransform;
 import java.awt.geom.Area;
 import java.awt.geom.Point2D;
 import java.awt.geom.Rectangle2D;
 import java.text.AttributedString;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.pathvisio.model.type.LineStyleType;
 import org.pathvisio.model.Label;
@@ -57,6 +61,7 @@ import org.pathvisio.model.shape.ShapeRegistry;
 public abstract class VShapedElement extends VPathwayElement implements VLinkableTo, VGroupable, Adjustable {
 
 	private static final double M_ROTATION_HANDLE_POSITION = 20.0;
+	private static final float[] DASH_PATTERN = new float[] { 4, 4 };
 
 	// Side handles
 	Handle handleN;
@@ -413,6 +418,16 @@ public abstract class VShapedElement extends VPathwayElement implements VLinkabl
 		return a;
 	}
 
+	/**
+	 * The outline is the model shape with the border, which is stroked with the
+	 * border width in model units scaled by the zoom factor, just like it is
+	 * drawn. Both scale with the zoom factor.
+	 */
+	@Override
+	protected boolean isZoomLinear() {
+		return true;
+	}
+
 	protected Shape getVShape(boolean rotate) {
 		return getShape(rotate, false); // Get the shape without border
 	}
@@ -440,7 +455,7 @@ public abstract class VShapedElement extends VPathwayElement implements VLinkabl
 	 * Returns the shape that should be drawn
 	 * 
 	 * @parameter rotate whether to take into account rotation or not
-	 * @parameter sw the width of the stroke to include
+	 * @parameter sw the width of the stroke to include, in model units
 	 * @return
 	 */
 	protected java.awt.Shape getShape(boolean rotate, float sw) {
@@ -476,13 +491,14 @@ public abstract class VShapedElement extends VPathwayElement implements VLinkabl
 					// correction factor for composite stroke
 					sw = (float) (gdata.getBorderWidth() * 4);
 				}
-				Stroke stroke = new BasicStroke(sw);
+				Stroke stroke = RenderCache.getStroke((float) vFromM(sw));
 				s = stroke.createStrokedShape(s);
 			}
 		return s;
 	}
 
 	public void gmmlObjectModified(PathwayObjectEvent e) {
+		textLabelLayout = null; // label, font or alignment may have changed
 		markDirty(); // mark everything dirty
 		checkCitation();
 		if (handles.length > 0)
@@ -526,64 +542,166 @@ public abstract class VShapedElement extends VPathwayElement implements VLinkabl
 		drawShape(g2d);
 
 		// return to normal stroke
-		g2d.setStroke(new BasicStroke());
+		g2d.setStroke(DEFAULT_STROKE);
 
-		g2d.setFont(getVFont());
-		drawTextLabel(g2d);
+		if (canvas.isSimplifiedText()) {
+			drawTextPlaceholder(g2d);
+		} else {
+			g2d.setFont(getVFont());
+			drawTextLabel(g2d);
+		}
 
 		drawHighlight(g2d);
 	}
 
+	/**
+	 * The text label laid out in lines, with the position of each line. Kept
+	 * between paints, and laid out again when the label, the font or the area of
+	 * the element changes.
+	 */
+	private static class TextLabelLayout {
+		String label;
+		Font font;
+		Rectangle area;
+		FontRenderContext frc;
+		List<TextLayout> lines = new ArrayList<TextLayout>();
+		List<Point2D.Float> positions = new ArrayList<Point2D.Float>();
+	}
+
+	private TextLabelLayout textLabelLayout = null;
+
+	@Override
+	void zoomChanged() {
+		super.zoomChanged();
+		textLabelLayout = null;
+	}
+
+	/**
+	 * Draws the text label with the font of the graphics. The layout of the text
+	 * is cached, so that repaints don't need to measure the text again.
+	 * 
+	 * @param g
+	 */
 	protected void drawTextLabel(Graphics2D g) {
+		String label = getPathwayObject().getTextLabel();
+		if (label == null || "".equals(label))
+			return;
+		Rectangle area = getVShape(true).getBounds();
+		TextLabelLayout tl = textLabelLayout;
+		if (tl == null || !tl.label.equals(label) || !tl.area.equals(area) || !tl.font.equals(g.getFont())
+				|| !tl.frc.equals(g.getFontRenderContext())) {
+			tl = layoutTextLabel(g, label, area);
+			textLabelLayout = tl;
+		}
+		for (int i = 0; i < tl.lines.size(); i++) {
+			Point2D.Float p = tl.positions.get(i);
+			tl.lines.get(i).draw(g, p.x, p.y);
+		}
+	}
+
+	private TextLabelLayout layoutTextLabel(Graphics2D g, String label, Rectangle area) {
+		TextLabelLayout tl = new TextLabelLayout();
+		tl.label = label;
+		tl.area = area;
+		tl.font = g.getFont();
+		tl.frc = g.getFontRenderContext();
+
 		ShapedElement gdata = getPathwayObject();
 		int margin = (int) vFromM(5);
-		Rectangle area = getVShape(true).getBounds();
-		String label = gdata.getTextLabel();
-		if (label != null && !"".equals(label)) {
-			// Split by newline, to enable multi-line labels
-			String[] lines = label.split("\n");
-
-			FontMetrics fm = g.getFontMetrics();
-			int lh = fm.getHeight();
-			int yoffset = area.y + fm.getAscent();
-			switch (gdata.getVAlign()) {
-			case MIDDLE:
-				yoffset += (area.height - (lines.length * lh)) / 2;
+		// Split by newline, to enable multi-line labels
+		String[] lines = label.split("\n");
+
+		FontMetrics fm = g.getFontMetrics();
+		int lh = fm.getHeight();
+		int yoffset = area.y + fm.getAscent();
+		switch (gdata.getVAlign()) {
+		case MIDDLE:
+			yoffset += (area.height - (lines.length * lh)) / 2;
+			break;
+		case TOP:
+			yoffset += margin;
+			break;
+		case BOTTOM:
+			yoffset += area.height - margin - (lines.length * lh);
+		}
+
+		for (int i = 0; i < lines.length; i++) {
+			if (lines[i].equals(""))
+				continue; // Can't have attributed string with 0 length
+			AttributedString ats = getVAttributedString(lines[i]);
+			if (gdata.getClass() == Label.class) {
+				if (!((Label) gdata).getHref().equals("")) {
+					ats.addAttribute(TextAttribute.UNDERLINE, TextAttribute.UNDERLINE_ON);
+				}
+			}
+			Rectangle2D tb = fm.getStringBounds(ats.getIterator(), 0, lines[i].length(), g);
+
+			int xoffset = area.x;
+			switch (gdata.getHAlign()) {
+			case CENTER:
+				xoffset += (int) (area.width / 2) - (int) (tb.getWidth() / 2);
+				break;
+			case LEFT:
+				xoffset += margin;
 				break;
-			case TOP:
-				yoffset += margin;
+			case RIGHT:
+				xoffset += area.width - margin - tb.getWidth();
 				break;
-			case BOTTOM:
-				yoffset += area.height - margin - (lines.length * lh);
 			}
+			tl.lines.add(new TextLayout(ats.getIterator(), tl.frc));
+			tl.positions.add(new Point2D.Float(xoffset, yoffset + (int) (i * tb.getHeight())));
+		}
+		return tl;
+	}
 
-			for (int i = 0; i < lines.length; i++) {
-				if (lines[i].equals(""))
-					continue; // Can't have attributed string with 0 length
-				AttributedString ats = getVAttributedString(lines[i]);
-				if (gdata.getClass() == Label.class) {
-					if (!((Label) gdata).getHref().equals("")) {
-						ats.addAttribute(TextAttribute.UNDERLINE, TextAttribute.UNDERLINE_ON);
-					}
-				}
-				Rectangle2D tb = fm.getStringBounds(ats.getIterator(), 0, lines[i].length(), g);
-
-				int xoffset = area.x;
-				switch (gdata.getHAlign()) {
-				case CENTER:
-					xoffset += (int) (area.width / 2) - (int) (tb.getWidth() / 2);
-					break;
-				case LEFT:
-					xoffset += margin;
-					break;
-				case RIGHT:
-					xoffset += area.width - margin - tb.getWidth();
-					break;
-				}
-				g.drawString(ats.getIterator(), xoffset, yoffset + (int) (i * tb.getHeight()));
+	/**
+	 * Draws a box for each line of the text label, in place of text that would be
+	 * too small to read. Avoids the cost of font metrics and text layout when
+	 * zoomed out.
+	 *
+	 * @param g
+	 */
+	protected void drawTextPlaceholder(Graphics2D g) {
+		ShapedElement gdata = getPathwayObject();
+		String label = gdata.getTextLabel();
+		if (label == null || "".equals(label))
+			return;
+		String[] lines = label.split("\n");
+		Rectangle2D area = getVShape(true).getBounds2D();
+		double margin = vFromM(5);
+		double lh = vFromM(gdata.getFontSize()) * 1.2;
+		double charWidth = vFromM(gdata.getFontSize()) * 0.5;
+
+		double y = area.getY();
+		switch (gdata.getVAlign()) {
+		case MIDDLE:
+			y += (area.getHeight() - lines.length * lh) / 2;
+			break;
+		case TOP:
+			y += margin;
+			break;
+		case BOTTOM:
+			y += area.getHeight() - margin - lines.length * lh;
+		}
+		Color c = g.getColor();
+		g.setColor(RenderCache.getColor(c, 128));
+		for (int i = 0; i < lines.length; i++) {
+			double w = Math.min(lines[i].length() * charWidth, area.getWidth());
+			double x = area.getX();
+			switch (gdata.getHAlign()) {
+			case CENTER:
+				x += (area.getWidth() - w) / 2;
+				break;
+			case LEFT:
+				x += margin;
+				break;
+			case RIGHT:
+				x += area.getWidth() - margin - w;
+				break;
 			}
-
+			g.fill(new Rectangle2D.Double(x, y + i * lh + lh * 0.2, w, lh * 0.6));
 		}
+		g.setColor(c);
 	}
 
 	/**
@@ -609,7 +727,7 @@ public abstract class VShapedElement extends VPathwayElement implements VLinkabl
 	protected Font getVFont() {
 		String name = getPathwayObject().getFontName();
 		int style = getVFontStyle();
-		return new Font(name, style, 12).deriveFont((float) vFromM(getPathwayObject().getFontSize()));
+		return RenderCache.getFont(name, style, (float) vFromM(getPathwayObject().getFontSize()));
 	}
 
 	/**
@@ -656,16 +774,16 @@ public abstract class VShapedElement extends VPathwayElement implements VLinkabl
 	protected void drawHighlight(Graphics2D g) {
 		if (isHighlighted()) {
 			Color hc = getHighlightColor();
-			g.setColor(new Color(hc.getRed(), hc.getGreen(), hc.getBlue(), 128));
+			g.setColor(RenderCache.getColor(hc, 128));
 
 			if (hasOutline()) {
 				// highlight the outline
 				java.awt.Shape shape = getShape(true, false);
-				g.setStroke(new BasicStroke(HIGHLIGHT_STROKE_WIDTH));
+				g.setStroke(RenderCache.getStroke(HIGHLIGHT_STROKE_WIDTH));
 				g.draw(shape);
 			} else {
 				// outline invisible, fill the entire area
-				g.setStroke(new BasicStroke());
+				g.setStroke(DEFAULT_STROKE);
 				Rectangle2D r = new Rectangle2D.Double(getVLeft(), getVTop(), getVWidth(), getVHeight());
 				g.fill(r);
 			}
@@ -807,13 +925,12 @@ public abstract class VShapedElement extends VPathwayElement implements VLinkabl
 	protected void setLineStyle(Graphics2D g) {
 		LineStyleType ls = getPathwayObject().getBorderStyle();
 		float lt = (float) vFromM(getPathwayObject().getBorderWidth());
-		if (ls == LineStyleType.SOLID) {
-			g.setStroke(new BasicStroke(lt));
+		if (ls == LineStyleType.SOLID || canvas.isSimplifiedDrawing()) {
+			g.setStroke(RenderCache.getStroke(lt));
 		} else if (ls == LineStyleType.DASHED) {
-			g.setStroke(
-					new BasicStroke(lt, BasicStroke.CAP_SQUARE, BasicStroke.JOIN_MITER, 10, new float[] { 4, 4 }, 0));
+			g.setStroke(RenderCache.getStroke(lt, BasicStroke.CAP_SQUARE, BasicStroke.JOIN_MITER, 10, DASH_PATTERN));
 		} else if (ls == LineStyleType.DOUBLE) {
-			g.setStroke(new CompositeStroke(new BasicStroke(lt * 2), new BasicStroke(lt)));
+			g.setStroke(new CompositeStroke(RenderCache.getStroke(lt * 2), RenderCache.getStroke(lt)));
 		}
 	}
 
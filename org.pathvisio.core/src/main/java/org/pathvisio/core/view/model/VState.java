@@ -43,12 +43,19 @@ public class VState extends VShapedElement {
 	}
 
 	public void doDraw(Graphics2D g) {
+		// states are too small to make out at this level of detail
+		if (canvas.isSimplifiedDrawing())
+			return;
 		g.setColor(getLineColor());
 		setLineStyle(g);
 		drawShape(g);
 
-		g.setFont(getVFont());
-		drawTextLabel(g);
+		if (canvas.isSimplifiedText()) {
+			drawTextPlaceholder(g);
+		} else {
+			g.setFont(getVFont());
+			drawTextLabel(g);
+		}
 
 		drawHighlight(g);
 	}
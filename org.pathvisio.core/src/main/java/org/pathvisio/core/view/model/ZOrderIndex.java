@@ -0,0 +1,118 @@
+/*******************************************************************************
+ * PathVisio, a tool for data visualization and analysis using biological pathways
+ * Copyright 2006-2021 BiGCaT Bioinformatics, WikiPathways
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package org.pathvisio.core.view.model;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Keeps the z-orders of the elements of a {@link VPathwayModel} sorted, so that
+ * the highest and lowest z-order, and whether a z-order is in use, can be
+ * found without looking at every element.
+ * <p>
+ * Each element is stored with the z-order it had when it was last updated, so
+ * {@link #update(VDrawable)} must be called when its z-order changes.
+ *
+ * @author unknown
+ */
+final class ZOrderIndex {
+
+	// number of elements for each z-order in use
+	private final TreeMap<Integer, Integer> counts = new TreeMap<Integer, Integer>();
+	private final Map<VDrawable, Integer> zOrders = new HashMap<VDrawable, Integer>();
+
+	void add(VDrawable g) {
+		if (!zOrders.containsKey(g)) {
+			int z = g.getZOrder();
+			zOrders.put(g, z);
+			increment(z);
+		}
+	}
+
+	void remove(VDrawable g) {
+		Integer z = zOrders.remove(g);
+		if (z != null) {
+			decrement(z);
+		}
+	}
+
+	/**
+	 * Moves the element to its current z-order, if it is in the index.
+	 */
+	void update(VDrawable g) {
+		Integer old = zOrders.get(g);
+		if (old == null)
+			return;
+		int z = g.getZOrder();
+		if (z != old) {
+			decrement(old);
+			zOrders.put(g, z);
+			increment(z);
+		}
+	}
+
+	void clear() {
+		counts.clear();
+		zOrders.clear();
+	}
+
+	int size() {
+		return zOrders.size();
+	}
+
+	/**
+	 * Returns the highest z-order, or 0 if that is higher.
+	 */
+	int getMax() {
+		return counts.isEmpty() ? 0 : Math.max(0, counts.lastKey());
+	}
+
+	/**
+	 * Returns the lowest z-order, or 0 if that is lower.
+	 */
+	int getMin() {
+		return counts.isEmpty() ? 0 : Math.min(0, counts.firstKey());
+	}
+
+	/**
+	 * Returns true if an element other than g has the given z-order.
+	 */
+	boolean isUsedByOther(int z, VDrawable g) {
+		Integer count = counts.get(z);
+		if (count == null)
+			return false;
+		Integer own = zOrders.get(g);
+		return count > 1 || own == null || own != z;
+	}
+
+	private void increment(int z) {
+		Integer count = counts.get(z);
+		counts.put(z, count == null ? 1 : count + 1);
+	}
+
+	private void decrement(int z) {
+		Integer count = counts.get(z);
+		if (count == null)
+			return;
+		if (count > 1) {
+			counts.put(z, count - 1);
+		} else {
+			counts.remove(z);
+		}
+	}
+}
@@ -0,0 +1,80 @@
+/*******************************************************************************
+ * PathVisio, a tool for data visualization and analysis using biological pathways
+ * Copyright 2006-2021 BiGCaT Bioinformatics, WikiPathways
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package org.pathvisio.core.view.model;
+
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.swing.Action;
+import javax.swing.KeyStroke;
+
+import org.pathvisio.model.PathwayElement;
+import org.pathvisio.model.PathwayModel;
+
+/**
+ * A wrapper without a toolkit for tests. It creates the drawing and records
+ * the areas that are repainted, except for complete redraws.
+ */
+class DummyWrapper implements VPathwayWrapper {
+	List<Rectangle> redrawn = new ArrayList<Rectangle>();
+	List<Rectangle> overlay = new ArrayList<Rectangle>();
+
+	public void redraw() {
+	}
+
+	public void redraw(Rectangle r) {
+		redrawn.add(r);
+	}
+
+	public void redrawOverlay(Rectangle r) {
+		overlay.add(r);
+	}
+
+	public Rectangle getViewRect() {
+		return new Rectangle(0, 0, 1000, 1000);
+	}
+
+	public void resized() {
+	}
+
+	public VPathwayModel createVPathway() {
+		return new VPathwayModel(this);
+	}
+
+	public void registerKeyboardAction(KeyStroke k, Action a) {
+	}
+
+	public void copyToClipboard(PathwayModel source, List<PathwayElement> copyElements) {
+	}
+
+	public void pasteFromClipboard() {
+	}
+
+	public void positionPasteFromClipboard(Point cursorPosition) {
+	}
+
+	public void scrollTo(Rectangle r) {
+	}
+
+	public void scrollCenterTo(int x, int y) {
+	}
+
+	public void dispose() {
+	}
+}
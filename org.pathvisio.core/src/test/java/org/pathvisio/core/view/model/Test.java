@@ -16,8 +16,13 @@
  ******************************************************************************/
 package org.pathvisio.core.view.model;
 
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 
 import junit.framework.TestCase;
@@ -26,16 +31,19 @@ import org.pathvisio.model.PathwayModel;
 import org.pathvisio.model.PathwayObject;
 import org.pathvisio.model.Shape;
 import org.pathvisio.model.type.DataNodeType;
+import org.pathvisio.model.type.HAlignType;
 import org.pathvisio.util.XrefUtils;
 import org.pathvisio.model.DataNode;
 import org.pathvisio.model.Interaction;
 import org.pathvisio.model.Label;
 import org.pathvisio.model.PathwayElement;
+import org.pathvisio.core.preferences.GlobalPreference;
 import org.pathvisio.core.preferences.PreferenceManager;
 import org.pathvisio.core.view.model.VDataNode;
 import org.pathvisio.core.view.model.VDrawable;
 import org.pathvisio.core.view.model.VElement;
 import org.pathvisio.core.view.model.VPathwayModel;
+import org.pathvisio.core.view.model.VPathwayModelEvent.VPathwayEventType;
 import org.pathvisio.core.view.model.VPathwayObject;
 
 public class Test extends TestCase {
@@ -219,6 +227,159 @@ public class Test extends TestCase {
 		assertTrue(pwy.getPathwayObjects().contains(eltDn));
 	}
 
+	/**
+	 * Render hooks are called for the element type they declare, element drawn
+	 * listeners for every element, and only while they are registered.
+	 */
+	public void testRenderHooks() {
+		final List<VElement> hooked = new ArrayList<VElement>();
+		final List<VElement> drawn = new ArrayList<VElement>();
+		RenderHook hook = new RenderHook() {
+			public Class<? extends VElement> getElementType() {
+				return VDataNode.class;
+			}
+
+			public void elementDrawn(VElement e, Graphics2D g2d) {
+				hooked.add(e);
+			}
+		};
+		VPathwayModelListener listener = new VPathwayModelListener() {
+			public void vPathwayModelEvent(VPathwayModelEvent e) {
+				assertEquals(VPathwayEventType.ELEMENT_DRAWN, e.getType());
+				assertNotNull(e.getGraphics2D());
+				drawn.add(e.getAffectedElement());
+			}
+		};
+		vPwy.addRenderHook(hook);
+		vPwy.addElementDrawnListener(listener);
+		vPwy.addElementDrawnListener(listener); // adding twice has no effect
+		draw();
+		assertEquals(Collections.singletonList(vDn), hooked);
+		assertTrue(drawn.containsAll(Arrays.asList(vDn, vSh, vLi, vLa)));
+		assertEquals(new HashSet<VElement>(drawn).size(), drawn.size());
+
+		hooked.clear();
+		drawn.clear();
+		vPwy.removeRenderHook(hook);
+		vPwy.removeElementDrawnListener(listener);
+		draw();
+		assertTrue(hooked.isEmpty());
+		assertTrue(drawn.isEmpty());
+	}
+
+	/** draws the whole pathway on a small image */
+	private void draw() {
+		draw(1);
+	}
+
+	/** draws the whole pathway on a small image, with the graphics scaled */
+	private void draw(double scale) {
+		BufferedImage image = new BufferedImage(100, 100, BufferedImage.TYPE_INT_RGB);
+		Graphics2D g2d = image.createGraphics();
+		g2d.scale(scale, scale);
+		g2d.setClip(new Rectangle(0, 0, 10000, 10000));
+		vPwy.draw(g2d);
+		g2d.dispose();
+	}
+
+	/** draws the area around the given element on an image */
+	private BufferedImage drawAround(VElement e) {
+		Rectangle r = e.getVBounds().getBounds();
+		BufferedImage image = new BufferedImage(r.width + 40, r.height + 40, BufferedImage.TYPE_INT_RGB);
+		Graphics2D g2d = image.createGraphics();
+		g2d.translate(20 - r.x, 20 - r.y);
+		g2d.setClip(new Rectangle(r.x - 20, r.y - 20, r.width + 40, r.height + 40));
+		vPwy.draw(g2d);
+		g2d.dispose();
+		return image;
+	}
+
+	private static boolean samePixels(BufferedImage a, BufferedImage b) {
+		if (a.getWidth() != b.getWidth() || a.getHeight() != b.getHeight())
+			return false;
+		for (int y = 0; y < a.getHeight(); y++) {
+			for (int x = 0; x < a.getWidth(); x++) {
+				if (a.getRGB(x, y) != b.getRGB(x, y))
+					return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * The cached layout of a text label is used for repaints, and laid out again
+	 * when the label, its font or alignment, or the zoom factor change.
+	 */
+	public void testTextLabelLayout() {
+		vPwy.setPctZoom(100);
+		eltLa.setWidth(1000);
+		eltLa.setHeight(400);
+		BufferedImage original = drawAround(vLa);
+		assertTrue(samePixels(original, drawAround(vLa)));
+
+		eltLa.setTextLabel("Other");
+		assertFalse(samePixels(original, drawAround(vLa)));
+		eltLa.setTextLabel("Test");
+		assertTrue(samePixels(original, drawAround(vLa)));
+
+		eltLa.setFontSize(eltLa.getFontSize() * 2);
+		assertFalse(samePixels(original, drawAround(vLa)));
+		eltLa.setFontSize(eltLa.getFontSize() / 2);
+		assertTrue(samePixels(original, drawAround(vLa)));
+
+		eltLa.setHAlign(HAlignType.LEFT);
+		assertFalse(samePixels(original, drawAround(vLa)));
+		eltLa.setHAlign(HAlignType.CENTER);
+		assertTrue(samePixels(original, drawAround(vLa)));
+
+		vPwy.setPctZoom(200);
+		drawAround(vLa);
+		vPwy.setPctZoom(100);
+		assertTrue(samePixels(original, drawAround(vLa)));
+	}
+
+	/**
+	 * The level of detail follows the zoom factor on screen, combined with the
+	 * scale of the graphics, and can be switched off.
+	 */
+	public void testLevelOfDetail() {
+		PreferenceManager prefs = PreferenceManager.getCurrent();
+		int textZoom = prefs.getInt(GlobalPreference.LOD_TEXT_ZOOM);
+		int detailZoom = prefs.getInt(GlobalPreference.LOD_DETAIL_ZOOM);
+		try {
+			prefs.setInt(GlobalPreference.LOD_TEXT_ZOOM, 25);
+			prefs.setInt(GlobalPreference.LOD_DETAIL_ZOOM, 15);
+			vPwy.setPctZoom(100);
+			draw();
+			assertFalse(vPwy.isSimplifiedText());
+			assertFalse(vPwy.isSimplifiedDrawing());
+
+			vPwy.setPctZoom(20);
+			draw();
+			assertTrue(vPwy.isSimplifiedText());
+			assertFalse(vPwy.isSimplifiedDrawing());
+
+			vPwy.setPctZoom(10);
+			draw();
+			assertTrue(vPwy.isSimplifiedText());
+			assertTrue(vPwy.isSimplifiedDrawing());
+
+			// e.g. an export at a larger scale
+			draw(4);
+			assertFalse(vPwy.isSimplifiedText());
+			assertFalse(vPwy.isSimplifiedDrawing());
+
+			prefs.setInt(GlobalPreference.LOD_TEXT_ZOOM, 0);
+			prefs.setInt(GlobalPreference.LOD_DETAIL_ZOOM, 0);
+			draw();
+			assertFalse(vPwy.isSimplifiedText());
+			assertFalse(vPwy.isSimplifiedDrawing());
+		} finally {
+			prefs.setInt(GlobalPreference.LOD_TEXT_ZOOM, textZoom);
+			prefs.setInt(GlobalPreference.LOD_DETAIL_ZOOM, detailZoom);
+		}
+	}
+
 	public void testUndoAction() {
 		// TODO
 	}
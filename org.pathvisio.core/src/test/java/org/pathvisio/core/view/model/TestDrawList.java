@@ -0,0 +1,135 @@
+/*******************************************************************************
+ * PathVisio, a tool for data visualization and analysis using biological pathways
+ * Copyright 2006-2021 BiGCaT Bioinformatics, WikiPathways
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package org.pathvisio.core.view.model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+import junit.framework.TestCase;
+
+import org.pathvisio.core.preferences.PreferenceManager;
+import org.pathvisio.model.DataNode;
+import org.pathvisio.model.PathwayModel;
+import org.pathvisio.model.type.DataNodeType;
+
+/**
+ * Checks the drawing list after loading a pathway and after removing single
+ * elements and large batches of elements.
+ */
+public class TestDrawList extends TestCase {
+
+	private static final int COUNT = 500;
+
+	private PathwayModel pwy;
+	private VPathwayModel vPwy;
+	private List<DataNode> nodes = new ArrayList<DataNode>();
+
+	public void setUp() {
+		PreferenceManager.init();
+		pwy = new PathwayModel();
+		for (int i = 0; i < COUNT; i++) {
+			DataNode dn = new DataNode("Gene" + i, DataNodeType.GENEPRODUCT);
+			dn.setCenterX(50 + (i % 25) * 100);
+			dn.setCenterY(50 + (i / 25) * 60);
+			dn.setWidth(80);
+			dn.setHeight(40);
+			dn.setZOrder((i * 7919) % 101); // out of insertion order
+			pwy.add(dn);
+			nodes.add(dn);
+		}
+		vPwy = new VPathwayModel(null);
+		vPwy.fromModel(pwy);
+	}
+
+	/**
+	 * Checks that the drawing list is sorted, holds every element once and
+	 * holds a view for exactly the given model elements.
+	 */
+	private void assertDrawList(List<DataNode> expected) {
+		List<VElement> drawing = vPwy.getDrawingObjects();
+		Set<VElement> seen = Collections.newSetFromMap(new IdentityHashMap<VElement, Boolean>());
+		for (int i = 0; i < drawing.size(); i++) {
+			VElement e = drawing.get(i);
+			assertTrue("element listed twice", seen.add(e));
+			assertFalse(e.toBeRemoved());
+			if (i > 0) {
+				assertTrue("out of order at " + i, VElement.DRAW_LIST_ORDER.compare(drawing.get(i - 1), e) < 0);
+			}
+		}
+		for (DataNode dn : expected) {
+			VPathwayObject v = vPwy.getPathwayElementView(dn);
+			assertNotNull(v);
+			assertTrue(seen.contains(v));
+		}
+		int views = 0;
+		for (VElement e : drawing) {
+			if (e instanceof VDataNode)
+				views++;
+		}
+		assertEquals(expected.size(), views);
+	}
+
+	public void testLoad() {
+		assertDrawList(nodes);
+		for (int i = 1; i < vPwy.getDrawingObjects().size(); i++) {
+			assertTrue(vPwy.getDrawingObjects().get(i - 1).getZOrder() <= vPwy.getDrawingObjects().get(i).getZOrder());
+		}
+	}
+
+	public void testRemoveSingle() {
+		DataNode first = nodes.remove(0);
+		DataNode last = nodes.remove(nodes.size() - 1);
+		VPathwayObject vFirst = vPwy.getPathwayElementView(first);
+		pwy.remove(first);
+		vPwy.removeDrawingObject(vPwy.getPathwayElementView(last), true);
+		assertNull(vPwy.getPathwayElementView(first));
+		assertNull(vPwy.getPathwayElementView(last));
+		assertFalse(vPwy.getDrawingObjects().contains(vFirst));
+		assertDrawList(nodes);
+	}
+
+	public void testRemoveBatch() {
+		List<VElement> removed = new ArrayList<VElement>();
+		List<DataNode> kept = new ArrayList<DataNode>();
+		for (int i = 0; i < nodes.size(); i++) {
+			if (i % 3 == 0) {
+				removed.add(vPwy.getPathwayElementView(nodes.get(i)));
+			} else {
+				kept.add(nodes.get(i));
+			}
+		}
+		vPwy.removeDrawingObjects(removed, true);
+		for (VElement e : removed) {
+			assertFalse(vPwy.getDrawingObjects().contains(e));
+		}
+		assertDrawList(kept);
+
+		// elements added afterwards go in their place in the drawing order
+		DataNode dn = new DataNode("Added", DataNodeType.GENEPRODUCT);
+		dn.setCenterX(100);
+		dn.setCenterY(100);
+		dn.setWidth(80);
+		dn.setHeight(40);
+		dn.setZOrder(50);
+		pwy.add(dn);
+		kept.add(dn);
+		assertDrawList(kept);
+	}
+}
@@ -0,0 +1,215 @@
+/*******************************************************************************
+ * PathVisio, a tool for data visualization and analysis using biological pathways
+ * Copyright 2006-2021 BiGCaT Bioinformatics, WikiPathways
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package org.pathvisio.core.view.model;
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.geom.Area;
+import java.awt.geom.PathIterator;
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.pathvisio.core.preferences.PreferenceManager;
+import org.pathvisio.model.Interaction;
+import org.pathvisio.model.PathwayModel;
+import org.pathvisio.model.Shape;
+import org.pathvisio.model.shape.ArrowShape;
+import org.pathvisio.model.type.ArrowHeadType;
+import org.pathvisio.model.type.LineStyleType;
+
+/**
+ * Compares hit testing on the cached view geometry with hit testing on an
+ * outline {@link Area} that is calculated from scratch, at several zoom levels.
+ */
+public class TestHitTest extends TestCase {
+
+	static final double[] ZOOM_LEVELS = { 100, 50, 137, 200, 400, 25 };
+
+	PathwayModel pwy = null;
+	VPathwayModel vPwy = null;
+
+	public void setUp() {
+		PreferenceManager.init();
+		pwy = new PathwayModel();
+		vPwy = new VPathwayModel(null);
+		vPwy.fromModel(pwy);
+	}
+
+	private VShapedElement addShape(double cx, double cy, double rotation, LineStyleType borderStyle) {
+		Shape s = new Shape();
+		s.setCenterX(cx);
+		s.setCenterY(cy);
+		s.setWidth(80);
+		s.setHeight(50);
+		s.setRotation(rotation);
+		s.setBorderWidth(6);
+		s.setBorderStyle(borderStyle);
+		s.setFillColor(Color.WHITE);
+		pwy.add(s);
+		vPwy.addScheduled();
+		return (VShapedElement) vPwy.getPathwayElementView(s);
+	}
+
+	/**
+	 * The outline is cached in model coordinates after the first zoom level and
+	 * only scaled for the next ones. It must give the same results as the outline
+	 * calculated for each zoom level, including the border.
+	 */
+	public void testShapeAcrossZoom() {
+		VShapedElement[] shapes = { addShape(100, 100, 0, LineStyleType.SOLID),
+				addShape(300, 100, 0.6, LineStyleType.SOLID), addShape(100, 300, 1.2, LineStyleType.DOUBLE) };
+		for (double zoom : ZOOM_LEVELS) {
+			vPwy.setPctZoom(zoom);
+			for (VShapedElement e : shapes) {
+				Area expected = new Area(e.getShape(true, true));
+				Rectangle2D b = expected.getBounds2D();
+				assertEquals(b, e.getVBounds(), 1e-6);
+				// sample a grid around the bounds, off the pixel centers
+				double step = b.getWidth() / 23;
+				for (double x = b.getMinX() - 5 * step + 0.31; x < b.getMaxX() + 5 * step; x += step) {
+					for (double y = b.getMinY() - 5 * step + 0.17; y < b.getMaxY() + 5 * step; y += step) {
+						Point2D p = new Point2D.Double(x, y);
+						assertEquals("zoom " + zoom + " at " + p, expected.contains(p), e.vContains(p));
+						Rectangle2D r = new Rectangle2D.Double(x, y, step / 3, step / 3);
+						assertEquals("zoom " + zoom + " at " + r, expected.intersects(r), e.vIntersects(r));
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Outlines calculated in advance for a zoom level give the same hit test
+	 * results as outlines calculated when they are needed.
+	 */
+	public void testPrecomputedOutlines() {
+		List<VElement> elements = new ArrayList<VElement>();
+		for (int i = 0; i < GeometryPrecomputer.MIN_ELEMENTS + 10; i++) {
+			elements.add(addShape(100 + (i % 10) * 120, 100 + (i / 10) * 120, i * 0.1, LineStyleType.SOLID));
+		}
+		vPwy.setPctZoom(150);
+		GeometryPrecomputer.precompute(elements, vPwy.getZoomFactor());
+		for (VElement e : elements) {
+			VShapedElement s = (VShapedElement) e;
+			Area expected = new Area(s.getShape(true, true));
+			assertEquals(expected.getBounds2D(), s.getVBounds(), 1e-6);
+			Point2D center = new Point2D.Double(expected.getBounds2D().getCenterX(),
+					expected.getBounds2D().getCenterY());
+			assertEquals(expected.contains(center), s.vContains(center));
+		}
+	}
+
+	private VLineElement addLine(double x1, double y1, double x2, double y2, ArrowHeadType start,
+			ArrowHeadType end) {
+		Interaction l = new Interaction();
+		l.setStartLinePointX(x1);
+		l.setStartLinePointY(y1);
+		l.setEndLinePointX(x2);
+		l.setEndLinePointY(y2);
+		l.setStartLineType(start);
+		l.setEndLineType(end);
+		l.setLineWidth(2);
+		pwy.add(l);
+		vPwy.addScheduled();
+		return (VLineElement) vPwy.getPathwayElementView(l);
+	}
+
+	/**
+	 * The line hit test measures the distance to the connector and arrowhead
+	 * segments, and checks the inside of the arrowheads. It must agree with the
+	 * outline {@link Area}, except around the ends and corners of the segments,
+	 * where the Area has square caps and mitered joins instead of round ones.
+	 */
+	public void testLineAcrossZoom() {
+		VLineElement[] lines = { addLine(50, 60, 400, 230, ArrowHeadType.CONVERSION, ArrowHeadType.STIMULATION),
+				addLine(420, 50, 300, 380, ArrowHeadType.UNDIRECTED, ArrowHeadType.INHIBITION),
+				addLine(50, 400, 400, 400, ArrowHeadType.UNDIRECTED, ArrowHeadType.CONVERSION) };
+		int insideHeads = 0;
+		for (double zoom : ZOOM_LEVELS) {
+			vPwy.setPctZoom(zoom);
+			for (VLineElement e : lines) {
+				java.awt.Shape expected = e.calculateVOutline();
+				List<Point2D> corners = getCorners(e);
+				double margin = 3 * vPwy.vFromM(2) + 1;
+				Rectangle2D b = expected.getBounds2D();
+				assertEquals(b, e.getVBounds(), 1e-6);
+				double step = Math.max(b.getWidth(), b.getHeight()) / 97;
+				for (double x = b.getMinX() - 5 * step + 0.31; x < b.getMaxX() + 5 * step; x += step) {
+					for (double y = b.getMinY() - 5 * step + 0.17; y < b.getMaxY() + 5 * step; y += step) {
+						Point2D p = new Point2D.Double(x, y);
+						if (isNear(p, corners, margin + step))
+							continue;
+						assertEquals("zoom " + zoom + " at " + p, expected.contains(p), e.vContains(p));
+						Rectangle2D r = new Rectangle2D.Double(x, y, step / 3, step / 3);
+						assertEquals("zoom " + zoom + " at " + r, expected.intersects(r), e.vIntersects(r));
+						if (e.vContains(p) && isInHead(e, p))
+							insideHeads++;
+					}
+				}
+			}
+		}
+		assertTrue(insideHeads > 0);
+	}
+
+	/** the ends of the straight segments of the connector and the arrowheads */
+	private static List<Point2D> getCorners(VLineElement e) {
+		List<Point2D> result = new ArrayList<Point2D>();
+		addCorners(e.getVConnectorAdjusted(), result);
+		for (ArrowShape h : e.getVHeadsAdjusted()) {
+			if (h != null)
+				addCorners(h.getShape(), result);
+		}
+		return result;
+	}
+
+	private static void addCorners(java.awt.Shape s, List<Point2D> result) {
+		double[] c = new double[6];
+		for (PathIterator i = s.getPathIterator(null, 0.5); !i.isDone(); i.next()) {
+			if (i.currentSegment(c) != PathIterator.SEG_CLOSE)
+				result.add(new Point2D.Double(c[0], c[1]));
+		}
+	}
+
+	private static boolean isNear(Point2D p, List<Point2D> corners, double distance) {
+		for (Point2D c : corners) {
+			if (c.distance(p) <= distance)
+				return true;
+		}
+		return false;
+	}
+
+	/** true if the point is inside an arrowhead, away from its stroke */
+	private static boolean isInHead(VLineElement e, Point2D p) {
+		BasicStroke stroke = new BasicStroke((float) e.vFromM(e.getPathwayObject().getLineWidth()));
+		for (ArrowShape h : e.getVHeadsAdjusted()) {
+			if (h != null && h.getShape().contains(p) && !stroke.createStrokedShape(h.getShape()).contains(p))
+				return true;
+		}
+		return false;
+	}
+
+	private static void assertEquals(Rectangle2D expected, Rectangle2D actual, double delta) {
+		assertEquals(expected.getMinX(), actual.getMinX(), delta);
+		assertEquals(expected.getMinY(), actual.getMinY(), delta);
+		assertEquals(expected.getMaxX(), actual.getMaxX(), delta);
+		assertEquals(expected.getMaxY(), actual.getMaxY(), delta);
+	}
+}
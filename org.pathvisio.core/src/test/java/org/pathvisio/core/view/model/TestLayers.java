@@ -0,0 +1,144 @@
+/*******************************************************************************
+ * PathVisio, a tool for data visualization and analysis using biological pathways
+ * Copyright 2006-2021 BiGCaT Bioinformatics, WikiPathways
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package org.pathvisio.core.view.model;
+
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.util.HashSet;
+import java.util.Set;
+
+import junit.framework.TestCase;
+
+import org.pathvisio.core.preferences.PreferenceManager;
+import org.pathvisio.core.view.MouseEvent;
+import org.pathvisio.model.DataNode;
+import org.pathvisio.model.PathwayModel;
+import org.pathvisio.model.type.DataNodeType;
+
+/**
+ * Checks that elements move between the static layer and the overlay during a
+ * drag, and that each layer only draws its own elements.
+ */
+public class TestLayers extends TestCase {
+
+	private DummyWrapper wrapper;
+	private VPathwayModel vPwy;
+	private VElement vDn1, vDn2;
+	private Set<VElement> drawn = new HashSet<VElement>();
+
+	public void setUp() {
+		PreferenceManager.init();
+		PathwayModel pwy = new PathwayModel();
+		DataNode dn1 = addDataNode(pwy, 200, 200);
+		DataNode dn2 = addDataNode(pwy, 500, 200);
+		wrapper = new DummyWrapper();
+		vPwy = wrapper.createVPathway();
+		vPwy.fromModel(pwy);
+		vPwy.setEditMode(true);
+		vDn1 = vPwy.getPathwayElementView(dn1);
+		vDn2 = vPwy.getPathwayElementView(dn2);
+		vPwy.addRenderHook(new RenderHook() {
+			public Class<? extends VElement> getElementType() {
+				return VElement.class;
+			}
+
+			public void elementDrawn(VElement e, Graphics2D g2d) {
+				drawn.add(e);
+			}
+		});
+	}
+
+	public void tearDown() {
+		vPwy.dispose();
+	}
+
+	private static DataNode addDataNode(PathwayModel pwy, double x, double y) {
+		DataNode dn = new DataNode("Gene", DataNodeType.UNDEFINED);
+		dn.setCenterX(x);
+		dn.setCenterY(y);
+		dn.setWidth(80);
+		dn.setHeight(40);
+		pwy.add(dn);
+		return dn;
+	}
+
+	private void mouse(int type, double mx, double my) {
+		MouseEvent e = new MouseEvent(vPwy, type, MouseEvent.BUTTON1, (int) vPwy.vFromM(mx), (int) vPwy.vFromM(my), 1,
+				0, false) {
+		};
+		switch (type) {
+		case MouseEvent.MOUSE_DOWN:
+			vPwy.mouseDown(e);
+			break;
+		case MouseEvent.MOUSE_MOVE:
+			vPwy.mouseMove(e);
+			break;
+		case MouseEvent.MOUSE_UP:
+			vPwy.mouseUp(e);
+			break;
+		}
+	}
+
+	/** returns the elements drawn in one of the layers */
+	private Set<VElement> drawLayer(boolean overlay) {
+		drawn.clear();
+		BufferedImage image = new BufferedImage(100, 100, BufferedImage.TYPE_INT_RGB);
+		Graphics2D g2d = image.createGraphics();
+		g2d.setClip(new Rectangle(0, 0, 1000, 1000));
+		if (overlay) {
+			vPwy.drawOverlay(g2d);
+		} else {
+			vPwy.drawStatic(g2d);
+		}
+		g2d.dispose();
+		return new HashSet<VElement>(drawn);
+	}
+
+	public void testDragPromotesToOverlay() {
+		assertFalse(vPwy.isInOverlay(vDn1));
+		assertTrue(drawLayer(false).contains(vDn1));
+		assertFalse(drawLayer(true).contains(vDn1));
+
+		mouse(MouseEvent.MOUSE_DOWN, 200, 200);
+		mouse(MouseEvent.MOUSE_MOVE, 250, 220);
+		assertTrue(vPwy.isInOverlay(vDn1));
+		assertFalse(vPwy.isInOverlay(vDn2));
+		Set<VElement> staticLayer = drawLayer(false);
+		assertFalse(staticLayer.contains(vDn1));
+		assertTrue(staticLayer.contains(vDn2));
+		assertTrue(drawLayer(true).contains(vDn1));
+		for (VElement e : staticLayer) {
+			assertFalse(e instanceof Handle);
+		}
+
+		// drag feedback only repaints the overlay
+		vPwy.getRepaintScheduler().flush();
+		wrapper.redrawn.clear();
+		wrapper.overlay.clear();
+		mouse(MouseEvent.MOUSE_MOVE, 300, 240);
+		vPwy.getRepaintScheduler().flush();
+		assertTrue(wrapper.redrawn.isEmpty());
+		assertFalse(wrapper.overlay.isEmpty());
+
+		// back to the static layer at the end of the gesture
+		mouse(MouseEvent.MOUSE_UP, 300, 240);
+		assertFalse(vPwy.isInOverlay(vDn1));
+		assertTrue(drawLayer(false).contains(vDn1));
+		assertFalse(drawLayer(true).contains(vDn1));
+	}
+}
@@ -0,0 +1,127 @@
+/*******************************************************************************
+ * PathVisio, a tool for data visualization and analysis using biological pathways
+ * Copyright 2006-2021 BiGCaT Bioinformatics, WikiPathways
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package org.pathvisio.core.view.model;
+
+import java.awt.Shape;
+import java.awt.geom.Rectangle2D;
+
+import junit.framework.TestCase;
+
+import org.pathvisio.core.preferences.PreferenceManager;
+import org.pathvisio.model.Interaction;
+import org.pathvisio.model.PathwayModel;
+import org.pathvisio.model.shape.ArrowShape;
+import org.pathvisio.model.type.ArrowHeadType;
+import org.pathvisio.model.type.ConnectorType;
+
+/**
+ * Checks that the cached connector, arrowheads and outline of a line are
+ * reused while nothing changes, and match freshly calculated geometry after
+ * each kind of change.
+ */
+public class TestLineGeometry extends TestCase {
+
+	private PathwayModel pwy;
+	private VPathwayModel vPwy;
+	private Interaction line;
+	private VLineElement vLine;
+
+	public void setUp() {
+		PreferenceManager.init();
+		pwy = new PathwayModel();
+		line = new Interaction();
+		line.setStartLinePointX(50);
+		line.setStartLinePointY(60);
+		line.setEndLinePointX(400);
+		line.setEndLinePointY(230);
+		line.setEndLineType(ArrowHeadType.CONVERSION);
+		line.setLineWidth(1);
+		pwy.add(line);
+		vPwy = new VPathwayModel(null);
+		vPwy.fromModel(pwy);
+		vLine = (VLineElement) vPwy.getPathwayElementView(line);
+	}
+
+	public void tearDown() {
+		vPwy.dispose();
+	}
+
+	/** checks that the cached geometry is the same as for a new view of the line */
+	private void assertFresh() {
+		VPathwayModel other = new VPathwayModel(null);
+		other.fromModel(pwy);
+		other.setPctZoom(vPwy.getPctZoom());
+		VLineElement expected = (VLineElement) other.getPathwayElementView(line);
+		assertEquals(expected.getVConnectorAdjusted().getBounds2D(), vLine.getVConnectorAdjusted().getBounds2D());
+		ArrowShape[] heads = vLine.getVHeadsAdjusted();
+		ArrowShape[] expectedHeads = expected.getVHeadsAdjusted();
+		for (int i = 0; i < heads.length; i++) {
+			assertEquals(expectedHeads[i] == null, heads[i] == null);
+			if (heads[i] != null)
+				assertEquals(expectedHeads[i].getShape().getBounds2D(), heads[i].getShape().getBounds2D());
+		}
+		assertEquals(expected.calculateVOutline().getBounds2D(), vLine.calculateVOutline().getBounds2D());
+		assertEquals(expected.getVBounds(), vLine.getVBounds());
+		other.dispose();
+	}
+
+	private static void assertEquals(Rectangle2D expected, Rectangle2D actual) {
+		assertEquals(expected.getMinX(), actual.getMinX(), 1e-6);
+		assertEquals(expected.getMinY(), actual.getMinY(), 1e-6);
+		assertEquals(expected.getMaxX(), actual.getMaxX(), 1e-6);
+		assertEquals(expected.getMaxY(), actual.getMaxY(), 1e-6);
+	}
+
+	public void testReused() {
+		Shape connector = vLine.getVConnectorAdjusted();
+		ArrowShape[] heads = vLine.getVHeadsAdjusted();
+		Shape outline = vLine.calculateVOutline();
+		assertSame(connector, vLine.getVConnectorAdjusted());
+		assertSame(heads, vLine.getVHeadsAdjusted());
+		assertSame(outline, vLine.calculateVOutline());
+	}
+
+	public void testChanges() {
+		assertFresh();
+		Shape outline = vLine.calculateVOutline();
+
+		line.setEndLinePointX(300);
+		assertNotSame(outline, vLine.calculateVOutline());
+		assertFresh();
+
+		outline = vLine.calculateVOutline();
+		line.setLineWidth(5);
+		assertNotSame(outline, vLine.calculateVOutline());
+		assertFresh();
+
+		outline = vLine.calculateVOutline();
+		line.setStartLineType(ArrowHeadType.INHIBITION);
+		assertNotSame(outline, vLine.calculateVOutline());
+		assertNotNull(vLine.getVHeadsAdjusted()[0]);
+		assertFresh();
+
+		outline = vLine.calculateVOutline();
+		line.setConnectorType(ConnectorType.ELBOW);
+		assertNotSame(outline, vLine.calculateVOutline());
+		assertFresh();
+
+		outline = vLine.calculateVOutline();
+		vPwy.setPctZoom(250);
+		assertNotSame(outline, vLine.calculateVOutline());
+		assertFresh();
+	}
+}
@@ -0,0 +1,159 @@
+/*******************************************************************************
+ * PathVisio, a tool for data visualization and analysis using biological pathways
+ * Copyright 2006-2021 BiGCaT Bioinformatics, WikiPathways
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package org.pathvisio.core.view.model;
+
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+
+import junit.framework.TestCase;
+
+import org.pathvisio.core.preferences.PreferenceManager;
+import org.pathvisio.core.view.MouseEvent;
+import org.pathvisio.model.DataNode;
+import org.pathvisio.model.Interaction;
+import org.pathvisio.model.PathwayModel;
+import org.pathvisio.model.type.DataNodeType;
+
+/**
+ * Checks that dragging a line end point only shows and hides the link anchors
+ * of the elements the cursor enters and leaves, and that the link anchors are
+ * reused when the cursor comes back.
+ */
+public class TestLinkAnchors extends TestCase {
+
+	private VPathwayModel vPwy;
+	private Interaction line;
+	private CountingDelegate anchors1, anchors2;
+
+	/** counts the calls to show and hide the link anchors of an element */
+	private static class CountingDelegate extends DefaultLinkAnchorDelegate {
+		int shown = 0;
+		int hidden = 0;
+
+		CountingDelegate(VLinkableTo parent) {
+			super(parent);
+		}
+
+		public void showLinkAnchors() {
+			shown++;
+			super.showLinkAnchors();
+		}
+
+		public void hideLinkAnchors() {
+			hidden++;
+			super.hideLinkAnchors();
+		}
+	}
+
+	public void setUp() {
+		PreferenceManager.init();
+		PathwayModel pwy = new PathwayModel();
+		DataNode dn1 = addDataNode(pwy, 200, 200);
+		DataNode dn2 = addDataNode(pwy, 500, 200);
+		line = new Interaction();
+		line.setStartLinePointX(350);
+		line.setStartLinePointY(400);
+		line.setEndLinePointX(350);
+		line.setEndLinePointY(300);
+		pwy.add(line);
+		vPwy = new DummyWrapper().createVPathway();
+		vPwy.fromModel(pwy);
+		vPwy.setEditMode(true);
+		VShapedElement vDn1 = (VShapedElement) vPwy.getPathwayElementView(dn1);
+		VShapedElement vDn2 = (VShapedElement) vPwy.getPathwayElementView(dn2);
+		anchors1 = new CountingDelegate(vDn1);
+		anchors2 = new CountingDelegate(vDn2);
+		vDn1.setLinkAnchorDelegate(anchors1);
+		vDn2.setLinkAnchorDelegate(anchors2);
+		vPwy.selectObject(vPwy.getPathwayElementView(line));
+	}
+
+	public void tearDown() {
+		vPwy.dispose();
+	}
+
+	private static DataNode addDataNode(PathwayModel pwy, double x, double y) {
+		DataNode dn = new DataNode("Gene", DataNodeType.UNDEFINED);
+		dn.setCenterX(x);
+		dn.setCenterY(y);
+		dn.setWidth(80);
+		dn.setHeight(40);
+		pwy.add(dn);
+		return dn;
+	}
+
+	private void mouse(int type, double mx, double my) {
+		MouseEvent e = new MouseEvent(vPwy, type, MouseEvent.BUTTON1, (int) vPwy.vFromM(mx), (int) vPwy.vFromM(my), 1,
+				0, false) {
+		};
+		switch (type) {
+		case MouseEvent.MOUSE_DOWN:
+			vPwy.mouseDown(e);
+			break;
+		case MouseEvent.MOUSE_MOVE:
+			vPwy.mouseMove(e);
+			break;
+		case MouseEvent.MOUSE_UP:
+			vPwy.mouseUp(e);
+			break;
+		}
+	}
+
+	private static Point2D getCenter(LinkAnchor la) {
+		Rectangle2D r = la.getMatchArea().getBounds2D();
+		return new Point2D.Double(r.getCenterX(), r.getCenterY());
+	}
+
+	public void testDragEndPoint() {
+		mouse(MouseEvent.MOUSE_DOWN, 350, 300);
+		mouse(MouseEvent.MOUSE_MOVE, 175, 195);
+		assertTrue(line.getEndLinePointX() < 250); // the end point follows the cursor
+		assertEquals(1, anchors1.shown);
+		assertEquals(0, anchors1.hidden);
+		assertEquals(0, anchors2.shown);
+		assertFalse(anchors1.linkAnchors.isEmpty());
+		LinkAnchor la = anchors1.linkAnchors.get(0);
+		Point2D p = getCenter(la);
+		assertSame(la, anchors1.getLinkAnchorAt(p));
+
+		// moving over the same element changes nothing
+		mouse(MouseEvent.MOUSE_MOVE, 180, 198);
+		mouse(MouseEvent.MOUSE_MOVE, 185, 202);
+		assertEquals(1, anchors1.shown);
+		assertEquals(0, anchors1.hidden);
+
+		// only the element that is left and the element that is entered change
+		mouse(MouseEvent.MOUSE_MOVE, 475, 195);
+		assertEquals(1, anchors1.hidden);
+		assertEquals(1, anchors2.shown);
+		assertEquals(0, anchors2.hidden);
+		assertNull(anchors1.getLinkAnchorAt(p));
+		assertTrue(la.toBeRemoved());
+
+		// coming back shows the same link anchors again
+		mouse(MouseEvent.MOUSE_MOVE, 175, 195);
+		assertEquals(2, anchors1.shown);
+		assertEquals(1, anchors2.hidden);
+		assertSame(la, anchors1.linkAnchors.get(0));
+		assertSame(la, anchors1.getLinkAnchorAt(p));
+		assertFalse(la.toBeRemoved());
+
+		mouse(MouseEvent.MOUSE_UP, 175, 195);
+		assertEquals(2, anchors1.hidden);
+		assertEquals(1, anchors2.hidden);
+	}
+}
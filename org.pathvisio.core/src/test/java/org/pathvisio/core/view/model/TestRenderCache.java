@@ -0,0 +1,73 @@
+/*******************************************************************************
+ * PathVisio, a tool for data visualization and analysis using biological pathways
+ * Copyright 2006-2021 BiGCaT Bioinformatics, WikiPathways
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package org.pathvisio.core.view.model;
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Font;
+
+import junit.framework.TestCase;
+
+public class TestRenderCache extends TestCase {
+
+	public void testFont() {
+		Font f = RenderCache.getFont("Arial", Font.BOLD, 13.5f);
+		assertSame(f, RenderCache.getFont("Arial", Font.BOLD, 13.5f));
+		assertEquals(new Font("Arial", Font.BOLD, 12).deriveFont(13.5f), f);
+		assertNotSame(f, RenderCache.getFont("Arial", Font.PLAIN, 13.5f));
+		assertNotSame(f, RenderCache.getFont("Arial", Font.BOLD, 14f));
+		assertSame(RenderCache.getFont(null, Font.PLAIN, 10), RenderCache.getFont(null, Font.PLAIN, 10));
+	}
+
+	public void testStroke() {
+		BasicStroke s = RenderCache.getStroke(2.5f);
+		assertSame(s, RenderCache.getStroke(2.5f));
+		assertEquals(new BasicStroke(2.5f), s);
+		assertNotSame(s, RenderCache.getStroke(3f));
+
+		// dash patterns are compared by content, and changing the array later
+		// doesn't change the cached stroke
+		float[] dash = { 4, 2 };
+		BasicStroke dashed = RenderCache.getStroke(1, BasicStroke.CAP_BUTT, BasicStroke.JOIN_ROUND, 10, dash);
+		assertSame(dashed, RenderCache.getStroke(1, BasicStroke.CAP_BUTT, BasicStroke.JOIN_ROUND, 10,
+				new float[] { 4, 2 }));
+		dash[0] = 8;
+		assertEquals(new BasicStroke(1, BasicStroke.CAP_BUTT, BasicStroke.JOIN_ROUND, 10, new float[] { 4, 2 }, 0),
+				RenderCache.getStroke(1, BasicStroke.CAP_BUTT, BasicStroke.JOIN_ROUND, 10, new float[] { 4, 2 }));
+		assertNotSame(dashed, RenderCache.getStroke(1, BasicStroke.CAP_BUTT, BasicStroke.JOIN_ROUND, 10, dash));
+		assertNotSame(dashed, RenderCache.getStroke(1, BasicStroke.CAP_BUTT, BasicStroke.JOIN_ROUND, 10, null));
+	}
+
+	public void testColor() {
+		Color c = new Color(10, 20, 30);
+		assertSame(c, RenderCache.getColor(c, 255));
+		Color translucent = RenderCache.getColor(c, 128);
+		assertEquals(new Color(10, 20, 30, 128), translucent);
+		assertSame(translucent, RenderCache.getColor(new Color(10, 20, 30), 128));
+		// the alpha of the given color is replaced
+		assertSame(translucent, RenderCache.getColor(new Color(10, 20, 30, 5), 128));
+		assertNotSame(translucent, RenderCache.getColor(c, 64));
+	}
+
+	public void testEviction() {
+		Font first = RenderCache.getFont("Dialog", Font.PLAIN, 1000.25f);
+		for (int i = 0; i < RenderCache.MAX_ENTRIES; i++) {
+			RenderCache.getFont("Dialog", Font.PLAIN, 2000 + i);
+		}
+		assertNotSame(first, RenderCache.getFont("Dialog", Font.PLAIN, 1000.25f));
+	}
+}
@@ -0,0 +1,69 @@
+/*******************************************************************************
+ * PathVisio, a tool for data visualization and analysis using biological pathways
+ * Copyright 2006-2021 BiGCaT Bioinformatics, WikiPathways
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package org.pathvisio.core.view.model;
+
+import java.awt.Rectangle;
+
+import junit.framework.TestCase;
+
+public class TestRepaintScheduler extends TestCase {
+
+	public void testMerge() {
+		DummyWrapper w = new DummyWrapper();
+		RepaintScheduler s = new RepaintScheduler(w, 0);
+		// a moving element, old and new bounds overlap
+		for (int i = 0; i < 50; i++) {
+			s.addDirty(new Rectangle(i, 10, 20, 20), true);
+		}
+		s.addDirty(new Rectangle(500, 500, 10, 10), true);
+		s.addDirty(new Rectangle(505, 505, 2, 2), false);
+		s.flush();
+
+		assertEquals(2, w.redrawn.size());
+		assertTrue(w.redrawn.contains(new Rectangle(0, 10, 69, 20)));
+		assertTrue(w.redrawn.contains(new Rectangle(500, 500, 10, 10)));
+		assertEquals(1, w.overlay.size());
+		assertEquals(52, s.getRequestCount());
+		assertEquals(1, s.getFlushCount());
+		assertEquals(3, s.getRepaintCount());
+
+		// nothing left
+		s.flush();
+		assertEquals(1, s.getFlushCount());
+	}
+
+	public void testFullRepaint() {
+		DummyWrapper w = new DummyWrapper();
+		RepaintScheduler s = new RepaintScheduler(w, 0);
+		// more separate areas than MAX_AREAS are merged into one
+		for (int i = 0; i <= RepaintScheduler.MAX_AREAS; i++) {
+			s.addDirty(new Rectangle(i * 50, i * 50, 10, 10), true);
+		}
+		s.flush();
+		assertEquals(1, w.redrawn.size());
+		assertEquals(0, s.getFullRepaintCount());
+
+		// covering most of the view repaints the view
+		w.redrawn.clear();
+		s.addDirty(new Rectangle(0, 0, 900, 900), true);
+		s.addDirty(new Rectangle(10, 10, 5, 5), false);
+		s.flush();
+		assertEquals(1, w.redrawn.size());
+		assertEquals(w.getViewRect(), w.redrawn.get(0));
+		assertEquals(1, s.getFullRepaintCount());
+	}
+}
@@ -0,0 +1,237 @@
+/*******************************************************************************
+ * PathVisio, a tool for data visualization and analysis using biological pathways
+ * Copyright 2006-2021 BiGCaT Bioinformatics, WikiPathways
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package org.pathvisio.core.view.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import junit.framework.TestCase;
+
+import org.pathvisio.core.preferences.PreferenceManager;
+import org.pathvisio.core.view.model.SelectionBox.SelectionEvent;
+import org.pathvisio.core.view.model.SelectionBox.SelectionListener;
+import org.pathvisio.model.DataNode;
+import org.pathvisio.model.Interaction;
+import org.pathvisio.model.Label;
+import org.pathvisio.model.PathwayModel;
+import org.pathvisio.model.Shape;
+import org.pathvisio.model.type.DataNodeType;
+
+/**
+ * Checks that listeners that follow the selection through the added and
+ * removed objects of selection events, like the property table does, end up
+ * with the actual selection.
+ */
+public class TestSelection extends TestCase {
+
+	PathwayModel pwy = null;
+	VPathwayModel vPwy = null;
+	VElement vDn = null, vSh = null, vLi = null, vLa = null;
+	Recorder recorder = null;
+
+	/**
+	 * Keeps a copy of the selection up to date from the events only.
+	 */
+	static class Recorder implements SelectionListener {
+		List<SelectionEvent> events = new ArrayList<SelectionEvent>();
+		Set<VElement> mirror = new HashSet<VElement>();
+
+		public void selectionEvent(SelectionEvent e) {
+			events.add(e);
+			switch (e.type) {
+			case SelectionEvent.OBJECT_ADDED:
+				mirror.add(e.affectedObject);
+				break;
+			case SelectionEvent.OBJECT_REMOVED:
+				mirror.remove(e.affectedObject);
+				break;
+			case SelectionEvent.SELECTION_CLEARED:
+				mirror.clear();
+				break;
+			case SelectionEvent.SELECTION_CHANGED:
+				mirror.removeAll(e.removed);
+				mirror.addAll(e.added);
+				break;
+			}
+		}
+	}
+
+	public void setUp() {
+		PreferenceManager.init();
+		pwy = new PathwayModel();
+		DataNode eltDn = new DataNode("Gene", DataNodeType.UNDEFINED);
+		eltDn.setCenterX(3000);
+		eltDn.setCenterY(3000);
+		eltDn.setWidth(1000);
+		eltDn.setHeight(1000);
+		Shape eltSh = new Shape();
+		eltSh.setCenterX(6000);
+		eltSh.setCenterY(3000);
+		eltSh.setWidth(300);
+		eltSh.setHeight(700);
+		Interaction eltLi = new Interaction();
+		eltLi.setStartLinePointX(500);
+		eltLi.setStartLinePointY(1000);
+		eltLi.setEndLinePointX(2500);
+		eltLi.setEndLinePointY(2000);
+		Label eltLa = new Label("Test");
+		eltLa.setCenterX(6000);
+		eltLa.setCenterY(6000);
+		eltLa.setWidth(300);
+		eltLa.setHeight(700);
+		pwy.add(eltDn);
+		pwy.add(eltSh);
+		pwy.add(eltLi);
+		pwy.add(eltLa);
+		vPwy = new VPathwayModel(null);
+		vPwy.fromModel(pwy);
+		vPwy.addScheduled();
+
+		vDn = vPwy.getPathwayElementView(eltDn);
+		vSh = vPwy.getPathwayElementView(eltSh);
+		vLi = vPwy.getPathwayElementView(eltLi);
+		vLa = vPwy.getPathwayElementView(eltLa);
+		assertNotNull(vDn);
+		assertNotNull(vSh);
+		assertNotNull(vLi);
+		assertNotNull(vLa);
+
+		recorder = new Recorder();
+		vPwy.addSelectionListener(recorder);
+	}
+
+	private void assertInSync() {
+		assertEquals(vPwy.getSelectedPathwayElements(), recorder.mirror);
+	}
+
+	/**
+	 * All selection changes inside a batch must reach the listeners, not just
+	 * the last one.
+	 */
+	public void testBatch() {
+		vPwy.selectObject(vDn);
+		assertInSync();
+		recorder.events.clear();
+
+		vPwy.beginBatch();
+		try {
+			vPwy.selection.addToSelection(vSh);
+			vPwy.selection.addToSelection(vLa);
+			vPwy.selection.addToSelection(vLi);
+			vPwy.selection.removeFromSelection(vDn);
+			vPwy.selection.removeFromSelection(vLi); // no net change
+			assertTrue(recorder.events.isEmpty()); // held back
+		} finally {
+			vPwy.endBatch();
+		}
+		assertInSync();
+		assertEquals(1, recorder.events.size());
+		SelectionEvent e = recorder.events.get(0);
+		assertEquals(SelectionEvent.SELECTION_CHANGED, e.type);
+		assertEquals(Collections.singleton(vDn), e.removed);
+		assertEquals(new HashSet<VElement>(Arrays.asList(vSh, vLa)), e.added);
+	}
+
+	/**
+	 * Clearing the selection inside a batch is reported as part of the net
+	 * change, in a single event.
+	 */
+	public void testBatchWithClear() {
+		vPwy.selectObject(vDn);
+		recorder.events.clear();
+
+		vPwy.beginBatch();
+		try {
+			vPwy.beginBatch(); // nested batches release only at the end
+			try {
+				vPwy.clearSelection();
+				vPwy.selection.addToSelection(vSh);
+			} finally {
+				vPwy.endBatch();
+			}
+			assertTrue(recorder.events.isEmpty());
+			vPwy.selection.addToSelection(vLa);
+		} finally {
+			vPwy.endBatch();
+		}
+		assertInSync();
+		assertEquals(1, recorder.events.size());
+		SelectionEvent e = recorder.events.get(0);
+		assertEquals(SelectionEvent.SELECTION_CHANGED, e.type);
+		assertEquals(Collections.singleton(vDn), e.removed);
+		assertEquals(new HashSet<VElement>(Arrays.asList(vSh, vLa)), e.added);
+	}
+
+	/**
+	 * Drags the rubber band to the given model coordinates.
+	 */
+	private void dragRubberBand(double mx, double my) {
+		SelectionBox box = vPwy.selection;
+		box.adjustToHandle(box.getCornerHandle(), vPwy.vFromM(mx), vPwy.vFromM(my));
+	}
+
+	/**
+	 * Every step of a rubber band drag that selects or deselects more than one
+	 * element must report all of them, in a single event.
+	 */
+	public void testRubberBand() {
+		vPwy.clearSelection();
+		vPwy.selection.startSelecting();
+		recorder.events.clear();
+
+		// the data node and the line enter the band in one step
+		dragRubberBand(4000, 4000);
+		assertInSync();
+		assertTrue(recorder.mirror.contains(vDn));
+		assertTrue(recorder.mirror.contains(vLi));
+		assertFalse(recorder.mirror.contains(vSh));
+		assertEquals(1, recorder.events.size());
+		assertEquals(2, recorder.events.get(0).added.size());
+
+		// the shape and the label as well
+		dragRubberBand(7000, 7000);
+		assertInSync();
+		assertEquals(4, recorder.mirror.size());
+
+		// and all of them leave in one step
+		recorder.events.clear();
+		dragRubberBand(100, 100);
+		assertInSync();
+		assertTrue(recorder.mirror.isEmpty());
+		assertEquals(1, recorder.events.size());
+		assertEquals(4, recorder.events.get(0).removed.size());
+
+		vPwy.selection.stopSelecting();
+		assertInSync();
+	}
+
+	/**
+	 * A batch that doesn't change the selection fires nothing.
+	 */
+	public void testBatchWithoutChange() {
+		vPwy.selectObject(vDn);
+		recorder.events.clear();
+
+		vPwy.beginBatch();
+		vPwy.endBatch();
+		assertTrue(recorder.events.isEmpty());
+	}
+}
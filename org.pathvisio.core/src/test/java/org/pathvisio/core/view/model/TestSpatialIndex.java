@@ -0,0 +1,94 @@
+/*******************************************************************************
+ * PathVisio, a tool for data visualization and analysis using biological pathways
+ * Copyright 2006-2021 BiGCaT Bioinformatics, WikiPathways
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package org.pathvisio.core.view.model;
+
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import junit.framework.TestCase;
+
+public class TestSpatialIndex extends TestCase {
+
+	public void testInsertRemove() {
+		SpatialIndex<String> index = new SpatialIndex<String>();
+		index.insert("a", new Rectangle2D.Double(0, 0, 10, 10));
+		index.insert("b", new Rectangle2D.Double(20, 20, 10, 10));
+		assertEquals(2, index.size());
+
+		Set<String> result = new HashSet<String>();
+		index.search(new Point2D.Double(5, 5), result);
+		assertEquals(1, result.size());
+		assertTrue(result.contains("a"));
+
+		// moving an item updates its entry
+		index.insert("a", new Rectangle2D.Double(100, 100, 10, 10));
+		assertEquals(2, index.size());
+		result.clear();
+		index.search(new Point2D.Double(5, 5), result);
+		assertTrue(result.isEmpty());
+
+		index.remove("b");
+		assertFalse(index.contains("b"));
+		result.clear();
+		index.search(new Rectangle2D.Double(0, 0, 200, 200), result);
+		assertEquals(1, result.size());
+		assertTrue(result.contains("a"));
+	}
+
+	/**
+	 * Compare the index against a brute force search, with enough items to
+	 * cause node splits and tree condensing.
+	 */
+	public void testAgainstLinearSearch() {
+		Random random = new Random(42);
+		SpatialIndex<Integer> index = new SpatialIndex<Integer>();
+		Map<Integer, Rectangle2D> items = new HashMap<Integer, Rectangle2D>();
+		for (int i = 0; i < 20000; i++) {
+			Integer key = random.nextInt(500);
+			if (random.nextInt(3) == 0) {
+				index.remove(key);
+				items.remove(key);
+			} else {
+				Rectangle2D r = new Rectangle2D.Double(random.nextInt(1000), random.nextInt(1000),
+						random.nextInt(50), random.nextInt(50));
+				index.insert(key, r);
+				items.put(key, r);
+			}
+			if (i % 100 == 0) {
+				Rectangle2D q = new Rectangle2D.Double(random.nextInt(1000), random.nextInt(1000),
+						random.nextInt(200), random.nextInt(200));
+				Set<Integer> expected = new HashSet<Integer>();
+				for (Map.Entry<Integer, Rectangle2D> e : items.entrySet()) {
+					Rectangle2D r = e.getValue();
+					if (r.getMinX() <= q.getMaxX() && r.getMaxX() >= q.getMinX() && r.getMinY() <= q.getMaxY()
+							&& r.getMaxY() >= q.getMinY()) {
+						expected.add(e.getKey());
+					}
+				}
+				Set<Integer> result = new HashSet<Integer>();
+				index.search(q, result);
+				assertEquals(expected, result);
+				assertEquals(items.size(), index.size());
+			}
+		}
+	}
+}
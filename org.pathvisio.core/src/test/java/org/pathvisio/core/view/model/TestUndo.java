@@ -0,0 +1,768 @@
+/*******************************************************************************
+ * PathVisio, a tool for data visualization and analysis using biological pathways
+ * Copyright 2006-2021 BiGCaT Bioinformatics, WikiPathways
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package org.pathvisio.core.view.model;
+
+import java.awt.event.KeyEvent;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+import javax.swing.KeyStroke;
+
+import junit.framework.TestCase;
+
+import org.pathvisio.core.Engine;
+import org.pathvisio.core.preferences.GlobalPreference;
+import org.pathvisio.core.preferences.PreferenceManager;
+import org.pathvisio.core.view.MouseEvent;
+import org.pathvisio.model.DataNode;
+import org.pathvisio.model.GraphLink.LinkableTo;
+import org.pathvisio.model.Group;
+import org.pathvisio.model.Interaction;
+import org.pathvisio.model.Label;
+import org.pathvisio.model.LineElement;
+import org.pathvisio.model.LineElement.Anchor;
+import org.pathvisio.model.LineElement.LinePoint;
+import org.pathvisio.model.PathwayModel;
+import org.pathvisio.model.PathwayObject;
+import org.pathvisio.model.ShapedElement;
+import org.pathvisio.model.type.AnchorShapeType;
+import org.pathvisio.model.type.DataNodeType;
+
+/**
+ * Tests the undo manager and its actions, with a drawing opened through the
+ * {@link Engine} like in the application, so that undo can replace the
+ * pathway.
+ */
+public class TestUndo extends TestCase {
+
+	private static final KeyStroke RIGHT = KeyStroke.getKeyStroke(KeyEvent.VK_RIGHT, 0);
+
+	private Engine engine;
+	private VPathwayModel vPwy;
+	private UndoManager undoManager;
+	private DataNode dn1, dn2;
+	private Interaction line;
+	private Label label;
+
+	public void setUp() {
+		PreferenceManager.init();
+		PathwayModel pwy = new PathwayModel();
+		dn1 = addDataNode(pwy, 1500, 1500);
+		dn2 = addDataNode(pwy, 4500, 1500);
+		line = new Interaction();
+		line.setStartElementRef(dn1);
+		line.setEndElementRef(dn2);
+		line.setStartLinePointX(dn1.getCenterX());
+		line.setStartLinePointY(dn1.getCenterY());
+		line.setEndLinePointX(dn2.getCenterX());
+		line.setEndLinePointY(dn2.getCenterY());
+		pwy.add(line);
+		label = new Label("Label");
+		label.setCenterX(1500);
+		label.setCenterY(4000);
+		label.setWidth(600);
+		label.setHeight(300);
+		pwy.add(label);
+
+		engine = new Engine();
+		engine.setWrapper(new DummyWrapper());
+		engine.createVPathwayModel(pwy);
+		vPwy = engine.getActiveVPathwayModel();
+		undoManager = vPwy.getUndoManager();
+		assertTrue(undoManager.isActive());
+	}
+
+	public void tearDown() {
+		engine.dispose();
+	}
+
+	private static DataNode addDataNode(PathwayModel pwy, double x, double y) {
+		DataNode dn = new DataNode("Gene", DataNodeType.UNDEFINED);
+		dn.setCenterX(x);
+		dn.setCenterY(y);
+		dn.setWidth(1000);
+		dn.setHeight(500);
+		pwy.add(dn);
+		return dn;
+	}
+
+	/** the current pathway, which undo may have replaced by a copy */
+	private PathwayModel pathway() {
+		return vPwy.getPathwayModel();
+	}
+
+	/**
+	 * Returns the type, geometry and text of all elements, sorted, so that two
+	 * states of the pathway can be compared. Element ids are left out, elements
+	 * that are added back by redo are copies, which may get new ids.
+	 */
+	static String describe(PathwayModel p) {
+		List<String> result = new ArrayList<String>();
+		for (PathwayObject o : p.getPathwayObjects()) {
+			StringBuilder b = new StringBuilder(o.getClass().getSimpleName());
+			if (o instanceof ShapedElement) {
+				ShapedElement e = (ShapedElement) o;
+				b.append(" ").append(e.getLeft()).append(",").append(e.getTop());
+				b.append(" ").append(e.getWidth()).append("x").append(e.getHeight());
+			}
+			if (o instanceof DataNode) {
+				b.append(" '").append(((DataNode) o).getTextLabel()).append("'");
+			}
+			if (o instanceof Label) {
+				b.append(" '").append(((Label) o).getTextLabel()).append("'");
+			}
+			if (o instanceof LineElement) {
+				for (LinePoint lp : ((LineElement) o).getLinePoints()) {
+					b.append(" ").append(lp.getX()).append(",").append(lp.getY());
+				}
+			}
+			result.add(b.toString());
+		}
+		Collections.sort(result);
+		return result.toString();
+	}
+
+	public void testMoveUndo() {
+		String before = describe(pathway());
+		vPwy.selectObject(vPwy.getPathwayElementView(dn1));
+		vPwy.moveByKey(RIGHT, 10);
+		assertFalse(before.equals(describe(pathway())));
+
+		vPwy.undo();
+		assertEquals(before, describe(pathway()));
+		assertEquals(UndoManager.CANT_UNDO, undoManager.getTopMessage());
+	}
+
+	public void testResizeUndo() {
+		String before = describe(pathway());
+		undoManager.newGeometryAction("Resize", Arrays.asList(dn2));
+		dn2.setWidth(2000);
+		dn2.setHeight(800);
+		assertFalse(before.equals(describe(pathway())));
+
+		vPwy.undo();
+		assertEquals(before, describe(pathway()));
+	}
+
+	private void mouse(int type, double mx, double my) {
+		mouse(type, mx, my, 0);
+	}
+
+	private void mouse(int type, double mx, double my, int modifier) {
+		MouseEvent e = new MouseEvent(vPwy, type, MouseEvent.BUTTON1, (int) vPwy.vFromM(mx), (int) vPwy.vFromM(my), 1,
+				modifier, false) {
+		};
+		switch (type) {
+		case MouseEvent.MOUSE_DOWN:
+			vPwy.mouseDown(e);
+			break;
+		case MouseEvent.MOUSE_MOVE:
+			vPwy.mouseMove(e);
+			break;
+		case MouseEvent.MOUSE_UP:
+			vPwy.mouseUp(e);
+			break;
+		}
+	}
+
+	/**
+	 * Dragging an element records its geometry and that of the linked line, not
+	 * a copy of the pathway.
+	 */
+	public void testDragUndo() {
+		vPwy.setEditMode(true);
+		String before = describe(pathway());
+		long snapshotSize = new UndoAction("Copy", (PathwayModel) pathway().clone(), -1).getMemorySize();
+
+		// below the line, which starts at the center
+		double x = dn1.getCenterX();
+		double y = dn1.getCenterY() + 150;
+		mouse(MouseEvent.MOUSE_DOWN, x, y);
+		mouse(MouseEvent.MOUSE_MOVE, x + 200, y);
+		mouse(MouseEvent.MOUSE_MOVE, x + 200, y + 100);
+		mouse(MouseEvent.MOUSE_UP, x + 200, y + 100);
+		assertFalse(before.equals(describe(pathway())));
+		assertEquals("Drag Object", undoManager.getTopMessage());
+		assertTrue(undoManager.getMemoryUse() < snapshotSize);
+
+		vPwy.undo();
+		assertEquals(before, describe(pathway()));
+		assertEquals(UndoManager.CANT_UNDO, undoManager.getTopMessage());
+	}
+
+	/**
+	 * A selection that is dragged as an image is moved when it is dropped, and
+	 * that move is undone as one geometry action.
+	 */
+	public void testDragPreviewUndo() {
+		PreferenceManager prefs = PreferenceManager.getCurrent();
+		int minElements = prefs.getInt(GlobalPreference.DRAG_PREVIEW_MIN_ELEMENTS);
+		prefs.setBoolean(GlobalPreference.ENABLE_DRAG_PREVIEW, true);
+		prefs.setInt(GlobalPreference.DRAG_PREVIEW_MIN_ELEMENTS, 2);
+		try {
+			vPwy.setEditMode(true);
+			vPwy.selectObject(vPwy.getPathwayElementView(label));
+			String before = describe(pathway());
+			long snapshotSize = new UndoAction("Copy", (PathwayModel) pathway().clone(), -1).getMemorySize();
+
+			// add the data node to the selection and drag both
+			double x = dn1.getCenterX();
+			double y = dn1.getCenterY() + 150;
+			mouse(MouseEvent.MOUSE_DOWN, x, y, MouseEvent.M_SHIFT);
+			mouse(MouseEvent.MOUSE_MOVE, x + 200, y, MouseEvent.M_SHIFT);
+			assertTrue(vPwy.isDragPreview());
+			assertEquals(before, describe(pathway())); // nothing moved yet
+			mouse(MouseEvent.MOUSE_MOVE, x + 400, y, MouseEvent.M_SHIFT);
+			mouse(MouseEvent.MOUSE_UP, x + 400, y, MouseEvent.M_SHIFT);
+			assertFalse(vPwy.isDragPreview());
+			assertEquals(x + 400, dn1.getCenterX(), 2);
+			assertEquals("Drag Object", undoManager.getTopMessage());
+			assertTrue(undoManager.getMemoryUse() < snapshotSize);
+
+			vPwy.undo();
+			assertEquals(before, describe(pathway()));
+		} finally {
+			prefs.setInt(GlobalPreference.DRAG_PREVIEW_MIN_ELEMENTS, minElements);
+		}
+	}
+
+	/**
+	 * A click without moving the mouse records nothing.
+	 */
+	public void testClickRecordsNothing() {
+		vPwy.setEditMode(true);
+		mouse(MouseEvent.MOUSE_DOWN, dn1.getCenterX(), dn1.getCenterY() + 150);
+		mouse(MouseEvent.MOUSE_UP, dn1.getCenterX(), dn1.getCenterY() + 150);
+		assertEquals(UndoManager.CANT_UNDO, undoManager.getTopMessage());
+	}
+
+	/**
+	 * Geometry actions also restore the rotation of shapes and the links of line
+	 * points, which change when a shape is rotated or a line end is dragged onto
+	 * another element.
+	 */
+	public void testRotateAndRelinkUndo() {
+		undoManager.newGeometryAction("Resize", Arrays.asList(label, line));
+		label.setRotation(1);
+		line.getEndLinePoint().linkTo(label, 0, 0);
+		line.getEndLinePoint().setX(label.getCenterX());
+		line.getEndLinePoint().setY(label.getCenterY());
+
+		vPwy.undo();
+		Label l = findLabel();
+		assertEquals(0.0, l.getRotation(), 0);
+		LineElement li = (LineElement) pathway().getPathwayObject(line.getElementId());
+		assertNotNull(li.getEndElementRef());
+		assertEquals(dn2.getElementId(), ((PathwayObject) li.getEndElementRef()).getElementId());
+		assertEquals(dn2.getCenterX(), li.getEndLinePoint().getX(), 0);
+	}
+
+	public void testAddUndo() {
+		String before = describe(pathway());
+		undoManager.newAddAction("New object");
+		DataNode dn3 = addDataNode(pathway(), 3000, 4000);
+		String id = dn3.getElementId();
+		assertNotNull(pathway().getPathwayObject(id));
+
+		vPwy.undo();
+		assertNull(pathway().getPathwayObject(id));
+		assertEquals(before, describe(pathway()));
+	}
+
+	/**
+	 * Redo adds a copy of the new element back, the redo of the move that
+	 * followed must still find it, even if the copy got another element id.
+	 */
+	public void testRedoMoveOfReAddedElement() {
+		undoManager.newAddAction("New object");
+		DataNode dn3 = addDataNode(pathway(), 3000, 4000);
+		vPwy.selectObject(vPwy.getPathwayElementView(dn3));
+		vPwy.moveByKey(RIGHT, 10);
+		String moved = describe(pathway());
+
+		vPwy.undo();
+		vPwy.undo();
+		vPwy.redo();
+		vPwy.redo();
+		assertEquals(moved, describe(pathway()));
+
+		// and back again
+		vPwy.undo();
+		vPwy.undo();
+		vPwy.redo();
+		vPwy.redo();
+		assertEquals(moved, describe(pathway()));
+	}
+
+	/**
+	 * Undoing a snapshot replaces all elements by copies, the older actions must
+	 * find the copies by their element id.
+	 */
+	public void testAddUndoAfterReplace() {
+		String before = describe(pathway());
+		undoManager.newAddAction("New object");
+		DataNode dn3 = addDataNode(pathway(), 3000, 4000);
+		String id = dn3.getElementId();
+
+		editMany();
+		PathwayModel edited = pathway();
+		vPwy.undo();
+		assertNotSame(edited, pathway());
+		assertNotNull(pathway().getPathwayObject(id));
+		assertNotSame(dn3, pathway().getPathwayObject(id));
+
+		vPwy.undo();
+		assertNull(pathway().getPathwayObject(id));
+		assertEquals(before, describe(pathway()));
+	}
+
+	public void testMoveUndoAfterReplace() {
+		String before = describe(pathway());
+		vPwy.selectObject(vPwy.getPathwayElementView(dn2));
+		vPwy.moveByKey(RIGHT, 10);
+
+		editMany();
+		PathwayModel edited = pathway();
+		vPwy.undo();
+		assertNotSame(edited, pathway());
+
+		vPwy.undo();
+		assertEquals(before, describe(pathway()));
+	}
+
+	/**
+	 * Records a copy of the pathway and changes so much of it that undo replaces
+	 * the whole pathway, see {@link InPlaceUndo#MAX_CHANGED_FRACTION}.
+	 */
+	private void editMany() {
+		undoManager.newAction("Edit");
+		for (PathwayObject o : pathway().getPathwayObjects()) {
+			if (o instanceof DataNode) {
+				((DataNode) o).setTextLabel("Changed");
+			} else if (o instanceof Label) {
+				((Label) o).setTextLabel("Changed");
+			} else if (o instanceof LineElement) {
+				((LineElement) o).setLineWidth(3);
+			}
+		}
+	}
+
+	public void testCoalesceRepeatedMoves() {
+		String before = describe(pathway());
+		vPwy.selectObject(vPwy.getPathwayElementView(dn1));
+		for (int i = 0; i < 5; i++) {
+			vPwy.moveByKey(RIGHT, 10);
+		}
+		// a single undo takes back all moves
+		vPwy.undo();
+		assertEquals(before, describe(pathway()));
+		assertEquals(UndoManager.CANT_UNDO, undoManager.getTopMessage());
+	}
+
+	/**
+	 * The elements of a merged edit are not collected again.
+	 */
+	public void testCoalesceCollectsOnce() {
+		final int[] collected = { 0 };
+		List<DataNode> elements = Arrays.asList(dn1);
+		for (int i = 0; i < 5; i++) {
+			undoManager.newCoalescingGeometryAction("Move object", elements, () -> {
+				collected[0]++;
+				return elements;
+			});
+			dn1.setLeft(dn1.getLeft() + 10);
+		}
+		assertEquals(1, collected[0]);
+	}
+
+	public void testCoalesceBrokenByOtherEdit() {
+		String before = describe(pathway());
+		vPwy.selectObject(vPwy.getPathwayElementView(dn1));
+		vPwy.moveByKey(RIGHT, 10);
+		String moved = describe(pathway());
+
+		undoManager.newAction("Edit");
+		label.setTextLabel("Changed");
+		String edited = describe(pathway());
+
+		vPwy.moveByKey(RIGHT, 10);
+		vPwy.undo();
+		assertEquals(edited, describe(pathway()));
+		vPwy.undo();
+		assertEquals(moved, describe(pathway()));
+		vPwy.undo();
+		assertEquals(before, describe(pathway()));
+	}
+
+	public void testCoalesceBrokenBySelection() {
+		vPwy.selectObject(vPwy.getPathwayElementView(dn1));
+		vPwy.moveByKey(RIGHT, 10);
+		String moved = describe(pathway());
+
+		// the same kind of edit, but of another element
+		vPwy.selectObject(vPwy.getPathwayElementView(dn2));
+		vPwy.moveByKey(RIGHT, 10);
+		vPwy.undo();
+		assertEquals(moved, describe(pathway()));
+	}
+
+	public void testCoalesceBrokenByUndo() {
+		String before = describe(pathway());
+		vPwy.selectObject(vPwy.getPathwayElementView(dn1));
+		vPwy.moveByKey(RIGHT, 10);
+		vPwy.undo();
+		assertEquals(before, describe(pathway()));
+
+		// moves after the undo are a new action
+		vPwy.moveByKey(RIGHT, 10);
+		vPwy.moveByKey(RIGHT, 10);
+		String moved = describe(pathway());
+		vPwy.undo();
+		assertEquals(before, describe(pathway()));
+		assertEquals(UndoManager.CANT_UNDO, undoManager.getTopMessage());
+		vPwy.redo();
+		assertEquals(moved, describe(pathway()));
+	}
+
+	public void testRedoClearedByNewEdit() {
+		vPwy.selectObject(vPwy.getPathwayElementView(dn1));
+		vPwy.moveByKey(RIGHT, 10);
+		vPwy.undo();
+		assertFalse(UndoManager.CANT_REDO.equals(undoManager.getRedoMessage()));
+
+		vPwy.selectObject(vPwy.getPathwayElementView(dn2));
+		vPwy.moveByKey(RIGHT, 10);
+		assertEquals(UndoManager.CANT_REDO, undoManager.getRedoMessage());
+	}
+
+	/**
+	 * Undo and redo through a move, an addition and a snapshot, and back.
+	 */
+	public void testUndoRedoRoundTrip() {
+		String s0 = describe(pathway());
+		vPwy.selectObject(vPwy.getPathwayElementView(dn1));
+		vPwy.moveByKey(RIGHT, 10);
+		String s1 = describe(pathway());
+		undoManager.newAddAction("New object");
+		addDataNode(pathway(), 3000, 4000);
+		String s2 = describe(pathway());
+		undoManager.newAction("Edit");
+		label.setTextLabel("Changed");
+		String s3 = describe(pathway());
+
+		vPwy.undo();
+		assertEquals(s2, describe(pathway()));
+		vPwy.undo();
+		assertEquals(s1, describe(pathway()));
+		vPwy.undo();
+		assertEquals(s0, describe(pathway()));
+		assertEquals(UndoManager.CANT_UNDO, undoManager.getTopMessage());
+
+		vPwy.redo();
+		assertEquals(s1, describe(pathway()));
+		vPwy.redo();
+		assertEquals(s2, describe(pathway()));
+		vPwy.redo();
+		assertEquals(s3, describe(pathway()));
+		assertEquals(UndoManager.CANT_REDO, undoManager.getRedoMessage());
+
+		vPwy.undo();
+		assertEquals(s2, describe(pathway()));
+		vPwy.undo();
+		assertEquals(s1, describe(pathway()));
+		vPwy.undo();
+		assertEquals(s0, describe(pathway()));
+	}
+
+	public void testCompressedSnapshot() {
+		String before = describe(pathway());
+		UndoAction a = new UndoAction("Edit", (PathwayModel) pathway().clone(), undoManager.getChangeMark());
+		long live = a.getMemorySize();
+		a.compress();
+		assertTrue(a.getMemorySize() < live);
+		undoManager.newAction(a);
+
+		dn1.setTextLabel("Changed");
+		label.setTextLabel("Changed");
+		vPwy.undo();
+		assertEquals(before, describe(pathway()));
+	}
+
+	public void testMemoryBudget() {
+		for (int i = 0; i < 3; i++) {
+			undoManager.newAction("Edit " + i);
+			label.setTextLabel("Label " + i);
+		}
+		assertTrue(undoManager.getMemoryUse() <= undoManager.getMemoryBudget());
+
+		// the most recent action is kept, even if it doesn't fit
+		undoManager.setMemoryBudget(1);
+		assertEquals("Edit 2", undoManager.getTopMessage());
+		vPwy.undo();
+		assertEquals(UndoManager.CANT_UNDO, undoManager.getTopMessage());
+		assertEquals("Label 1", findLabel().getTextLabel());
+	}
+
+	/**
+	 * Compressed copies count with their real size. A budget that only fits the
+	 * history once the older copies are compressed keeps all of it.
+	 */
+	public void testMemoryBudgetOfCompressedCopies() {
+		long liveSize = new UndoAction("Copy", (PathwayModel) pathway().clone(), -1).getMemorySize();
+		undoManager.setMemoryBudget((UndoManager.LIVE_SNAPSHOTS + 1) * liveSize);
+		int count = UndoManager.LIVE_SNAPSHOTS + 4;
+		for (int i = 0; i < count; i++) {
+			undoManager.newAction("Edit " + i);
+			label.setTextLabel("Label " + i);
+		}
+		assertTrue(undoManager.getMemoryUse() <= undoManager.getMemoryBudget());
+		for (int i = count - 1; i >= 0; i--) {
+			assertEquals("Edit " + i, undoManager.getTopMessage());
+			vPwy.undo();
+		}
+		assertEquals("Label", findLabel().getTextLabel());
+	}
+
+	/** the label, which undo may have replaced by a copy */
+	private Label findLabel() {
+		for (PathwayObject o : pathway().getPathwayObjects()) {
+			if (o instanceof Label)
+				return (Label) o;
+		}
+		return null;
+	}
+
+	private Label addLabel(double x, double y) {
+		Label l = new Label("Extra");
+		l.setCenterX(x);
+		l.setCenterY(y);
+		l.setWidth(600);
+		l.setHeight(300);
+		pathway().add(l);
+		return l;
+	}
+
+	/** adds unrelated labels, so that a few changes are a small part of the pathway */
+	private void addLabels(int count) {
+		for (int i = 0; i < count; i++) {
+			addLabel(8000 + i * 1000, 8000);
+		}
+	}
+
+	/**
+	 * A change of an element is undone without replacing the pathway, with the
+	 * same result as replacing it. The element keeps its view object and
+	 * selection.
+	 */
+	public void testInPlaceUndo() {
+		PathwayModel expected = (PathwayModel) pathway().clone();
+		PathwayModel current = pathway();
+		VPathwayObject vLabel = vPwy.getPathwayElementView(label);
+		vPwy.selectObject(vLabel);
+		undoManager.newAction("Edit");
+		label.setTextLabel("Changed");
+		label.setCenterX(2000);
+
+		vPwy.undo();
+		assertSame(current, pathway());
+		assertEquals(describe(expected), describe(pathway()));
+		assertEquals("Label", findLabel().getTextLabel());
+		assertSame(label, findLabel());
+		assertSame(vLabel, vPwy.getPathwayElementView(label));
+		assertTrue(vLabel.isSelected());
+	}
+
+	/**
+	 * Elements that are linked to other elements are restored in place too, and
+	 * keep their view objects and selection.
+	 */
+	public void testInPlaceUndoOfLinkedElements() {
+		addLabels(12);
+		PathwayModel expected = (PathwayModel) pathway().clone();
+		PathwayModel current = pathway();
+		VPathwayObject vDn1 = vPwy.getPathwayElementView(dn1);
+		VPathwayObject vLine = vPwy.getPathwayElementView(line);
+		vPwy.selectObject(vDn1);
+		undoManager.newAction("Edit");
+		dn1.setTextLabel("Changed"); // linked to the line
+		line.getEndLinePoint().linkTo(label, 0, 0);
+		line.getEndLinePoint().setX(label.getCenterX());
+		line.getEndLinePoint().setY(label.getCenterY());
+
+		vPwy.undo();
+		assertSame(current, pathway());
+		assertEquals(describe(expected), describe(pathway()));
+		assertEquals("Gene", dn1.getTextLabel());
+		assertSame(dn2, line.getEndElementRef());
+		assertSame(vDn1, vPwy.getPathwayElementView(dn1));
+		assertSame(vLine, vPwy.getPathwayElementView(line));
+		assertTrue(vDn1.isSelected());
+	}
+
+	/**
+	 * Undoing a deletion adds a copy back, with the ends of a line linked to the
+	 * elements they were linked to.
+	 */
+	public void testInPlaceUndoOfDeletedLine() {
+		addLabels(12);
+		PathwayModel expected = (PathwayModel) pathway().clone();
+		PathwayModel current = pathway();
+		String id = line.getElementId();
+		undoManager.newAction("Delete");
+		pathway().remove(line);
+		assertNull(pathway().getPathwayObject(id));
+
+		vPwy.undo();
+		assertSame(current, pathway());
+		assertEquals(describe(expected), describe(pathway()));
+		LineElement restored = (LineElement) undoManager.findElement(pathway(), id);
+		assertNotNull(restored);
+		assertSame(dn1, restored.getStartElementRef());
+		assertSame(dn2, restored.getEndElementRef());
+	}
+
+	/**
+	 * Grouping changes more than the properties of elements, the whole pathway
+	 * is replaced instead.
+	 */
+	public void testInPlaceFallbackForGroups() {
+		PathwayModel expected = (PathwayModel) pathway().clone();
+		PathwayModel current = pathway();
+		vPwy.clearSelection();
+		vPwy.getPathwayElementView(label).select();
+		vPwy.getPathwayElementView(dn2).select();
+		undoManager.newAction("Group");
+		assertNotNull(vPwy.toggleGroup(vPwy.getSelectedGraphics()));
+
+		vPwy.undo();
+		assertNotSame(current, pathway());
+		assertEquals(describe(expected), describe(pathway()));
+	}
+
+	/**
+	 * When a large part of the pathway changed, the whole pathway is replaced.
+	 */
+	public void testInPlaceFallbackForManyChanges() {
+		Label[] extra = new Label[4];
+		for (int i = 0; i < extra.length; i++) {
+			extra[i] = addLabel(3000 + i * 1000, 6000);
+		}
+		PathwayModel current = pathway();
+		int count = current.getPathwayObjects().size();
+
+		// a single change is undone in place
+		undoManager.newAction("Edit");
+		extra[0].setTextLabel("Changed");
+		vPwy.undo();
+		assertSame(current, pathway());
+
+		// more than the limit is not
+		String before = describe(pathway());
+		undoManager.newAction("Edit");
+		int changes = (int) (InPlaceUndo.MAX_CHANGED_FRACTION * count) + 1;
+		assertTrue(changes <= extra.length);
+		for (PathwayObject o : pathway().getPathwayObjects()) {
+			if (o instanceof Label && changes > 0) {
+				((Label) o).setTextLabel("Changed");
+				changes--;
+			}
+		}
+		vPwy.undo();
+		assertNotSame(current, pathway());
+		assertEquals(before, describe(pathway()));
+	}
+
+	/** adds a line from the given element to the given element or anchor */
+	private Interaction addLink(LinkableTo from, LinkableTo to, double x1, double y1, double x2, double y2) {
+		Interaction l = new Interaction();
+		l.setStartLinePointX(x1);
+		l.setStartLinePointY(y1);
+		l.setEndLinePointX(x2);
+		l.setEndLinePointY(y2);
+		pathway().add(l);
+		if (from != null)
+			l.getStartLinePoint().linkTo(from, 0, 0);
+		if (to != null)
+			l.getEndLinePoint().linkTo(to, 0, 0);
+		return l;
+	}
+
+	/**
+	 * Moving a group must record the line linked to a group member, and the line
+	 * linked to an anchor of that line, so that undo restores both.
+	 */
+	public void testDependentLines() {
+		DataNode dn3 = addDataNode(pathway(), 1500, 3000);
+		DataNode dn4 = addDataNode(pathway(), 3000, 6000);
+		Anchor anchor = line.addAnchor(0.5, AnchorShapeType.SQUARE);
+		Interaction line2 = addLink(dn4, anchor, 3000, 6000, 3000, 1500);
+		Interaction unrelated = addLink(null, null, 8000, 8000, 9000, 9000);
+
+		vPwy.clearSelection();
+		vPwy.getPathwayElementView(dn1).select();
+		vPwy.getPathwayElementView(dn3).select();
+		VGroup vGroup = vPwy.toggleGroup(vPwy.getSelectedGraphics());
+		assertNotNull(vGroup);
+		Group group = vGroup.getPathwayObject();
+
+		Set<LineElement> lines = vPwy.getDependentLines(Arrays.asList(group));
+		assertTrue(lines.contains(line));
+		assertTrue(lines.contains(line2));
+		assertFalse(lines.contains(unrelated));
+
+		String before = describe(pathway());
+		vPwy.selectObject(vGroup);
+		vPwy.moveByKey(RIGHT, 50);
+		assertFalse(before.equals(describe(pathway())));
+		vPwy.undo();
+		assertEquals(before, describe(pathway()));
+	}
+
+	/**
+	 * The linked points follow the links of the model, and only include the
+	 * points of lines that are shown.
+	 */
+	public void testLinkedPoints() {
+		DataNode dn4 = addDataNode(pathway(), 3000, 6000);
+		Anchor anchor = line.addAnchor(0.5, AnchorShapeType.SQUARE);
+		Interaction line2 = addLink(dn4, anchor, 3000, 6000, 3000, 1500);
+		VLineElement vLine2 = (VLineElement) vPwy.getPathwayElementView(line2);
+		VLinePoint end = vLine2.getEnd();
+		assertTrue(vPwy.getLinkedPoints(anchor).contains(end));
+		assertTrue(vPwy.getLinkedPoints(dn4).contains(vLine2.getStart()));
+
+		// link the end to another element
+		line2.getEndLinePoint().linkTo(dn2, 0, 0);
+		assertFalse(vPwy.getLinkedPoints(anchor).contains(end));
+		assertTrue(vPwy.getLinkedPoints(dn2).contains(end));
+
+		// unlink the start
+		line2.getStartLinePoint().unlink();
+		assertTrue(vPwy.getLinkedPoints(dn4).isEmpty());
+
+		// the points of a line without a view are left out
+		VLineElement vLine = (VLineElement) vPwy.getPathwayElementView(line);
+		assertTrue(vPwy.getLinkedPoints(dn1).contains(vLine.getStart()));
+		vPwy.removeDrawingObjects(Arrays.asList(new VElement[] { vLine }));
+		assertTrue(vPwy.getLinkedPoints(dn1).isEmpty());
+		assertFalse(vPwy.getLinkedPoints(dn2).contains(vLine.getEnd()));
+		assertTrue(vPwy.getLinkedPoints(dn2).contains(end));
+	}
+}
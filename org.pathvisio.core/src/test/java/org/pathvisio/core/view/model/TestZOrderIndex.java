@@ -0,0 +1,130 @@
+/*******************************************************************************
+ * PathVisio, a tool for data visualization and analysis using biological pathways
+ * Copyright 2006-2021 BiGCaT Bioinformatics, WikiPathways
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package org.pathvisio.core.view.model;
+
+import junit.framework.TestCase;
+
+import org.pathvisio.model.Drawable;
+
+public class TestZOrderIndex extends TestCase {
+
+	/** an element with a z-order that can be changed by the test */
+	static class Element implements VDrawable {
+		int z;
+
+		Element(int z) {
+			this.z = z;
+		}
+
+		public Drawable getPathwayObject() {
+			return null;
+		}
+
+		public int getZOrder() {
+			return z;
+		}
+	}
+
+	public void testAddRemove() {
+		ZOrderIndex index = new ZOrderIndex();
+		Element a = new Element(10);
+		Element b = new Element(20);
+		index.add(a);
+		index.add(b);
+		index.add(a); // adding twice has no effect
+		assertEquals(2, index.size());
+		assertEquals(20, index.getMax());
+
+		index.remove(b);
+		assertEquals(1, index.size());
+		assertEquals(10, index.getMax());
+		index.remove(b); // removing twice has no effect
+		assertEquals(1, index.size());
+
+		index.clear();
+		assertEquals(0, index.size());
+		assertEquals(0, index.getMax());
+	}
+
+	public void testUpdate() {
+		ZOrderIndex index = new ZOrderIndex();
+		Element a = new Element(10);
+		Element b = new Element(20);
+		index.add(a);
+		index.add(b);
+
+		a.z = 30;
+		index.update(a);
+		assertEquals(30, index.getMax());
+
+		// back and forth before anything else looks at the element
+		b.z = 40;
+		index.update(b);
+		b.z = 20;
+		index.update(b);
+		assertEquals(30, index.getMax());
+
+		// the index removes the z-order it stored, not the current one
+		a.z = 5;
+		index.remove(a);
+		assertEquals(20, index.getMax());
+		assertFalse(index.isUsedByOther(30, b));
+
+		// elements that aren't in the index are ignored
+		Element c = new Element(100);
+		index.update(c);
+		assertEquals(1, index.size());
+		assertEquals(20, index.getMax());
+	}
+
+	public void testClamping() {
+		ZOrderIndex index = new ZOrderIndex();
+		assertEquals(0, index.getMax());
+		assertEquals(0, index.getMin());
+
+		Element a = new Element(10);
+		index.add(a);
+		assertEquals(10, index.getMax());
+		assertEquals(0, index.getMin()); // never above 0
+
+		a.z = -10;
+		index.update(a);
+		assertEquals(0, index.getMax()); // never below 0
+		assertEquals(-10, index.getMin());
+	}
+
+	public void testIsUsedByOther() {
+		ZOrderIndex index = new ZOrderIndex();
+		Element a = new Element(10);
+		Element b = new Element(10);
+		Element c = new Element(10); // not in the index
+		index.add(a);
+		assertFalse(index.isUsedByOther(10, a));
+		assertTrue(index.isUsedByOther(10, c));
+		assertFalse(index.isUsedByOther(11, a));
+
+		index.add(b);
+		assertTrue(index.isUsedByOther(10, a));
+		assertTrue(index.isUsedByOther(10, b));
+
+		b.z = 11;
+		index.update(b);
+		assertFalse(index.isUsedByOther(10, a));
+		assertTrue(index.isUsedByOther(11, a));
+		assertFalse(index.isUsedByOther(11, b));
+	}
+}
@@ -137,6 +137,13 @@ public class DataPane extends JEditorPane
 
 	public void selectionEvent(SelectionEvent e) {
 		switch (e.type) {
+		case SelectionEvent.SELECTION_CHANGED:
+			if (e.added.isEmpty()) {
+				if (e.selection.isEmpty())
+					setInput(null);
+				break;
+			}
+			// something was added, same as OBJECT_ADDED
 		case SelectionEvent.OBJECT_ADDED:
 			// Just take the first DataNode in the selection
 			Iterator<VElement> it = e.selection.iterator();
@@ -80,6 +80,7 @@ public class MainPanelStandalone extends MainPanel {
 
 		JMenu editMenu = new JMenu("Edit");
 		addToMenu(actions.undoAction, editMenu);
+		addToMenu(actions.redoAction, editMenu);
 		addToMenu(actions.copyAction, editMenu);
 		addToMenu(actions.pasteAction, editMenu);
 		addToMenu(standaloneActions.searchAction, editMenu);
@@ -110,6 +110,7 @@ public class CommonActions implements ApplicationEventListener {
 	public final Action pasteAction;
 
 	public final ViewActions.UndoAction undoAction;
+	public final ViewActions.RedoAction redoAction;
 	public final Action exitAction;
 
 	public final Action[] zoomActions;
@@ -373,6 +374,7 @@ public class CommonActions implements ApplicationEventListener {
 		standaloneSaveAsAction = new SaveAction(se, false, true);
 
 		undoAction = new ViewActions.UndoAction(se.getEngine());
+		redoAction = new ViewActions.RedoAction(se.getEngine());
 		copyAction = new ViewActions.CopyAction(se.getEngine());
 		pasteAction = new ViewActions.PasteAction(se.getEngine());
 
@@ -140,6 +140,7 @@ public class MainPanel extends JPanel implements VPathwayModelListener, Applicat
 
 		JMenu editMenu = new JMenu("Edit");
 		addToMenu(actions.undoAction, editMenu);
+		addToMenu(actions.redoAction, editMenu);
 		addToMenu(actions.copyAction, editMenu);
 		addToMenu(actions.pasteAction, editMenu);
 		editMenu.addSeparator();
@@ -331,6 +332,7 @@ public class MainPanel extends JPanel implements VPathwayModelListener, Applicat
 		addToToolbar(actions.pasteAction);
 		tb.addSeparator();
 		addToToolbar(actions.undoAction);
+		addToToolbar(actions.redoAction);
 		tb.addSeparator();
 
 		// zoom drop-down
@@ -39,6 +39,7 @@ import org.pathvisio.core.view.model.VPathwayModel;
 import org.pathvisio.core.view.model.VPathwayObject;
 import org.pathvisio.core.view.model.SelectionBox.SelectionEvent;
 import org.pathvisio.core.view.model.SelectionBox.SelectionListener;
+import org.pathvisio.core.view.model.VElement;
 import org.pathvisio.core.view.model.VPathwayElement;
 import org.pathvisio.gui.SwingEngine;
 
@@ -103,6 +104,36 @@ public class PathwayTableModel extends AbstractTableModel
 		}
 	}
 
+	/**
+	 * Removes and adds several elements, refreshing the table only once.
+	 */
+	private void changeInput(Collection<VElement> removed, Collection<VElement> added) {
+		stopEditing();
+		for (VElement o : removed) {
+			if (o instanceof VPathwayElement) {
+				PathwayElement pwElm = ((VPathwayElement) o).getPathwayObject();
+				if (input.remove(pwElm)) {
+					updatePropertyCounts(pwElm, true);
+					pwElm.removeListener(this);
+				}
+			}
+		}
+		for (VElement o : added) {
+			if (o instanceof VPathwayElement) {
+				PathwayElement pwElm = ((VPathwayElement) o).getPathwayObject();
+				if (input.add(pwElm)) {
+					updatePropertyCounts(pwElm, false);
+					pwElm.addListener(this);
+				}
+			}
+		}
+		if (input.size() > 0) {
+			refresh(true);
+		} else {
+			reset();
+		}
+	}
+
 	private void stopEditing() {
 		if (table != null && table.getCellEditor() != null) {
 			table.getCellEditor().stopCellEditing();
@@ -230,6 +261,9 @@ public class PathwayTableModel extends AbstractTableModel
 			// System.err.println("CLEARED");
 			reset();
 			break;
+		case SelectionEvent.SELECTION_CHANGED:
+			changeInput(e.removed, e.added);
+			break;
 		}
 	}
 
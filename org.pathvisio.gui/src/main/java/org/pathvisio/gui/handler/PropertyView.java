@@ -158,8 +158,8 @@ public class PropertyView implements Comparable<PropertyView> {
 		if(value != null) {
 			if (vPathway != null)
 			{
-				vPathway.getUndoManager().newAction (
-					"Change " + type + " property");
+				vPathway.getUndoManager().newCoalescingAction (
+					"Change " + type + " property", elements);
 			}
 			for (PathwayElement pe : elements.toArray(new PathwayElement[0])) {
 				pe.setPropertyEx(type, value);
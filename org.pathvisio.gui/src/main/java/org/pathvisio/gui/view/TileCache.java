@@ -0,0 +1,186 @@
+/*******************************************************************************
+ * PathVisio, a tool for data visualization and analysis using biological pathways
+ * Copyright 2006-2021 BiGCaT Bioinformatics, WikiPathways
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package org.pathvisio.gui.view;
+
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.Rectangle;
+import java.awt.Transparency;
+import java.awt.image.BufferedImage;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.pathvisio.core.view.model.VPathwayModel;
+
+/**
+ * Cache of rendered tiles of a {@link VPathwayModel}, so that scrolling and
+ * re-exposing the canvas only copies images instead of drawing all the elements
+ * again.
+ * <p>
+ * Tiles only hold the static layer (see {@link VPathwayModel#drawStatic}), the
+ * overlay with handles and dragged elements is painted on top of them.
+ * Tiles are rendered at the current zoom factor, and all tiles are dropped when
+ * the zoom factor changes. Tiles touched by a dirty rectangle are invalidated
+ * and rendered again on the next paint. When the cache grows beyond its memory
+ * budget, the least recently used tiles are evicted.
+ *
+ * @author unknown
+ */
+public class TileCache {
+	public static final int TILE_SIZE = 256;
+
+	/** approximate memory use of a single tile (4 bytes per pixel) */
+	private static final long TILE_BYTES = 4L * TILE_SIZE * TILE_SIZE;
+
+	private long memoryBudget;
+	private double zoomFactor = Double.NaN;
+
+	// access ordered, so that iteration starts with the least recently used tile
+	private final Map<Long, BufferedImage> tiles = new LinkedHashMap<Long, BufferedImage>(16, 0.75f, true) {
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Long, BufferedImage> eldest) {
+			return size() * TILE_BYTES > memoryBudget;
+		}
+	};
+
+	/**
+	 * @param memoryBudget the maximum amount of memory used for tiles, in bytes.
+	 */
+	public TileCache(long memoryBudget) {
+		setMemoryBudget(memoryBudget);
+	}
+
+	/**
+	 * Sets the maximum amount of memory used for tiles, in bytes. Always allows
+	 * for at least one tile.
+	 */
+	public void setMemoryBudget(long memoryBudget) {
+		this.memoryBudget = Math.max(memoryBudget, TILE_BYTES);
+		// evict the least recently used tiles until we are within budget again
+		Iterator<Long> i = tiles.keySet().iterator();
+		while (tiles.size() * TILE_BYTES > this.memoryBudget && i.hasNext()) {
+			i.next();
+			i.remove();
+		}
+	}
+
+	public long getMemoryBudget() {
+		return memoryBudget;
+	}
+
+	/**
+	 * Returns the number of tiles currently in the cache.
+	 */
+	public int size() {
+		return tiles.size();
+	}
+
+	/**
+	 * Drops all tiles, e.g. after a change that affects the whole pathway.
+	 */
+	public void clear() {
+		tiles.clear();
+	}
+
+	/**
+	 * Drops the tiles that overlap the given area, so they will be rendered again
+	 * on the next paint.
+	 *
+	 * @param r the changed area, in view coordinates.
+	 */
+	public void invalidate(Rectangle r) {
+		if (tiles.isEmpty() || r.isEmpty())
+			return;
+		// one pixel extra on each side, to include anti-aliasing at the edges
+		int col1 = Math.floorDiv(r.x - 1, TILE_SIZE);
+		int row1 = Math.floorDiv(r.y - 1, TILE_SIZE);
+		int col2 = Math.floorDiv(r.x + r.width + 1, TILE_SIZE);
+		int row2 = Math.floorDiv(r.y + r.height + 1, TILE_SIZE);
+
+		if ((long) (col2 - col1 + 1) * (row2 - row1 + 1) > tiles.size()) {
+			// large area, cheaper to check the cached tiles
+			for (Iterator<Long> i = tiles.keySet().iterator(); i.hasNext();) {
+				long key = i.next();
+				int col = (int) (key >> 32);
+				int row = (int) key;
+				if (col >= col1 && col <= col2 && row >= row1 && row <= row2) {
+					i.remove();
+				}
+			}
+		} else {
+			for (int row = row1; row <= row2; row++) {
+				for (int col = col1; col <= col2; col++) {
+					tiles.remove(key(col, row));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Paints the area within the clip of the given graphics, rendering the tiles
+	 * that are not cached yet.
+	 *
+	 * @param g        the graphics to paint on, in view coordinates.
+	 * @param vPathway the pathway to render.
+	 * @param area     the area to paint, in view coordinates.
+	 */
+	public void paint(Graphics2D g, VPathwayModel vPathway, Rectangle area) {
+		if (vPathway.getZoomFactor() != zoomFactor) {
+			clear();
+			zoomFactor = vPathway.getZoomFactor();
+		}
+		int col1 = Math.floorDiv(area.x, TILE_SIZE);
+		int row1 = Math.floorDiv(area.y, TILE_SIZE);
+		int col2 = Math.floorDiv(area.x + area.width - 1, TILE_SIZE);
+		int row2 = Math.floorDiv(area.y + area.height - 1, TILE_SIZE);
+
+		for (int row = row1; row <= row2; row++) {
+			for (int col = col1; col <= col2; col++) {
+				Long key = key(col, row);
+				BufferedImage tile = tiles.get(key);
+				if (tile == null) {
+					tile = renderTile(g.getDeviceConfiguration(), vPathway, col, row);
+					tiles.put(key, tile);
+				}
+				g.drawImage(tile, col * TILE_SIZE, row * TILE_SIZE, null);
+			}
+		}
+	}
+
+	private BufferedImage renderTile(GraphicsConfiguration gc, VPathwayModel vPathway, int col, int row) {
+		BufferedImage tile;
+		if (gc != null) {
+			tile = gc.createCompatibleImage(TILE_SIZE, TILE_SIZE, Transparency.OPAQUE);
+		} else {
+			tile = new BufferedImage(TILE_SIZE, TILE_SIZE, BufferedImage.TYPE_INT_RGB);
+		}
+		Graphics2D g2d = tile.createGraphics();
+		try {
+			g2d.translate(-col * TILE_SIZE, -row * TILE_SIZE);
+			g2d.setClip(col * TILE_SIZE, row * TILE_SIZE, TILE_SIZE, TILE_SIZE);
+			vPathway.drawStatic(g2d);
+		} finally {
+			g2d.dispose();
+		}
+		return tile;
+	}
+
+	private static long key(int col, int row) {
+		return ((long) col << 32) | (row & 0xffffffffL);
+	}
+}
@@ -30,6 +30,7 @@ import java.awt.Graphics2D;
 import java.awt.Point;
 import java.awt.Rectangle;
 import java.awt.Toolkit;
+import java.awt.geom.AffineTransform;
 import java.awt.datatransfer.Clipboard;
 import java.awt.event.KeyEvent;
 import java.awt.event.KeyListener;
@@ -84,6 +85,8 @@ public class VPathwayModelSwing extends JPanel implements VPathwayWrapper, Mouse
 
 	protected JScrollPane container;
 
+	private TileCache tileCache = null; // null if tile caching is disabled
+
 	public VPathwayModelSwing(JScrollPane parent) {
 		super();
 		if (parent == null)
@@ -99,9 +102,15 @@ public class VPathwayModelSwing extends JPanel implements VPathwayWrapper, Mouse
 		setTransferHandler(new PathwayModelImportHandler());
 
 		setDoubleBuffered(PreferenceManager.getCurrent().getBoolean(GlobalPreference.ENABLE_DOUBLE_BUFFERING));
+		if (PreferenceManager.getCurrent().getBoolean(GlobalPreference.ENABLE_TILE_CACHE)) {
+			long budget = PreferenceManager.getCurrent().getInt(GlobalPreference.TILE_CACHE_SIZE) * 1024L * 1024L;
+			tileCache = new TileCache(budget);
+		}
 	}
 
 	public void setChild(VPathwayModel c) {
+		if (tileCache != null)
+			tileCache.clear();
 		child = c;
 		child.addVPathwayListener(this);
 		child.addVElementMouseListener(this);
@@ -122,21 +131,54 @@ public class VPathwayModelSwing extends JPanel implements VPathwayWrapper, Mouse
 	 * Schedule redraw of the entire visible area
 	 */
 	public void redraw() {
+		if (tileCache != null)
+			tileCache.clear();
 		repaint();
 	}
 
 	/**
-	 * Draw immediately
+	 * Draw immediately. Uses the tile cache for the static layer when enabled, and
+	 * draws the overlay on top of it. The tile cache is not used when the graphics
+	 * is scaled (e.g. on a high resolution screen), in which case cached tiles
+	 * would look blurry.
 	 */
 	protected void paintComponent(Graphics g) {
-		if (child != null)
-			child.draw((Graphics2D) g);
+		if (child == null)
+			return;
+		Graphics2D g2d = (Graphics2D) g;
+		int transform = g2d.getTransform().getType();
+		if (tileCache != null && (transform & ~AffineTransform.TYPE_TRANSLATION) == 0) {
+			Rectangle area = g2d.getClipBounds();
+			if (area == null) {
+				area = getViewRect();
+			}
+			tileCache.paint(g2d, child, area);
+			child.drawOverlay(g2d);
+		} else {
+			child.draw(g2d);
+		}
+	}
+
+	/**
+	 * Returns the cache of rendered tiles, or null if tile caching is disabled.
+	 */
+	public TileCache getTileCache() {
+		return tileCache;
 	}
 
 	/**
 	 * Schedule redraw of a certain part of the pathway
 	 */
 	public void redraw(Rectangle r) {
+		if (tileCache != null)
+			tileCache.invalidate(r);
+		repaint(r);
+	}
+
+	/**
+	 * Schedule redraw of a part of the overlay, cached tiles remain valid
+	 */
+	public void redrawOverlay(Rectangle r) {
 		repaint(r);
 	}
 
@@ -472,6 +514,8 @@ public class VPathwayModelSwing extends JPanel implements VPathwayWrapper, Mouse
 		getInputMap(JComponent.WHEN_ANCESTOR_OF_FOCUSED_COMPONENT).clear();
 
 		child = null; // free VPathway for GC
+		if (tileCache != null)
+			tileCache.clear();
 		disposed = true;
 	}
 
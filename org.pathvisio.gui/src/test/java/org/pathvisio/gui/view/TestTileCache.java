@@ -0,0 +1,105 @@
+/*******************************************************************************
+ * PathVisio, a tool for data visualization and analysis using biological pathways
+ * Copyright 2006-2021 BiGCaT Bioinformatics, WikiPathways
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package org.pathvisio.gui.view;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+
+import javax.swing.JScrollPane;
+
+import junit.framework.TestCase;
+
+import org.pathvisio.core.preferences.GlobalPreference;
+import org.pathvisio.core.preferences.PreferenceManager;
+import org.pathvisio.core.view.model.VPathwayModel;
+import org.pathvisio.model.DataNode;
+import org.pathvisio.model.PathwayModel;
+import org.pathvisio.model.type.DataNodeType;
+
+/**
+ * Checks that the canvas repaints the tiles of an element that changed, and
+ * keeps the other tiles.
+ */
+public class TestTileCache extends TestCase {
+
+	private boolean tileCacheEnabled;
+	private VPathwayModelSwing swing;
+	private VPathwayModel vPwy;
+	private DataNode dn1, dn2;
+
+	public void setUp() {
+		PreferenceManager.init();
+		PreferenceManager prefs = PreferenceManager.getCurrent();
+		tileCacheEnabled = prefs.getBoolean(GlobalPreference.ENABLE_TILE_CACHE);
+		prefs.setBoolean(GlobalPreference.ENABLE_TILE_CACHE, true);
+
+		PathwayModel pwy = new PathwayModel();
+		dn1 = addDataNode(pwy, 128, 128);
+		dn2 = addDataNode(pwy, 700, 700);
+		swing = new VPathwayModelSwing(new JScrollPane());
+		vPwy = swing.createVPathway();
+		vPwy.fromModel(pwy);
+		vPwy.setPctZoom(100);
+	}
+
+	public void tearDown() {
+		vPwy.dispose();
+		PreferenceManager.getCurrent().setBoolean(GlobalPreference.ENABLE_TILE_CACHE, tileCacheEnabled);
+	}
+
+	private static DataNode addDataNode(PathwayModel pwy, double x, double y) {
+		DataNode dn = new DataNode("", DataNodeType.UNDEFINED);
+		dn.setCenterX(x);
+		dn.setCenterY(y);
+		dn.setWidth(80);
+		dn.setHeight(40);
+		dn.setFillColor(Color.WHITE);
+		pwy.add(dn);
+		return dn;
+	}
+
+	/** paints the canvas on an image, like Swing would */
+	private BufferedImage paint() {
+		BufferedImage image = new BufferedImage(1024, 1024, BufferedImage.TYPE_INT_RGB);
+		Graphics2D g2d = image.createGraphics();
+		g2d.setClip(0, 0, 1024, 1024);
+		swing.paintComponent(g2d);
+		g2d.dispose();
+		return image;
+	}
+
+	public void testChangedElementRepainted() {
+		TileCache cache = swing.getTileCache();
+		assertNotNull(cache);
+		BufferedImage before = paint();
+		int tiles = cache.size();
+		assertEquals(16, tiles);
+		assertEquals(Color.WHITE.getRGB(), before.getRGB(128, 128));
+
+		// the change reaches the canvas through the repaint scheduler
+		dn1.setFillColor(Color.RED);
+		vPwy.getRepaintScheduler().flush();
+		assertTrue(cache.size() < tiles);
+		assertTrue(cache.size() >= tiles - 4); // only the tiles around dn1
+
+		BufferedImage after = paint();
+		assertEquals(Color.RED.getRGB(), after.getRGB(128, 128));
+		assertEquals(Color.WHITE.getRGB(), after.getRGB(700, 700));
+		assertEquals(tiles, cache.size());
+	}
+}